@@ -15,13 +15,14 @@
 package io.prestodb.tempto.assertions;
 
 import com.google.common.base.Joiner;
-import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.internal.convention.SqlResultDescriptor;
-import io.prestodb.tempto.internal.query.QueryResultValueComparator;
+import io.prestodb.tempto.internal.query.QueryRowIndex;
 import io.prestodb.tempto.internal.query.QueryRowMapper;
+import io.prestodb.tempto.internal.query.QueryRowMatcher;
 import io.prestodb.tempto.query.QueryExecutionException;
 import io.prestodb.tempto.query.QueryExecutor;
 import io.prestodb.tempto.query.QueryResult;
+import io.prestodb.tempto.query.StreamingQueryResult;
 import org.assertj.core.api.AbstractAssert;
 import org.assertj.core.api.Assertions;
 import org.slf4j.Logger;
@@ -31,20 +32,16 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.Lists.newArrayList;
 import static io.prestodb.tempto.assertions.QueryAssert.Row.row;
 import static io.prestodb.tempto.internal.configuration.TestConfigurationFactory.testConfiguration;
 import static io.prestodb.tempto.query.QueryResult.fromSqlIndex;
-import static io.prestodb.tempto.query.QueryResult.toSqlIndex;
 import static java.lang.String.format;
 import static java.sql.JDBCType.INTEGER;
-import static java.util.Collections.singletonList;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
@@ -57,13 +54,14 @@ public class QueryAssert
 
     private static final NumberFormat DECIMAL_FORMAT = new DecimalFormat("#0.00000000000");
 
-    private final List<Comparator<Object>> columnComparators;
+    private final QueryRowMatcher rowMatcher;
     private final List<JDBCType> columnTypes;
+    private QueryRowIndex rowIndex;
 
     private QueryAssert(QueryResult actual)
     {
         super(actual, QueryAssert.class);
-        this.columnComparators = getComparators(actual);
+        this.rowMatcher = new QueryRowMatcher(actual.getColumnTypes(), testConfiguration());
         this.columnTypes = actual.getColumnTypes();
     }
 
@@ -72,6 +70,15 @@ public class QueryAssert
         return new QueryAssert(queryResult);
     }
 
+    /**
+     * Asserts on a result which is verified row by row, without keeping it in memory.
+     * Assertions consuming rows close the result.
+     */
+    public static StreamingQueryAssert assertThat(StreamingQueryResult queryResult)
+    {
+        return new StreamingQueryAssert(queryResult);
+    }
+
     public static QueryExecutionAssert assertThat(QueryCallback queryCallback)
     {
         QueryExecutionException executionException = null;
@@ -144,15 +151,7 @@ public class QueryAssert
 
     public QueryAssert hasColumns(List<JDBCType> expectedTypes)
     {
-        hasColumnsCount(expectedTypes.size());
-        for (int i = 0; i < expectedTypes.size(); i++) {
-            JDBCType expectedType = expectedTypes.get(i);
-            JDBCType actualType = actual.getColumnType(toSqlIndex(i));
-
-            if (!actualType.equals(expectedType)) {
-                failWithMessage("Expected <%s> column of type <%s>, but was <%s>, actual columns: %s", i, expectedType, actualType, actual.getColumnTypes());
-            }
-        }
+        columnTypesMismatch(actual.getColumnTypes(), expectedTypes).ifPresent(message -> failWithMessage("%s", message));
         return this;
     }
 
@@ -161,6 +160,25 @@ public class QueryAssert
         return hasColumns(Arrays.asList(expectedTypes));
     }
 
+    /**
+     * @return description of the first difference between actual and expected column types
+     */
+    static Optional<String> columnTypesMismatch(List<JDBCType> actualTypes, List<JDBCType> expectedTypes)
+    {
+        if (actualTypes.size() != expectedTypes.size()) {
+            return Optional.of(format("Expected column count to be <%s>, but was <%s> - columns <%s>", expectedTypes.size(), actualTypes.size(), actualTypes));
+        }
+        for (int i = 0; i < expectedTypes.size(); i++) {
+            JDBCType expectedType = expectedTypes.get(i);
+            JDBCType actualType = actualTypes.get(i);
+
+            if (!actualType.equals(expectedType)) {
+                return Optional.of(format("Expected <%s> column of type <%s>, but was <%s>, actual columns: %s", i, expectedType, actualType, actualTypes));
+            }
+        }
+        return Optional.empty();
+    }
+
     /**
      * Verifies that the actual result set contains all the given {@code rows}
      *
@@ -271,14 +289,6 @@ public class QueryAssert
         return this;
     }
 
-    private static List<Comparator<Object>> getComparators(QueryResult queryResult)
-    {
-        Configuration configuration = testConfiguration();
-        return queryResult.getColumnTypes().stream()
-                .map(it -> QueryResultValueComparator.comparatorForType(it, configuration))
-                .collect(Collectors.toList());
-    }
-
     private String buildContainsMessage(List<List<Object>> missingRows)
     {
         StringBuilder msg = new StringBuilder("Could not find rows:");
@@ -312,40 +322,15 @@ public class QueryAssert
 
     private boolean containsRow(List<Object> expectedRow)
     {
-        for (int i = 0; i < actual.getRowsCount(); i++) {
-            if (rowsEqual(expectedRow, actual.row(i))) {
-                return true;
-            }
+        if (rowIndex == null) {
+            rowIndex = new QueryRowIndex(rowMatcher, actual.rows());
         }
-        return false;
+        return rowIndex.contains(expectedRow);
     }
 
     private boolean rowsEqual(List<Object> expectedRow, List<Object> actualRow)
     {
-        if (expectedRow.size() != actualRow.size()) {
-            return false;
-        }
-        for (int i = 0; i < expectedRow.size(); ++i) {
-            List<Object> acceptableValues = expectedRow.get(i) instanceof AcceptableValues ?
-                    ((AcceptableValues) expectedRow.get(i)).getValues()
-                    : singletonList(expectedRow.get(i));
-            Object actualValue = actualRow.get(i);
-
-            if (!isAnyValueEqual(i, acceptableValues, actualValue)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean isAnyValueEqual(int column, List<Object> expectedValues, Object actualValue)
-    {
-        for (Object expectedValue : expectedValues) {
-            if (columnComparators.get(column).compare(actualValue, expectedValue) == 0) {
-                return true;
-            }
-        }
-        return false;
+        return rowMatcher.rowsEqual(expectedRow, actualRow);
     }
 
     public <T> QueryAssert column(int columnIndex, JDBCType type, ColumnValuesAssert<T> columnValuesAssert)
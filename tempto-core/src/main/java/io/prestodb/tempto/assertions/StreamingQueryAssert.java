@@ -0,0 +1,313 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.assertions;
+
+import io.prestodb.tempto.assertions.QueryAssert.Row;
+import io.prestodb.tempto.internal.convention.SqlResultDescriptor;
+import io.prestodb.tempto.internal.query.QueryRowMatcher;
+import io.prestodb.tempto.query.StreamingQueryResult;
+import org.assertj.core.api.AbstractAssert;
+
+import java.sql.JDBCType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.collect.Iterators.size;
+import static com.google.common.collect.Sets.newIdentityHashSet;
+import static io.prestodb.tempto.assertions.QueryAssert.columnTypesMismatch;
+import static io.prestodb.tempto.internal.configuration.TestConfigurationFactory.testConfiguration;
+
+/**
+ * Assertions for {@link StreamingQueryResult}. Rows are verified as they are read, so only
+ * expected rows and a bounded number of mismatched rows are kept in memory.
+ * <p>
+ * Result rows can be read only once, so only a single assertion on rows can be made.
+ * Such assertions close the verified result.
+ */
+public class StreamingQueryAssert
+        extends AbstractAssert<StreamingQueryAssert, StreamingQueryResult>
+{
+    private static final int MAX_REPORTED_ROWS = 100;
+
+    private final QueryRowMatcher rowMatcher;
+
+    StreamingQueryAssert(StreamingQueryResult actual)
+    {
+        super(actual, StreamingQueryAssert.class);
+        this.rowMatcher = new QueryRowMatcher(actual.getColumnTypes(), testConfiguration());
+    }
+
+    public StreamingQueryAssert matches(SqlResultDescriptor sqlResultDescriptor)
+    {
+        if (sqlResultDescriptor.getExpectedTypes().isPresent()) {
+            hasColumns(sqlResultDescriptor.getExpectedTypes().get());
+        }
+
+        List<JDBCType> columnTypes = actual.getColumnTypes();
+        if (sqlResultDescriptor.isIgnoreOrder() || sqlResultDescriptor.isJoinAllRowsToOne()) {
+            List<Row> rows = null;
+            try {
+                rows = sqlResultDescriptor.getRows(columnTypes);
+            }
+            catch (Exception e) {
+                failWithMessage("Could not map expected file content to query column types; types=%s; content=<%s>; error=<%s>",
+                        columnTypes, sqlResultDescriptor.getOriginalContent(), e.getMessage());
+            }
+
+            if (sqlResultDescriptor.isIgnoreOrder()) {
+                return contains(rows, !sqlResultDescriptor.isIgnoreExcessRows());
+            }
+            return containsExactly(rows);
+        }
+
+        return containsExactly(sqlResultDescriptor.iterateRows(columnTypes));
+    }
+
+    public StreamingQueryAssert hasColumnsCount(int columnCount)
+    {
+        if (actual.getColumnsCount() != columnCount) {
+            failWithMessage("Expected column count to be <%s>, but was <%s> - columns <%s>", columnCount, actual.getColumnsCount(), actual.getColumnTypes());
+        }
+        return this;
+    }
+
+    public StreamingQueryAssert hasColumns(List<JDBCType> expectedTypes)
+    {
+        columnTypesMismatch(actual.getColumnTypes(), expectedTypes).ifPresent(message -> failWithMessage("%s", message));
+        return this;
+    }
+
+    public StreamingQueryAssert hasColumns(JDBCType... expectedTypes)
+    {
+        return hasColumns(Arrays.asList(expectedTypes));
+    }
+
+    public StreamingQueryAssert hasRowsCount(long resultCount)
+    {
+        long actualCount;
+        try {
+            actualCount = size(actual.iterator());
+        }
+        finally {
+            actual.close();
+        }
+        if (actualCount != resultCount) {
+            failWithMessage("Expected row count to be <%s>, but was <%s>", resultCount, actualCount);
+        }
+        return this;
+    }
+
+    public StreamingQueryAssert hasNoRows()
+    {
+        return hasRowsCount(0);
+    }
+
+    /**
+     * Verifies that the actual result contains all the given {@code rows}
+     *
+     * @param rows Rows to be matched
+     * @return this
+     */
+    public StreamingQueryAssert contains(List<Row> rows)
+    {
+        return contains(rows, false);
+    }
+
+    /**
+     * @param rows Rows to be matched
+     * @return this
+     * @see #contains(java.util.List)
+     */
+    public StreamingQueryAssert contains(Row... rows)
+    {
+        return contains(Arrays.asList(rows));
+    }
+
+    /**
+     * Verifies that the actual result consist of only {@code rows} in any order
+     *
+     * @param rows Rows to be matched
+     * @return this
+     */
+    public StreamingQueryAssert containsOnly(List<Row> rows)
+    {
+        return contains(rows, true);
+    }
+
+    /**
+     * @param rows Rows to be matched
+     * @return this
+     * @see #containsOnly(java.util.List)
+     */
+    public StreamingQueryAssert containsOnly(Row... rows)
+    {
+        return containsOnly(Arrays.asList(rows));
+    }
+
+    /**
+     * Verifies that the actual result equals to {@code rows}.
+     *
+     * @param rows Rows to be matched
+     * @return this
+     */
+    public StreamingQueryAssert containsExactly(List<Row> rows)
+    {
+        return containsExactly(rows.iterator());
+    }
+
+    /**
+     * @param rows Rows to be matched
+     * @return this
+     * @see #containsExactly(java.util.List)
+     */
+    public StreamingQueryAssert containsExactly(Row... rows)
+    {
+        return containsExactly(Arrays.asList(rows));
+    }
+
+    /**
+     * Verifies that the actual result equals to {@code rows}, reading both of them incrementally.
+     *
+     * @param rows Rows to be matched
+     * @return this
+     */
+    public StreamingQueryAssert containsExactly(Iterator<Row> rows)
+    {
+        StringBuilder unequalRowsMessage = new StringBuilder("Not equal rows:");
+        long unequalRowsCount = 0;
+        long expectedCount = 0;
+        long actualCount = 0;
+        try {
+            Iterator<List<Object>> actualRows = actual.iterator();
+            while (rows.hasNext() && actualRows.hasNext()) {
+                Row expectedRow = rows.next();
+                List<Object> actualRow = actualRows.next();
+                if (!rowMatcher.rowsEqual(expectedRow.getValues(), actualRow)) {
+                    if (unequalRowsCount < MAX_REPORTED_ROWS) {
+                        appendUnequalRow(unequalRowsMessage, actualCount, expectedRow, actualRow);
+                    }
+                    unequalRowsCount++;
+                }
+                expectedCount++;
+                actualCount++;
+            }
+            expectedCount += size(rows);
+            actualCount += size(actualRows);
+        }
+        finally {
+            actual.close();
+        }
+
+        if (expectedCount != actualCount) {
+            failWithMessage("Expected row count to be <%s>, but was <%s>", expectedCount, actualCount);
+        }
+        if (unequalRowsCount > MAX_REPORTED_ROWS) {
+            unequalRowsMessage.append("\n... and ").append(unequalRowsCount - MAX_REPORTED_ROWS).append(" more");
+        }
+        if (unequalRowsCount > 0) {
+            failWithMessage(unequalRowsMessage.toString());
+        }
+        return this;
+    }
+
+    private StreamingQueryAssert contains(List<Row> rows, boolean checkRowsCount)
+    {
+        // expected rows not found yet, bucketed by row key; rows without key are checked against each actual row
+        Map<List<Object>, List<Row>> missingRows = new HashMap<>();
+        List<Row> unindexedMissingRows = new ArrayList<>();
+        for (Row row : rows) {
+            Optional<List<Object>> key = rowMatcher.rowKey(row.getValues());
+            if (key.isPresent()) {
+                missingRows.computeIfAbsent(key.get(), ignored -> new ArrayList<>()).add(row);
+            }
+            else {
+                unindexedMissingRows.add(row);
+            }
+        }
+
+        long actualCount = 0;
+        try {
+            for (List<Object> actualRow : actual) {
+                Optional<List<Object>> key = rowMatcher.rowKey(actualRow);
+                if (key.isPresent()) {
+                    removeEqualRows(missingRows, key.get(), actualRow);
+                }
+                else {
+                    missingRows.values().removeIf(bucket -> {
+                        removeEqualRows(bucket, actualRow);
+                        return bucket.isEmpty();
+                    });
+                }
+                removeEqualRows(unindexedMissingRows, actualRow);
+                actualCount++;
+                if (!checkRowsCount && unindexedMissingRows.isEmpty() && missingRows.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        finally {
+            actual.close();
+        }
+
+        if (checkRowsCount && actualCount != rows.size()) {
+            failWithMessage("Expected row count to be <%s>, but was <%s>", rows.size(), actualCount);
+        }
+        Set<Row> notFoundRows = newIdentityHashSet();
+        missingRows.values().forEach(notFoundRows::addAll);
+        notFoundRows.addAll(unindexedMissingRows);
+        if (!notFoundRows.isEmpty()) {
+            StringBuilder msg = new StringBuilder("Could not find rows:");
+            rows.stream()
+                    .filter(notFoundRows::contains)
+                    .forEach(row -> msg.append('\n').append(row.getValues()));
+            failWithMessage(msg.toString());
+        }
+        return this;
+    }
+
+    private void removeEqualRows(Map<List<Object>, List<Row>> rows, List<Object> key, List<Object> actualRow)
+    {
+        List<Row> bucket = rows.get(key);
+        if (bucket != null) {
+            removeEqualRows(bucket, actualRow);
+            if (bucket.isEmpty()) {
+                rows.remove(key);
+            }
+        }
+    }
+
+    private void removeEqualRows(List<Row> rows, List<Object> actualRow)
+    {
+        rows.removeIf(row -> rowMatcher.rowsEqual(row.getValues(), actualRow));
+    }
+
+    private static void appendUnequalRow(StringBuilder msg, long rowIndex, Row expectedRow, List<Object> actualRow)
+    {
+        msg.append('\n');
+        msg.append(rowIndex);
+        msg.append(" - expected: ");
+        msg.append(expectedRow);
+        msg.append('\n');
+        msg.append(rowIndex);
+        msg.append(" - actual:   ");
+        msg.append(new Row(actualRow));
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Reads elements of parts produced in parallel by background threads, one thread per part. Elements
+ * of different parts are interleaved. Producers stop when the iterator is closed, so it does not have
+ * to be read until the end. Producers of an iterator which is not closed stop once it is garbage collected.
+ */
+public class ParallelPartsIterator<T>
+        implements Iterator<T>, Closeable
+{
+    private static final int BATCH_SIZE = 1000;
+    private static final int BATCHES_PER_PART = 4;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    // idle producer threads are reused by subsequent iterators
+    private static final ExecutorService PRODUCERS = newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("parallel-parts-%d").setDaemon(true).build());
+
+    private final String name;
+    private final int parts;
+    private final BlockingQueue<PartBatch<T>> batches;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final List<Future<?>> producers = new ArrayList<>();
+    private int finishedParts;
+    private Iterator<T> currentBatch = ImmutableList.<T>of().iterator();
+
+    /**
+     * @param name name of the produced data, used in producer thread names
+     * @param parts number of parts
+     * @param partIterator creates iterator over elements of a part, parts are numbered from 1
+     */
+    public ParallelPartsIterator(String name, int parts, IntFunction<Iterator<T>> partIterator)
+    {
+        checkArgument(parts > 0, "parts should be greater than zero");
+        requireNonNull(partIterator, "partIterator is null");
+        this.name = requireNonNull(name, "name is null");
+        this.parts = parts;
+        this.batches = new ArrayBlockingQueue<>(parts * BATCHES_PER_PART);
+
+        // producers must not reference this iterator, so that it can be garbage collected
+        Producer<T> producer = new Producer<>(name, partIterator, batches, closed, new WeakReference<>(this));
+        for (int part = 1; part <= parts; ++part) {
+            int currentPart = part;
+            producers.add(PRODUCERS.submit(() -> producer.producePart(currentPart)));
+        }
+    }
+
+    /**
+     * Closes the given iterator if it holds resources, e.g. stops producers of a {@link ParallelPartsIterator}
+     * which was not read until the end.
+     */
+    public static void closeIterator(Iterator<?> iterator)
+    {
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) iterator).close();
+            }
+            catch (Exception e) {
+                throw new RuntimeException("Could not close iterator", e);
+            }
+        }
+    }
+
+    /**
+     * Stops producers and discards elements which were not read yet.
+     */
+    @Override
+    public void close()
+    {
+        if (closed.compareAndSet(false, true)) {
+            producers.forEach(producer -> producer.cancel(true));
+            batches.clear();
+            currentBatch = ImmutableList.<T>of().iterator();
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (!currentBatch.hasNext()) {
+            if (finishedParts == parts || closed.get()) {
+                return false;
+            }
+            PartBatch<T> batch;
+            try {
+                batch = batches.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (batch.failure != null) {
+                throw new RuntimeException("Could not produce data for " + name, batch.failure);
+            }
+            if (batch.elements == null) {
+                finishedParts++;
+            }
+            else {
+                currentBatch = batch.elements.iterator();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentBatch.next();
+    }
+
+    private static class Producer<T>
+    {
+        private final String name;
+        private final IntFunction<Iterator<T>> partIterator;
+        private final BlockingQueue<PartBatch<T>> batches;
+        private final AtomicBoolean closed;
+        private final WeakReference<ParallelPartsIterator<T>> consumer;
+
+        Producer(
+                String name,
+                IntFunction<Iterator<T>> partIterator,
+                BlockingQueue<PartBatch<T>> batches,
+                AtomicBoolean closed,
+                WeakReference<ParallelPartsIterator<T>> consumer)
+        {
+            this.name = name;
+            this.partIterator = partIterator;
+            this.batches = batches;
+            this.closed = closed;
+            this.consumer = consumer;
+        }
+
+        void producePart(int part)
+        {
+            Thread thread = Thread.currentThread();
+            String threadName = thread.getName();
+            thread.setName(name + "-" + part);
+            try {
+                List<T> elements = new ArrayList<>(BATCH_SIZE);
+                Iterator<T> iterator = partIterator.apply(part);
+                while (iterator.hasNext()) {
+                    elements.add(iterator.next());
+                    if (elements.size() == BATCH_SIZE) {
+                        if (!enqueue(new PartBatch<>(elements, null))) {
+                            return;
+                        }
+                        elements = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!elements.isEmpty() && !enqueue(new PartBatch<>(elements, null))) {
+                    return;
+                }
+                enqueue(new PartBatch<>(null, null));
+            }
+            catch (RuntimeException | Error e) {
+                enqueue(new PartBatch<>(null, e));
+            }
+            finally {
+                thread.setName(threadName);
+            }
+        }
+
+        private boolean enqueue(PartBatch<T> batch)
+        {
+            try {
+                while (!batches.offer(batch, OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+                    if (isConsumerGone()) {
+                        return false;
+                    }
+                }
+                return !isConsumerGone();
+            }
+            catch (InterruptedException e) {
+                // producer is interrupted when the iterator is closed, interrupted status is cleared before the thread is reused
+                return false;
+            }
+        }
+
+        private boolean isConsumerGone()
+        {
+            return closed.get() || consumer.get() == null;
+        }
+    }
+
+    private static class PartBatch<T>
+    {
+        // null elements mark the end of a part
+        private final List<T> elements;
+        private final Throwable failure;
+
+        PartBatch(List<T> elements, Throwable failure)
+        {
+            this.elements = elements;
+            this.failure = failure;
+        }
+    }
+}
@@ -36,6 +36,15 @@ public interface HiveDataSource
      */
     Collection<RepeatableContentProducer> data();
 
+    /**
+     * @return marker identifying revision of data returned by {@link #data()}. If the marker is present and equal
+     * to the one stored with data already uploaded to HDFS, upload is skipped. If not present, data is always uploaded.
+     */
+    default Optional<String> revisionMarker()
+    {
+        return Optional.empty();
+    }
+
     default Optional<TableStatistics> getStatistics()
     {
         return Optional.empty();
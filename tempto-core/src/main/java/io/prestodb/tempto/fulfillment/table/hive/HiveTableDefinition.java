@@ -43,13 +43,15 @@ public class HiveTableDefinition
     private final Optional<List<PartitionDefinition>> partitionDefinitions;
     private final String createTableDDLTemplate;
     private final Optional<Boolean> injectStats;
+    private final Optional<Boolean> shareMutableData;
 
     private HiveTableDefinition(
             TableHandle handle,
             String createTableDDLTemplate,
             Optional<HiveDataSource> dataSource,
             Optional<List<PartitionDefinition>> partitionDefinitions,
-            Optional<Boolean> injectStats)
+            Optional<Boolean> injectStats,
+            Optional<Boolean> shareMutableData)
     {
         super(handle);
         checkArgument(dataSource.isPresent() != partitionDefinitions.isPresent(), "either dataSource or partitionDefinitions must be set (but not both)");
@@ -57,6 +59,7 @@ public class HiveTableDefinition
         this.partitionDefinitions = partitionDefinitions;
         this.createTableDDLTemplate = createTableDDLTemplate;
         this.injectStats = requireNonNull(injectStats, "injectStats is null");
+        this.shareMutableData = requireNonNull(shareMutableData, "shareMutableData is null");
 
         checkArgument(createTableDDLTemplate.contains(NAME_MARKER), "Create table DDL must contain %NAME% placeholder");
     }
@@ -100,6 +103,11 @@ public class HiveTableDefinition
         return injectStats;
     }
 
+    public Optional<Boolean> getShareMutableData()
+    {
+        return shareMutableData;
+    }
+
     public static HiveTableDefinition hiveTableDefinition(String name, String createTableDDLTemplate, HiveDataSource dataSource)
     {
         return hiveTableDefinition(tableHandle(name), createTableDDLTemplate, dataSource);
@@ -107,7 +115,7 @@ public class HiveTableDefinition
 
     public static HiveTableDefinition hiveTableDefinition(TableHandle handle, String createTableDDLTemplate, HiveDataSource dataSource)
     {
-        return new HiveTableDefinition(handle, createTableDDLTemplate, Optional.of(dataSource), Optional.empty(), Optional.empty());
+        return new HiveTableDefinition(handle, createTableDDLTemplate, Optional.of(dataSource), Optional.empty(), Optional.empty(), Optional.empty());
     }
 
     public static HiveTableDefinitionBuilder builder(String name)
@@ -138,6 +146,7 @@ public class HiveTableDefinition
         private Optional<HiveDataSource> dataSource = Optional.empty();
         private Optional<List<PartitionDefinition>> partitionDefinitions = Optional.empty();
         private Optional<Boolean> injectStats = Optional.empty();
+        private Optional<Boolean> shareMutableData = Optional.empty();
 
         private HiveTableDefinitionBuilder(HiveTableDefinition initialDefinition)
         {
@@ -147,6 +156,7 @@ public class HiveTableDefinition
             this.dataSource = initialDefinition.dataSource;
             this.partitionDefinitions = initialDefinition.partitionDefinitions;
             this.injectStats = initialDefinition.injectStats;
+            this.shareMutableData = initialDefinition.shareMutableData;
         }
 
         private HiveTableDefinitionBuilder(String name)
@@ -222,9 +232,20 @@ public class HiveTableDefinition
             return this;
         }
 
+        /**
+         * Whether data of mutable tables should be stored in a location shared by all tables with identical data,
+         * instead of being uploaded for each table. Tests writing into the table must not use shared data.
+         * If not set, configurable global default will be used.
+         */
+        public HiveTableDefinitionBuilder shareMutableData(boolean shareMutableData)
+        {
+            this.shareMutableData = Optional.of(shareMutableData);
+            return this;
+        }
+
         public HiveTableDefinition build()
         {
-            return new HiveTableDefinition(handle, createTableDDLTemplate, dataSource, partitionDefinitions, injectStats);
+            return new HiveTableDefinition(handle, createTableDDLTemplate, dataSource, partitionDefinitions, injectStats, shareMutableData);
         }
     }
 
@@ -236,11 +257,13 @@ public class HiveTableDefinition
         private final String partitionSpec;
         private final HiveDataSource dataSource;
 
-        private static final String ADD_PARTITION_DDL_TEMPLATE =
-                "ALTER TABLE " + NAME_MARKER +
-                        " ADD PARTITION (" + PARTITION_SPEC_MARKER + ")" +
+        private static final String PARTITION_CLAUSE_TEMPLATE =
+                "PARTITION (" + PARTITION_SPEC_MARKER + ")" +
                         " LOCATION '" + LOCATION_MARKER + "'";
 
+        private static final String ADD_PARTITION_DDL_TEMPLATE =
+                "ALTER TABLE " + NAME_MARKER + " ADD " + PARTITION_CLAUSE_TEMPLATE;
+
         public PartitionDefinition(String partitionSpec, HiveDataSource dataSource)
         {
             this.partitionSpec = partitionSpec;
@@ -263,6 +286,15 @@ public class HiveTableDefinition
                     .replace(PARTITION_SPEC_MARKER, partitionSpec)
                     .replace(LOCATION_MARKER, location);
         }
+
+        /**
+         * @return {@code PARTITION (...) LOCATION '...'} clause, which may be repeated in a single {@code ALTER TABLE ... ADD} statement
+         */
+        public String getPartitionClause(String location)
+        {
+            return PARTITION_CLAUSE_TEMPLATE.replace(PARTITION_SPEC_MARKER, partitionSpec)
+                    .replace(LOCATION_MARKER, location);
+        }
     }
 
     @Override
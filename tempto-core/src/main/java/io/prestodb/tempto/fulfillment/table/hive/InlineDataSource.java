@@ -17,16 +17,21 @@ package io.prestodb.tempto.fulfillment.table.hive;
 import com.google.common.io.ByteSource;
 import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer;
 
+import java.io.IOException;
 import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Optional;
 
 import static com.google.common.collect.Iterators.cycle;
 import static com.google.common.collect.Iterators.limit;
+import static com.google.common.hash.Hashing.sha256;
 import static com.google.common.io.ByteSource.concat;
 import static com.google.common.io.ByteSource.wrap;
+import static com.google.common.io.Resources.asByteSource;
 import static com.google.common.io.Resources.getResource;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singleton;
 
 public abstract class InlineDataSource
@@ -48,6 +53,17 @@ public abstract class InlineDataSource
             {
                 return singleton(() -> getResource(dataResource).openStream());
             }
+
+            @Override
+            public Optional<String> revisionMarker()
+            {
+                try {
+                    return Optional.of(asByteSource(getResource(dataResource)).hash(sha256()).toString());
+                }
+                catch (IOException e) {
+                    throw new RuntimeException("Could not read resource " + dataResource, e);
+                }
+            }
         };
     }
 
@@ -60,6 +76,12 @@ public abstract class InlineDataSource
             {
                 return singleton(() -> wrap(data.getBytes()).openStream());
             }
+
+            @Override
+            public Optional<String> revisionMarker()
+            {
+                return Optional.of(sha256().hashString(data, UTF_8).toString());
+            }
         };
     }
 
@@ -87,6 +109,17 @@ public abstract class InlineDataSource
                     }
                 };
             }
+
+            @Override
+            public Optional<String> revisionMarker()
+            {
+                return Optional.of(sha256().newHasher()
+                        .putInt(splitCount)
+                        .putInt(rowsInEachSplit)
+                        .putString(rowData, UTF_8)
+                        .hash()
+                        .toString());
+            }
         };
     }
 
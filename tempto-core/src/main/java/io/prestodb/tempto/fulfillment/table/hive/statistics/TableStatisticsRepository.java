@@ -17,31 +17,64 @@ package io.prestodb.tempto.fulfillment.table.hive.statistics;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 import static java.util.Locale.ENGLISH;
 
+/**
+ * Loads precomputed statistics of benchmark tables. Loaded statistics are cached, so creating repository instances is cheap.
+ */
 public class TableStatisticsRepository
 {
-    private final ObjectMapper objectMapper = new ObjectMapper()
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
             .registerModule(new Jdk8Module());
+    private static final Map<String, TableStatistics> LOADED_STATISTICS = new ConcurrentHashMap<>();
 
     public TableStatistics load(String benchmark, double scaleFactor, String table)
     {
         String schema = schema(scaleFactor);
         String resourcePath = "/statistics/" + benchmark.toLowerCase(ENGLISH) + "/" + schema + "/" + table.toLowerCase(ENGLISH) + ".json";
+        return LOADED_STATISTICS.computeIfAbsent(resourcePath, this::load);
+    }
+
+    private TableStatistics load(String resourcePath)
+    {
         URL resource = getClass().getResource(resourcePath);
         checkState(resource != null, "Unable to find statistics data file, trying with: %s", resourcePath);
         try {
-            return objectMapper.readValue(resource, TableStatistics.class);
+            return OBJECT_MAPPER.readValue(resource, TableStatistics.class);
         }
         catch (Exception e) {
             throw new RuntimeException(format("Failed to parse stats from resource [%s]", resourcePath), e);
         }
     }
 
+    public static String toJson(TableStatistics tableStatistics)
+    {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(tableStatistics);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static TableStatistics fromJson(String json)
+    {
+        try {
+            return OBJECT_MAPPER.readValue(json, TableStatistics.class);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private String schema(double scaleFactor)
     {
         return ("sf" + scaleFactor).replaceAll("\\.0*$", "");
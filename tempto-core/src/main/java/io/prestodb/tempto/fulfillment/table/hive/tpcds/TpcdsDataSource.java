@@ -35,39 +35,64 @@ import java.util.stream.StreamSupport;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.teradata.tpcds.Results.constructResults;
 import static java.lang.String.format;
-import static java.util.Collections.singleton;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.rangeClosed;
 
 public class TpcdsDataSource
         implements HiveDataSource
 {
+    public static final int DEFAULT_PART_COUNT = 1;
+
+    private static final String REVISION_MARKER = "tpcds-v1";
+
     private final TpcdsTable table;
     private final int scaleFactor;
+    private final int partCount;
 
     public TpcdsDataSource(TpcdsTable table, int scaleFactor)
+    {
+        this(table, scaleFactor, DEFAULT_PART_COUNT);
+    }
+
+    /**
+     * @param partCount number of generator chunks; each chunk is generated and stored as a separate file
+     */
+    public TpcdsDataSource(TpcdsTable table, int scaleFactor, int partCount)
     {
         checkArgument(scaleFactor > 0, "Scale factor should be greater than 0: %s", scaleFactor);
+        checkArgument(partCount > 0, "Part count should be greater than 0: %s", partCount);
         this.table = table;
         this.scaleFactor = scaleFactor;
+        this.partCount = partCount;
     }
 
     @Override
     public String getPathSuffix()
     {
-        return format("tpcds/sf-%d/%s", scaleFactor, table.name()).replaceAll("\\.", "_");
+        return format("tpcds/sf-%d/%s%s", scaleFactor, table.name(), partsSuffix()).replaceAll("\\.", "_");
+    }
+
+    private String partsSuffix()
+    {
+        // paths of data which is not split stay the same as before splitting was supported
+        return partCount == DEFAULT_PART_COUNT ? "" : "-parts-" + partCount;
     }
 
     @Override
     public Collection<RepeatableContentProducer> data()
     {
-        return singleton(() -> new StringIteratorInputStream(generate()));
+        return rangeClosed(1, partCount)
+                .mapToObj(chunkNumber -> (RepeatableContentProducer) () -> new StringIteratorInputStream(generate(chunkNumber)))
+                .collect(toList());
     }
 
-    private Iterator<String> generate()
+    private Iterator<String> generate(int chunkNumber)
     {
         Session session = Session.getDefaultSession()
                 .withScale(scaleFactor)
-                .withParallelism(1)
+                .withParallelism(partCount)
+                .withChunkNumber(chunkNumber)
                 .withTable(table.getTable())
                 .withNoSexism(false);
         Results results = constructResults(table.getTable(), session);
@@ -86,6 +111,13 @@ public class TpcdsDataSource
                 .collect(Collectors.joining("|")) + "|";
     }
 
+    @Override
+    public Optional<String> revisionMarker()
+    {
+        // generated data depends only on the table, scale factor and part count, which are already part of the path suffix
+        return Optional.of(REVISION_MARKER);
+    }
+
     @Override
     public Optional<TableStatistics> getStatistics()
     {
@@ -104,13 +136,14 @@ public class TpcdsDataSource
         }
         TpcdsDataSource that = (TpcdsDataSource) o;
         return scaleFactor == that.scaleFactor &&
+                partCount == that.partCount &&
                 table == that.table;
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(table, scaleFactor);
+        return Objects.hash(table, scaleFactor, partCount);
     }
 
     private static class StringIteratorInputStream
@@ -23,36 +23,73 @@ import io.prestodb.tempto.internal.fulfillment.table.hive.tpch.TpchEntityByteSou
 import java.util.Collection;
 import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.rangeClosed;
 import static org.apache.commons.lang3.builder.EqualsBuilder.reflectionEquals;
 import static org.apache.commons.lang3.builder.HashCodeBuilder.reflectionHashCode;
 
 public class TpchDataSource
         implements HiveDataSource
 {
+    public static final int DEFAULT_PART_COUNT = 1;
+
+    private static final String REVISION_MARKER = "tpch-v1";
+
     private final TpchTable table;
     private final double scaleFactor;
+    private final int partCount;
 
     public TpchDataSource(TpchTable table, double scaleFactor)
     {
+        this(table, scaleFactor, DEFAULT_PART_COUNT);
+    }
+
+    /**
+     * @param partCount number of generator parts; each part is generated and stored as a separate file
+     */
+    public TpchDataSource(TpchTable table, double scaleFactor, int partCount)
+    {
+        checkArgument(partCount > 0, "Part count should be greater than 0: %s", partCount);
         this.table = table;
         this.scaleFactor = scaleFactor;
+        this.partCount = partCount;
     }
 
     @Override
     public String getPathSuffix()
     {
-        // {TESTS_PATH}/tpch/sf-{scaleFactor}/{tableName}
-        return format("tpch/sf-%.2f/%s", scaleFactor, table.name()).replaceAll("\\.", "_");
+        // {TESTS_PATH}/tpch/sf-{scaleFactor}/{tableName}, with -parts-{partCount} suffix if data is split into parts
+        return format("tpch/sf-%.2f/%s%s", scaleFactor, table.name(), partsSuffix()).replaceAll("\\.", "_");
+    }
+
+    private String partsSuffix()
+    {
+        // paths of data which is not split stay the same as before splitting was supported
+        return partCount == DEFAULT_PART_COUNT ? "" : "-parts-" + partCount;
     }
 
     @Override
     public Collection<RepeatableContentProducer> data()
+    {
+        return rangeClosed(1, partCount)
+                .mapToObj(this::partData)
+                .collect(toList());
+    }
+
+    private RepeatableContentProducer partData(int part)
     {
         @SuppressWarnings("unchecked")
-        Iterable<? extends io.airlift.tpch.TpchEntity> tableDataGenerator = table.getTpchTableEntity().createGenerator(scaleFactor, 1, 1);
-        return singleton(() -> new TpchEntityByteSource<>(tableDataGenerator).openStream());
+        Iterable<? extends io.airlift.tpch.TpchEntity> tableDataGenerator = table.getTpchTableEntity().createGenerator(scaleFactor, part, partCount);
+        return () -> new TpchEntityByteSource<>(tableDataGenerator).openStream();
+    }
+
+    @Override
+    public Optional<String> revisionMarker()
+    {
+        // generated data depends only on the table, scale factor and part count, which are already part of the path suffix
+        return Optional.of(REVISION_MARKER);
     }
 
     @Override
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.jdbc;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Loads rows into a single table using a database specific bulk load mechanism, e.g. PostgreSQL COPY.
+ */
+public interface BulkLoader
+        extends AutoCloseable
+{
+    /**
+     * Loads all given rows. Values are of types described in {@link RelationalDataSource#getDataRows()}.
+     */
+    void load(List<List<Object>> rows)
+            throws SQLException;
+
+    @Override
+    void close()
+            throws SQLException;
+}
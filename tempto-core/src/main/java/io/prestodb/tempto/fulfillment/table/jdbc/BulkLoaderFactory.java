@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.jdbc;
+
+import io.prestodb.tempto.query.QueryExecutor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Creates {@link BulkLoader}s for a single kind of database. Implementations annotated with {@link Descriptor}
+ * are discovered on the classpath and have to provide a no-argument constructor.
+ * <p>
+ * If {@link #create(QueryExecutor, String, List)} fails, data is loaded with JDBC batches instead.
+ */
+public interface BulkLoaderFactory
+{
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE})
+    @interface Descriptor
+    {
+        /**
+         * @return database product name, as returned by {@link java.sql.DatabaseMetaData#getDatabaseProductName()}
+         */
+        String databaseProductName();
+    }
+
+    BulkLoader create(QueryExecutor queryExecutor, String tableName, List<JDBCType> columnTypes)
+            throws SQLException;
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.jdbc;
+
+import com.google.common.collect.Sets;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.sql.JDBCType.BIGINT;
+import static java.sql.JDBCType.BIT;
+import static java.sql.JDBCType.BOOLEAN;
+import static java.sql.JDBCType.CHAR;
+import static java.sql.JDBCType.DATE;
+import static java.sql.JDBCType.DECIMAL;
+import static java.sql.JDBCType.DOUBLE;
+import static java.sql.JDBCType.FLOAT;
+import static java.sql.JDBCType.INTEGER;
+import static java.sql.JDBCType.LONGNVARCHAR;
+import static java.sql.JDBCType.LONGVARCHAR;
+import static java.sql.JDBCType.NCHAR;
+import static java.sql.JDBCType.NUMERIC;
+import static java.sql.JDBCType.NVARCHAR;
+import static java.sql.JDBCType.REAL;
+import static java.sql.JDBCType.SMALLINT;
+import static java.sql.JDBCType.TIME;
+import static java.sql.JDBCType.TIMESTAMP;
+import static java.sql.JDBCType.TINYINT;
+import static java.sql.JDBCType.VARCHAR;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes rows in CSV format understood by bulk load mechanisms, e.g. PostgreSQL {@code COPY ... WITH (FORMAT csv)}.
+ * Nulls are written as empty fields and strings are always quoted, so that empty strings can be distinguished from nulls.
+ */
+public class CsvRowWriter
+{
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final Set<JDBCType> SUPPORTED_COLUMN_TYPES = Sets.immutableEnumSet(
+            CHAR, VARCHAR, LONGVARCHAR, NCHAR, NVARCHAR, LONGNVARCHAR,
+            BIT, BOOLEAN, TINYINT, SMALLINT, INTEGER, BIGINT, REAL, FLOAT, DOUBLE, NUMERIC, DECIMAL,
+            DATE, TIME, TIMESTAMP);
+
+    private final Writer writer;
+    private final int columnsCount;
+
+    public CsvRowWriter(Writer writer, int columnsCount)
+    {
+        this.writer = requireNonNull(writer, "writer is null");
+        this.columnsCount = columnsCount;
+    }
+
+    /**
+     * @return true if values of columns of the given type can be written
+     */
+    public static boolean isSupported(JDBCType columnType)
+    {
+        return SUPPORTED_COLUMN_TYPES.contains(columnType);
+    }
+
+    /**
+     * @throws SQLFeatureNotSupportedException if values of any of the given column types cannot be written
+     */
+    public static void checkSupported(List<JDBCType> columnTypes)
+            throws SQLFeatureNotSupportedException
+    {
+        for (JDBCType columnType : columnTypes) {
+            if (!isSupported(columnType)) {
+                throw new SQLFeatureNotSupportedException("Unsupported column type for CSV: " + columnType);
+            }
+        }
+    }
+
+    public void writeRow(List<Object> row)
+            throws IOException
+    {
+        checkArgument(row.size() == columnsCount, "Unexpected columns count: %d vs %d", row.size(), columnsCount);
+        for (int column = 0; column < row.size(); ++column) {
+            if (column > 0) {
+                writer.write(SEPARATOR);
+            }
+            writeValue(row.get(column));
+        }
+        writer.write('\n');
+    }
+
+    private void writeValue(Object value)
+            throws IOException
+    {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof CharSequence) {
+            writeQuoted(value.toString());
+        }
+        else if (value instanceof BigDecimal) {
+            writer.write(((BigDecimal) value).toPlainString());
+        }
+        else if (value instanceof Number || value instanceof Boolean
+                || value instanceof Date || value instanceof Time || value instanceof Timestamp) {
+            writer.write(value.toString());
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported value type for CSV: " + value.getClass().getName());
+        }
+    }
+
+    private void writeQuoted(String value)
+            throws IOException
+    {
+        writer.write(QUOTE);
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                writer.write(QUOTE);
+            }
+            writer.write(c);
+        }
+        writer.write(QUOTE);
+    }
+}
@@ -17,6 +17,7 @@ package io.prestodb.tempto.fulfillment.table.jdbc;
 import java.sql.PreparedStatement;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 public interface RelationalDataSource
 {
@@ -24,8 +25,20 @@ public interface RelationalDataSource
      * Returns iterator over rows to be inserted to table.
      * Object types must match column types in table.
      * Object will be inserted using {@link PreparedStatement#setObject(int, Object)} method.
+     * If the iterator is {@link AutoCloseable}, it is closed once rows are read.
      *
      * @return iterator over rows to be inserted to table
      */
     Iterator<List<Object>> getDataRows();
+
+    /**
+     * Returns a value which changes whenever rows returned by {@link #getDataRows()} change. It is used to detect
+     * whether immutable tables loaded in previous runs can be reused. If empty, all the rows are read and hashed.
+     *
+     * @return fingerprint of the data
+     */
+    default Optional<String> getDataFingerprint()
+    {
+        return Optional.empty();
+    }
 }
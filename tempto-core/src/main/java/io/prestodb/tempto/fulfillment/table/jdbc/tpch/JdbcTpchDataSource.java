@@ -13,16 +13,16 @@
  */
 package io.prestodb.tempto.fulfillment.table.jdbc.tpch;
 
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import io.airlift.tpch.TpchEntity;
 import io.airlift.tpch.TpchTable;
+import io.prestodb.tempto.fulfillment.table.ParallelPartsIterator;
 import io.prestodb.tempto.fulfillment.table.jdbc.RelationalDataSource;
-import io.prestodb.tempto.internal.query.QueryRowMapper;
 
 import java.sql.JDBCType;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.StreamSupport;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -31,36 +31,53 @@ import static java.util.Objects.requireNonNull;
 public class JdbcTpchDataSource
         implements RelationalDataSource
 {
-    private static final Splitter SPLITTER = Splitter.on('|');
-
     private final TpchTable table;
     private final List<JDBCType> columnTypes;
     private final double scaleFactor;
+    private final int parts;
 
     public JdbcTpchDataSource(TpchTable table, List<JDBCType> columns, double scaleFactor)
+    {
+        this(table, columns, scaleFactor, 1);
+    }
+
+    /**
+     * @param parts number of parts the data is generated in, in parallel. Rows of different parts are interleaved.
+     */
+    public JdbcTpchDataSource(TpchTable table, List<JDBCType> columns, double scaleFactor, int parts)
     {
         checkArgument(scaleFactor > 0.0, "scaleFactor should be greater than zero");
+        checkArgument(parts > 0, "parts should be greater than zero");
 
         this.table = requireNonNull(table, "table is null");
         this.columnTypes = ImmutableList.copyOf(columns);
         this.scaleFactor = scaleFactor;
+        this.parts = parts;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public Iterator<List<Object>> getDataRows()
     {
-        @SuppressWarnings("unchecked")
-        Iterable<? extends TpchEntity> tableDataGenerator = table.createGenerator(scaleFactor, 1, 1);
+        TpchRowExtractor<TpchEntity> rowExtractor = new TpchRowExtractor<>(table.getColumns(), columnTypes);
+        if (parts == 1) {
+            return generateRows(rowExtractor, 1);
+        }
+        return new ParallelPartsIterator<>("tpch-" + table.getTableName(), parts, part -> generateRows(rowExtractor, part));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Iterator<List<Object>> generateRows(TpchRowExtractor<TpchEntity> rowExtractor, int part)
+    {
+        Iterable<? extends TpchEntity> tableDataGenerator = table.createGenerator(scaleFactor, part, parts);
         return StreamSupport.stream(tableDataGenerator.spliterator(), false)
-                .map(this::tpchEntityToObjects)
+                .map(rowExtractor::extract)
                 .iterator();
     }
 
-    private List<Object> tpchEntityToObjects(TpchEntity entity)
+    @Override
+    public Optional<String> getDataFingerprint()
     {
-        List<String> columnValues = SPLITTER.splitToList(entity.toLine());
-        QueryRowMapper queryRowMapper = new QueryRowMapper(columnTypes);
-        List<String> valuesWithoutFinalBlank = columnValues.subList(0, columnValues.size() - 1);
-        return queryRowMapper.mapToRow(valuesWithoutFinalBlank).getValues();
+        return Optional.of("tpch:" + table.getTableName() + ":" + scaleFactor + ":" + columnTypes);
     }
 }
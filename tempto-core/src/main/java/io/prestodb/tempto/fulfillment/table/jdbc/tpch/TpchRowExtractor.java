@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.jdbc.tpch;
+
+import io.airlift.tpch.TpchColumn;
+import io.airlift.tpch.TpchEntity;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.prestodb.tempto.internal.query.QueryRowMapper.convertValue;
+
+/**
+ * Converts TPC-H entities to rows using typed column accessors, without rendering entities to text.
+ * Values are of the same types as produced by {@link io.prestodb.tempto.internal.query.QueryRowMapper}
+ * from the text representation of entities.
+ */
+class TpchRowExtractor<E extends TpchEntity>
+{
+    private final Function<E, Object>[] columnExtractors;
+
+    @SuppressWarnings("unchecked")
+    TpchRowExtractor(List<? extends TpchColumn<E>> columns, List<JDBCType> columnTypes)
+    {
+        checkArgument(columns.size() == columnTypes.size(), "Expected %s column types, got %s", columns.size(), columnTypes.size());
+        columnExtractors = new Function[columns.size()];
+        for (int i = 0; i < columns.size(); ++i) {
+            columnExtractors[i] = columnExtractor(columns.get(i), columnTypes.get(i));
+        }
+    }
+
+    List<Object> extract(E entity)
+    {
+        Object[] row = new Object[columnExtractors.length];
+        for (int i = 0; i < columnExtractors.length; ++i) {
+            row[i] = columnExtractors[i].apply(entity);
+        }
+        return Arrays.asList(row);
+    }
+
+    private static <E extends TpchEntity> Function<E, Object> columnExtractor(TpchColumn<E> column, JDBCType type)
+    {
+        switch (column.getType()) {
+            case IDENTIFIER:
+                return integralExtractor(column::getIdentifier, type);
+            case INTEGER:
+                return integralExtractor(column::getInteger, type);
+            case DOUBLE:
+                switch (type) {
+                    case REAL:
+                    case FLOAT:
+                    case DOUBLE:
+                        return column::getDouble;
+                    case DECIMAL:
+                    case NUMERIC:
+                        return entity -> decimalValue(column.getDouble(entity));
+                    default:
+                        return entity -> convertValue(decimalValue(column.getDouble(entity)).toPlainString(), type);
+                }
+            case DATE:
+                if (type == JDBCType.DATE) {
+                    return entity -> Date.valueOf(LocalDate.ofEpochDay(column.getDate(entity)));
+                }
+                return entity -> convertValue(LocalDate.ofEpochDay(column.getDate(entity)).toString(), type);
+            case VARCHAR:
+                switch (type) {
+                    case CHAR:
+                    case VARCHAR:
+                    case LONGVARCHAR:
+                    case LONGNVARCHAR:
+                        return column::getString;
+                    default:
+                        return entity -> convertValue(column.getString(entity), type);
+                }
+            default:
+                throw new IllegalArgumentException("Unsupported TPC-H column type: " + column.getType());
+        }
+    }
+
+    /**
+     * TPC-H doubles are amounts with two fraction digits, rendered in text with both of them (e.g. {@code 1.50}).
+     */
+    private static BigDecimal decimalValue(double value)
+    {
+        return BigDecimal.valueOf(Math.round(value * 100), 2);
+    }
+
+    private static <E extends TpchEntity> Function<E, Object> integralExtractor(Function<E, Number> accessor, JDBCType type)
+    {
+        switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+                return entity -> accessor.apply(entity).intValue();
+            case BIGINT:
+                return entity -> accessor.apply(entity).longValue();
+            case DECIMAL:
+            case NUMERIC:
+                return entity -> BigDecimal.valueOf(accessor.apply(entity).longValue());
+            default:
+                return entity -> convertValue(String.valueOf(accessor.apply(entity)), type);
+        }
+    }
+}
@@ -16,6 +16,7 @@ package io.prestodb.tempto.internal.convention;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import io.prestodb.tempto.assertions.QueryAssert.Row;
 import io.prestodb.tempto.internal.convention.AnnotatedFileParser.SectionParsingResult;
 import io.prestodb.tempto.internal.query.QueryRowMapper;
@@ -24,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.sql.JDBCType;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -95,19 +97,7 @@ public class SqlResultDescriptor
 
     public List<Row> getRows(List<JDBCType> columnTypes)
     {
-        List<Row> values = newArrayList();
-        String delimiter = getColumnDelimiter();
-
-        QueryRowMapper rowMapper = new QueryRowMapper(columnTypes);
-        Splitter valuesSplitter = Splitter.on(delimiter);
-        if (isTrimValues()) {
-            valuesSplitter = valuesSplitter.trimResults();
-        }
-
-        for (String line : sqlSectionParsingResult.getContentLines()) {
-            List<String> rowValues = parseLine(line, delimiter, valuesSplitter);
-            values.add(rowMapper.mapToRow(rowValues));
-        }
+        List<Row> values = newArrayList(iterateRows(columnTypes));
 
         if (isJoinAllRowsToOne()) {
             checkState(columnTypes.size() == 1, "Expected single column result when 'joinAllRowsToOne' property is set, columnTypes: %s", columnTypes);
@@ -120,6 +110,26 @@ public class SqlResultDescriptor
         return values;
     }
 
+    /**
+     * Returns expected rows, mapping each content line lazily. The 'joinAllRowsToOne' property
+     * is not applied, see {@link #getRows(List)}.
+     */
+    public Iterator<Row> iterateRows(List<JDBCType> columnTypes)
+    {
+        String delimiter = getColumnDelimiter();
+
+        QueryRowMapper rowMapper = new QueryRowMapper(columnTypes);
+        Splitter valuesSplitter = Splitter.on(delimiter);
+        if (isTrimValues()) {
+            valuesSplitter = valuesSplitter.trimResults();
+        }
+        Splitter lineSplitter = valuesSplitter;
+
+        return Iterators.transform(
+                sqlSectionParsingResult.getContentLines().iterator(),
+                line -> rowMapper.mapToRow(parseLine(line, delimiter, lineSplitter)));
+    }
+
     public Optional<List<JDBCType>> getExpectedTypes()
     {
         return expectedTypes;
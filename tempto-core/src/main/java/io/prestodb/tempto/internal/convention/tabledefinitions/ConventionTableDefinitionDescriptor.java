@@ -77,6 +77,7 @@ class ConventionTableDefinitionDescriptor
     private final Path ddlFile;
     private ParsedDDLFile parsedDDLFile;
     private final Optional<Path> dataFile;
+    private final Optional<Path> revisionFile;
 
     public ConventionTableDefinitionDescriptor(Path ddlFile)
     {
@@ -99,6 +100,14 @@ class ConventionTableDefinitionDescriptor
         else {
             this.dataFile = Optional.empty();
         }
+
+        Path revisionFile = changeExtension(ddlFile, "data-revision");
+        if (exists(revisionFile) && isRegularFile(revisionFile)) {
+            this.revisionFile = Optional.of(revisionFile);
+        }
+        else {
+            this.revisionFile = Optional.empty();
+        }
     }
 
     private long feed(Path dataFile, Process process)
@@ -121,6 +130,11 @@ class ConventionTableDefinitionDescriptor
         return dataFile;
     }
 
+    public Optional<Path> getRevisionFile()
+    {
+        return revisionFile;
+    }
+
     public ParsedDDLFile getParsedDDLFile()
     {
         if (parsedDDLFile == null) {
@@ -136,6 +150,7 @@ class ConventionTableDefinitionDescriptor
                 .add("name", name)
                 .add("ddlFile", ddlFile)
                 .add("dataFile", dataFile)
+                .add("revisionFile", revisionFile)
                 .toString();
     }
 }
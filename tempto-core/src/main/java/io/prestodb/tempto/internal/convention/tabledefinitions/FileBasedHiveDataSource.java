@@ -18,11 +18,17 @@ import com.google.common.collect.ImmutableSet;
 import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource;
 import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Optional;
 
+import static com.google.common.hash.Hashing.sha256;
+import static com.google.common.io.Files.asByteSource;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.readAllBytes;
 
 public class FileBasedHiveDataSource
         implements HiveDataSource
@@ -51,6 +57,48 @@ public class FileBasedHiveDataSource
                 .orElse(ImmutableSet.of());
     }
 
+    /**
+     * Revision is read from {@code TABLE_NAME.data-revision} file. If there is no such file,
+     * the hash of the data file is used instead.
+     */
+    @Override
+    public Optional<String> revisionMarker()
+    {
+        if (revisionMarker == null) {
+            revisionMarker = tableDefinitionDescriptor.getRevisionFile()
+                    .map(FileBasedHiveDataSource::readRevisionFile)
+                    .orElseGet(this::hashDataFile);
+        }
+        return Optional.of(revisionMarker);
+    }
+
+    private String hashDataFile()
+    {
+        return tableDefinitionDescriptor.getDataFile()
+                .map(FileBasedHiveDataSource::hashFile)
+                .orElse("");
+    }
+
+    private static String hashFile(Path path)
+    {
+        try {
+            return asByteSource(path.toFile()).hash(sha256()).toString();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Could not read file " + path, e);
+        }
+    }
+
+    private static String readRevisionFile(Path path)
+    {
+        try {
+            return new String(readAllBytes(path), UTF_8).trim();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Could not read file " + path, e);
+        }
+    }
+
     private RepeatableContentProducer asRepeatableContentProducer(Path dataFile)
     {
         return () -> newInputStream(dataFile);
@@ -15,6 +15,7 @@
 package io.prestodb.tempto.internal.fulfillment.table;
 
 import com.google.inject.Inject;
+import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.fulfillment.TestStatus;
 import io.prestodb.tempto.fulfillment.table.ImmutableTableRequirement;
 import io.prestodb.tempto.fulfillment.table.ImmutableTablesState;
@@ -28,12 +29,17 @@ import java.util.List;
 public class ImmutableTablesFulfiller
         extends TableRequirementFulfiller<ImmutableTableRequirement>
 {
-    @Inject
     public ImmutableTablesFulfiller(TableManagerDispatcher tableManagerDispatcher)
     {
         super(tableManagerDispatcher, ImmutableTableRequirement.class);
     }
 
+    @Inject
+    public ImmutableTablesFulfiller(TableManagerDispatcher tableManagerDispatcher, Configuration configuration)
+    {
+        super(tableManagerDispatcher, ImmutableTableRequirement.class, configuration);
+    }
+
     @Override
     protected TablesState createState(List<TableInstance> tables)
     {
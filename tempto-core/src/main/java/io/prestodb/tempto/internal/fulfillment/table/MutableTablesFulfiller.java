@@ -15,6 +15,7 @@
 package io.prestodb.tempto.internal.fulfillment.table;
 
 import com.google.inject.Inject;
+import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.fulfillment.TestStatus;
 import io.prestodb.tempto.fulfillment.table.MutableTableRequirement;
 import io.prestodb.tempto.fulfillment.table.MutableTablesState;
@@ -33,12 +34,17 @@ public class MutableTablesFulfiller
 {
     private MutableTablesState mutableTablesState;
 
-    @Inject
     public MutableTablesFulfiller(TableManagerDispatcher tableManagerDispatcher)
     {
         super(tableManagerDispatcher, MutableTableRequirement.class);
     }
 
+    @Inject
+    public MutableTablesFulfiller(TableManagerDispatcher tableManagerDispatcher, Configuration configuration)
+    {
+        super(tableManagerDispatcher, MutableTableRequirement.class, configuration);
+    }
+
     @Override
     protected TablesState createState(List<TableInstance> tables)
     {
@@ -14,35 +14,66 @@
 
 package io.prestodb.tempto.internal.fulfillment.table;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.prestodb.tempto.Requirement;
+import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.context.State;
+import io.prestodb.tempto.context.TestContext;
 import io.prestodb.tempto.fulfillment.RequirementFulfiller;
 import io.prestodb.tempto.fulfillment.table.TableInstance;
 import io.prestodb.tempto.fulfillment.table.TableManager;
 import io.prestodb.tempto.fulfillment.table.TableManagerDispatcher;
 import io.prestodb.tempto.fulfillment.table.TableRequirement;
 import io.prestodb.tempto.fulfillment.table.TablesState;
+import io.prestodb.tempto.query.JdbcConnectionScope;
 import org.slf4j.Logger;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static io.prestodb.tempto.context.ThreadLocalTestContextHolder.popTestContext;
+import static io.prestodb.tempto.context.ThreadLocalTestContextHolder.pushTestContext;
+import static io.prestodb.tempto.context.ThreadLocalTestContextHolder.testContextIfSet;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public abstract class TableRequirementFulfiller<T extends TableRequirement>
         implements RequirementFulfiller
 {
+    public static final String TABLE_FULFILLMENT_PARALLELISM_KEY = "tests.table_fulfillment.parallelism";
+
     private static final Logger LOGGER = getLogger(TableRequirementFulfiller.class);
+    private static final int DEFAULT_TABLE_FULFILLMENT_PARALLELISM = 1;
 
     protected final TableManagerDispatcher tableManagerDispatcher;
     private final Class<T> requirementClass;
+    private final int parallelism;
 
     public TableRequirementFulfiller(TableManagerDispatcher tableManagerDispatcher, Class<T> requirementClass)
     {
+        this(tableManagerDispatcher, requirementClass, DEFAULT_TABLE_FULFILLMENT_PARALLELISM);
+    }
+
+    public TableRequirementFulfiller(TableManagerDispatcher tableManagerDispatcher, Class<T> requirementClass, Configuration configuration)
+    {
+        this(tableManagerDispatcher, requirementClass, configuration.getInt(TABLE_FULFILLMENT_PARALLELISM_KEY).orElse(DEFAULT_TABLE_FULFILLMENT_PARALLELISM));
+    }
+
+    public TableRequirementFulfiller(TableManagerDispatcher tableManagerDispatcher, Class<T> requirementClass, int parallelism)
+    {
+        checkArgument(parallelism > 0, "parallelism must be positive");
         this.tableManagerDispatcher = tableManagerDispatcher;
         this.requirementClass = requirementClass;
+        this.parallelism = parallelism;
     }
 
     @Override
@@ -50,18 +81,91 @@ public abstract class TableRequirementFulfiller<T extends TableRequirement>
     {
         LOGGER.debug("fulfilling tables for: " + requirementClass);
 
-        List<TableInstance> tables = requirements.stream()
+        List<T> tableRequirements = requirements.stream()
                 .filter(requirement -> requirement.getClass().isAssignableFrom(requirementClass))
                 .map(requirement -> (T) requirement)
                 .map(requirement -> requirement.copyWithDatabase(getDatabaseName(requirement)))
                 .map(requirement -> (T) requirement)
                 .distinct()
-                .map(this::createTable)
                 .collect(toList());
 
+        tableRequirements.stream()
+                .map(this::getTableManager)
+                .distinct()
+                .forEach(TableManager::dropStaleMutableTables);
+
+        List<TableInstance> tables;
+        if (parallelism == 1 || tableRequirements.size() <= 1) {
+            tables = tableRequirements.stream()
+                    .map(this::createTable)
+                    .collect(toList());
+        }
+        else {
+            tables = createTablesInParallel(tableRequirements);
+        }
+
         return ImmutableSet.of(createState(tables));
     }
 
+    /**
+     * Creates tables using a pool of workers. Table managers are expected to be thread safe. Each table is created
+     * in a {@link JdbcConnectionScope}, so JDBC query executors use connections of the worker, which are closed
+     * once the table is created. Returned tables are in the order of given requirements.
+     */
+    private List<TableInstance> createTablesInParallel(List<T> tableRequirements)
+    {
+        Optional<TestContext> testContext = testContextIfSet();
+        ExecutorService executor = newFixedThreadPool(
+                Math.min(parallelism, tableRequirements.size()),
+                new ThreadFactoryBuilder().setNameFormat("table-fulfillment-%d").setDaemon(true).build());
+        try {
+            List<Future<TableInstance>> futures = tableRequirements.stream()
+                    .map(tableRequirement -> executor.submit(() -> createTable(testContext, tableRequirement)))
+                    .collect(toList());
+
+            ImmutableList.Builder<TableInstance> tables = ImmutableList.builder();
+            RuntimeException failure = null;
+            for (int i = 0; i < futures.size(); ++i) {
+                try {
+                    tables.add(getUninterruptibly(futures.get(i)));
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    LOGGER.debug("failed to create table for {}", tableRequirements.get(i), cause);
+                    if (failure == null) {
+                        failure = new RuntimeException("Could not fulfill table requirements", cause);
+                    }
+                    else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return tables.build();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TableInstance createTable(Optional<TestContext> testContext, T tableRequirement)
+    {
+        try (JdbcConnectionScope ignored = JdbcConnectionScope.open()) {
+            if (!testContext.isPresent()) {
+                return createTable(tableRequirement);
+            }
+            pushTestContext(testContext.get());
+            try {
+                return createTable(tableRequirement);
+            }
+            finally {
+                popTestContext();
+            }
+        }
+    }
+
     private String getDatabaseName(T requirement)
     {
         return getTableManager(requirement).getDatabaseName();
@@ -71,9 +175,7 @@ public abstract class TableRequirementFulfiller<T extends TableRequirement>
 
     private TableInstance createTable(T tableRequirement)
     {
-        TableManager tableManager = getTableManager(tableRequirement);
-        tableManager.dropStaleMutableTables();
-        return createTable(tableManager, tableRequirement);
+        return createTable(getTableManager(tableRequirement), tableRequirement);
     }
 
     private TableManager getTableManager(T tableRequirement)
@@ -14,36 +14,88 @@
 package io.prestodb.tempto.internal.fulfillment.table.cassandra;
 
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
 import com.datastax.oss.driver.api.core.cql.BatchStatement;
-import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
 import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import io.prestodb.tempto.internal.stats.CallStats;
+import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.joining;
+import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Loads rows with UNLOGGED batches executed asynchronously, with at most {@code maxInFlightBatches} batches
+ * being executed at a time. Rows are grouped by partition key, so that each batch targets a single partition.
+ */
 public class CassandraBatchLoader
 {
+    private static final Logger LOGGER = getLogger(CassandraBatchLoader.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 16;
+    private static final int MAX_RETRIES = 3;
+    // bounds memory used by batches of partitions which are not yet full
+    private static final int MAX_PENDING_PARTITIONS = 1000;
+
     private final CqlSession session;
+    private final Function<String, PreparedStatement> statementPreparer;
+    private final String tableName;
     private final String insertQuery;
     private final int columnsCount;
     private final int batchRowsCount;
+    private final int maxInFlightBatches;
+
+    private final CallStats batchStats = new CallStats();
+    private final AtomicLong retries = new AtomicLong();
 
     public CassandraBatchLoader(CqlSession session, String tableName, List<String> columnNames, int batchRowsCount)
+    {
+        this(session, tableName, columnNames, batchRowsCount, DEFAULT_MAX_IN_FLIGHT_BATCHES);
+    }
+
+    public CassandraBatchLoader(CqlSession session, String tableName, List<String> columnNames, int batchRowsCount, int maxInFlightBatches)
+    {
+        this(session, session::prepare, tableName, columnNames, batchRowsCount, maxInFlightBatches);
+    }
+
+    public CassandraBatchLoader(
+            CqlSession session,
+            Function<String, PreparedStatement> statementPreparer,
+            String tableName,
+            List<String> columnNames,
+            int batchRowsCount,
+            int maxInFlightBatches)
     {
         this.session = requireNonNull(session, "session is null");
-        requireNonNull(tableName, "tableName is null");
+        this.statementPreparer = requireNonNull(statementPreparer, "statementPreparer is null");
+        this.tableName = requireNonNull(tableName, "tableName is null");
         requireNonNull(columnNames, "columnNames is null");
         this.insertQuery = createInsertQuery(tableName, columnNames);
         this.columnsCount = columnNames.size();
         checkArgument(batchRowsCount > 0, "batchRowsCount must be greater then zero");
         this.batchRowsCount = batchRowsCount;
+        checkArgument(maxInFlightBatches > 0, "maxInFlightBatches must be greater then zero");
+        this.maxInFlightBatches = maxInFlightBatches;
     }
 
     private static String createInsertQuery(String tableName, List<String> columnNames)
@@ -67,30 +119,105 @@ public class CassandraBatchLoader
 
     public void load(Iterator<List<Object>> rows)
     {
-        PreparedStatement statement = session.prepare(insertQuery);
+        PreparedStatement statement = statementPreparer.apply(insertQuery);
+        List<Integer> partitionKeyIndices = statement.getPartitionKeyIndices();
 
-        BatchStatementBuilder batchBuilder = createBatchStatementBuilder();
-        int currentBatchSize = 0;
+        Semaphore inFlightBatches = new Semaphore(maxInFlightBatches);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Map<List<Object>, List<BatchableStatement<?>>> pendingBatches = new HashMap<>();
+        long start = System.nanoTime();
+        long rowsCount = 0;
 
-        while (rows.hasNext()) {
-            if (currentBatchSize >= batchRowsCount) {
-                session.execute(batchBuilder.build());
-                batchBuilder = createBatchStatementBuilder();
-                currentBatchSize = 0;
+        try {
+            while (rows.hasNext() && failure.get() == null) {
+                List<Object> row = rows.next();
+                checkState(row.size() == columnsCount, "values count in a row is expected to be %d, but found: %d", columnsCount, row.size());
+                List<Object> partitionKey = partitionKey(row, partitionKeyIndices);
+                List<BatchableStatement<?>> batch = pendingBatches.computeIfAbsent(partitionKey, key -> new ArrayList<>(batchRowsCount));
+                batch.add(statement.bind(row.toArray()));
+                rowsCount++;
+                if (batch.size() >= batchRowsCount) {
+                    pendingBatches.remove(partitionKey);
+                    submit(batch, inFlightBatches, failure);
+                }
+                else if (pendingBatches.size() > MAX_PENDING_PARTITIONS) {
+                    pendingBatches.values().forEach(pendingBatch -> submit(pendingBatch, inFlightBatches, failure));
+                    pendingBatches.clear();
+                }
             }
-            List<Object> row = rows.next();
-            checkState(row.size() == columnsCount, "values count in a row is expected to be %d, but found: %d", columnsCount, row.size());
-            batchBuilder.addStatement(statement.bind(row.toArray()));
-            currentBatchSize++;
+            if (failure.get() == null) {
+                pendingBatches.values().forEach(pendingBatch -> submit(pendingBatch, inFlightBatches, failure));
+            }
+        }
+        finally {
+            // batches sent before a failure must complete, so that they do not race with the table cleanup
+            inFlightBatches.acquireUninterruptibly(maxInFlightBatches);
         }
+        if (failure.get() != null) {
+            throw new RuntimeException("Could not load data into table " + tableName, failure.get());
+        }
+
+        long millis = NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info("Loaded {} rows into {} in {} ms ({} rows/s), batches: {}, retries: {}",
+                rowsCount, tableName, millis, rowsCount * 1000 / Math.max(1, millis), batchStats, retries.get());
+    }
 
-        if (currentBatchSize > 0) {
-            session.execute(batchBuilder.build());
+    public CallStats getBatchStats()
+    {
+        return batchStats;
+    }
+
+    public long getRetries()
+    {
+        return retries.get();
+    }
+
+    private static List<Object> partitionKey(List<Object> row, List<Integer> partitionKeyIndices)
+    {
+        List<Object> partitionKey = new ArrayList<>(partitionKeyIndices.size());
+        for (int index : partitionKeyIndices) {
+            partitionKey.add(row.get(index));
         }
+        return partitionKey;
+    }
+
+    private void submit(List<BatchableStatement<?>> statements, Semaphore inFlightBatches, AtomicReference<Throwable> failure)
+    {
+        if (failure.get() != null) {
+            return;
+        }
+        inFlightBatches.acquireUninterruptibly();
+        BatchStatement batch = BatchStatement.newInstance(DefaultBatchType.UNLOGGED, statements)
+                .setIdempotent(true);
+        execute(batch, 0, inFlightBatches, failure);
+    }
+
+    private void execute(BatchStatement batch, int attempt, Semaphore inFlightBatches, AtomicReference<Throwable> failure)
+    {
+        long start = System.nanoTime();
+        session.executeAsync(batch).whenComplete((result, throwable) -> {
+            batchStats.record(System.nanoTime() - start, throwable != null);
+            if (throwable == null) {
+                inFlightBatches.release();
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (attempt < MAX_RETRIES && isRetryable(cause) && failure.get() == null) {
+                retries.incrementAndGet();
+                LOGGER.debug("retrying batch insert into {} after failure", tableName, cause);
+                execute(batch, attempt + 1, inFlightBatches, failure);
+                return;
+            }
+            failure.compareAndSet(null, cause);
+            inFlightBatches.release();
+        });
     }
 
-    private static BatchStatementBuilder createBatchStatementBuilder()
+    private static boolean isRetryable(Throwable throwable)
     {
-        return BatchStatement.builder(DefaultBatchType.UNLOGGED);
+        return throwable instanceof WriteTimeoutException
+                || throwable instanceof UnavailableException
+                || throwable instanceof OverloadedException
+                || throwable instanceof DriverTimeoutException;
     }
 }
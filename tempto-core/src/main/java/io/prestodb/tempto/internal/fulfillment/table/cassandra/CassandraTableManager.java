@@ -29,6 +29,7 @@ import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -36,6 +37,8 @@ import static com.google.common.base.Preconditions.checkState;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.CREATED;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.LOADED;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.PREPARED;
+import static io.prestodb.tempto.fulfillment.table.ParallelPartsIterator.closeIterator;
+import static io.prestodb.tempto.internal.fulfillment.table.cassandra.CassandraBatchLoader.DEFAULT_MAX_IN_FLIGHT_BATCHES;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
@@ -54,6 +57,7 @@ public class CassandraTableManager
     private final String defaultKeySpace;
     private final boolean skipCreateSchema;
     private final int insertBatchRowsCount;
+    private final int insertMaxInFlightBatches;
 
     @Inject
     public CassandraTableManager(
@@ -67,6 +71,7 @@ public class CassandraTableManager
         this.defaultKeySpace = configuration.getStringMandatory("databases." + databaseName + ".default_schema");
         this.skipCreateSchema = configuration.getBoolean("databases." + databaseName + ".skip_create_schema").orElse(false);
         this.insertBatchRowsCount = configuration.getInt("databases." + databaseName + ".insert_batch_rows_count").orElse(10);
+        this.insertMaxInFlightBatches = configuration.getInt("databases." + databaseName + ".insert_max_in_flight_batches").orElse(DEFAULT_MAX_IN_FLIGHT_BATCHES);
     }
 
     @Override
@@ -98,8 +103,20 @@ public class CassandraTableManager
 
         List<String> columnNames = queryExecutor.get().getColumnNames(tableName.getSchema().get(), tableName.getSchemalessNameInDatabase());
 
-        CassandraBatchLoader loader = new CassandraBatchLoader(queryExecutor.get().getSession(), tableName.getNameInDatabase(), columnNames, insertBatchRowsCount);
-        loader.load(dataSource.getDataRows());
+        CassandraBatchLoader loader = new CassandraBatchLoader(
+                queryExecutor.get().getSession(),
+                queryExecutor.get()::prepare,
+                tableName.getNameInDatabase(),
+                columnNames,
+                insertBatchRowsCount,
+                insertMaxInFlightBatches);
+        Iterator<List<Object>> dataRows = dataSource.getDataRows();
+        try {
+            loader.load(dataRows);
+        }
+        finally {
+            closeIterator(dataRows);
+        }
     }
 
     @Override
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.hive;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashingOutputStream;
+import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource;
+import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatistics;
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Optional;
+
+import static com.google.common.hash.Hashing.sha256;
+import static com.google.common.io.ByteStreams.copy;
+import static com.google.common.io.ByteStreams.nullOutputStream;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Identifies a {@link HiveDataSource} by its content, so that identical data can be stored once in a location
+ * derived from the content key. The content key is also used as the revision marker, so unchanged data is not
+ * uploaded again.
+ */
+class ContentAddressedDataSource
+        implements HiveDataSource
+{
+    private final HiveDataSource delegate;
+    private final String contentKey;
+
+    /**
+     * @param contentKey key computed with {@link #hashData(HiveDataSource)}
+     */
+    ContentAddressedDataSource(HiveDataSource delegate, String contentKey)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.contentKey = requireNonNull(contentKey, "contentKey is null");
+    }
+
+    /**
+     * Files are stored as {@code data_<index>}, so the hash of their contents in order, together with the number
+     * of files, determines the stored data and its layout.
+     *
+     * @return hash of all the files of the data source
+     */
+    static String hashData(HiveDataSource dataSource)
+    {
+        Hasher hasher = sha256().newHasher();
+        int filesCount = 0;
+        for (RepeatableContentProducer file : dataSource.data()) {
+            HashingOutputStream fileHash = new HashingOutputStream(sha256(), nullOutputStream());
+            try (InputStream content = file.getInputStream()) {
+                copy(content, fileHash);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not read data of " + dataSource.getPathSuffix(), e);
+            }
+            hasher.putBytes(fileHash.hash().asBytes());
+            filesCount++;
+        }
+        hasher.putInt(filesCount);
+        return hasher.hash().toString();
+    }
+
+    @Override
+    public String getPathSuffix()
+    {
+        return "shared/" + contentKey;
+    }
+
+    @Override
+    public Collection<RepeatableContentProducer> data()
+    {
+        return delegate.data();
+    }
+
+    @Override
+    public Optional<String> revisionMarker()
+    {
+        return Optional.of(contentKey);
+    }
+
+    @Override
+    public Optional<TableStatistics> getStatistics()
+    {
+        return delegate.getStatistics();
+    }
+}
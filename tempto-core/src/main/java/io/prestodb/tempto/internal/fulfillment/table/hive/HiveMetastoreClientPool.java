@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestodb.tempto.internal.fulfillment.table.hive;
+
+import com.google.common.collect.ImmutableSortedMap;
+import io.prestodb.tempto.internal.stats.CallStats;
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore;
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps up to {@code poolSize} connections to the Hive metastore, each used by a single thread at a time.
+ * <p>
+ * Connections idle for a while are health checked before being borrowed again. Connections on which a call
+ * failed are closed rather than returned to the pool, and calls failing on transport errors are retried
+ * once on a new connection.
+ */
+class HiveMetastoreClientPool
+        implements AutoCloseable
+{
+    private static final Logger LOGGER = getLogger(HiveMetastoreClientPool.class);
+    private static final long HEALTH_CHECK_IDLE_NANOS = SECONDS.toNanos(30);
+    private static final int MAX_CALL_ATTEMPTS = 2;
+
+    private final ConnectionFactory connectionFactory;
+    private final int poolSize;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Map<String, CallStats> callStats = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    HiveMetastoreClientPool(ConnectionFactory connectionFactory, int poolSize)
+    {
+        checkArgument(poolSize > 0, "poolSize must be greater than 0: %s", poolSize);
+        this.connectionFactory = requireNonNull(connectionFactory, "connectionFactory is null");
+        this.poolSize = poolSize;
+        this.permits = new Semaphore(poolSize, true);
+    }
+
+    int getPoolSize()
+    {
+        return poolSize;
+    }
+
+    <T> T call(String method, MetastoreCall<T> call)
+            throws TException
+    {
+        for (int attempt = 1; ; ++attempt) {
+            PooledConnection connection = borrow();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                T result = call.call(connection.getClient());
+                failed = false;
+                release(connection);
+                return result;
+            }
+            catch (TTransportException e) {
+                discard(connection);
+                if (attempt >= MAX_CALL_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Metastore call {} failed, retrying on a new connection", method, e);
+            }
+            catch (TException | RuntimeException e) {
+                // a failed call may leave unread response on the connection
+                discard(connection);
+                throw e;
+            }
+            finally {
+                getCallStats(method).record(System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    /**
+     * @return statistics of calls to the metastore, by method name
+     */
+    Map<String, CallStats> getCallStats()
+    {
+        return ImmutableSortedMap.copyOf(callStats);
+    }
+
+    private CallStats getCallStats(String method)
+    {
+        return callStats.computeIfAbsent(method, ignored -> new CallStats());
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            closeQuietly(connection);
+        }
+        if (!callStats.isEmpty()) {
+            LOGGER.debug("Hive metastore calls: {}", getCallStats());
+        }
+    }
+
+    private PooledConnection borrow()
+            throws TTransportException
+    {
+        checkState(!closed, "pool is closed");
+        permits.acquireUninterruptibly();
+        try {
+            PooledConnection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                if (isHealthy(connection)) {
+                    return connection;
+                }
+                closeQuietly(connection);
+            }
+            return new PooledConnection(connectionFactory.connect());
+        }
+        catch (TTransportException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection connection)
+    {
+        connection.lastUsedNanos = System.nanoTime();
+        if (closed) {
+            closeQuietly(connection);
+        }
+        else {
+            idleConnections.offerFirst(connection);
+        }
+        permits.release();
+    }
+
+    private void discard(PooledConnection connection)
+    {
+        closeQuietly(connection);
+        permits.release();
+    }
+
+    private boolean isHealthy(PooledConnection connection)
+    {
+        if (!connection.connection.isOpen()) {
+            return false;
+        }
+        if (System.nanoTime() - connection.lastUsedNanos < HEALTH_CHECK_IDLE_NANOS) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            connection.getClient().get_databases("default");
+            failed = false;
+            return true;
+        }
+        catch (TException | RuntimeException e) {
+            LOGGER.debug("Idle metastore connection is broken, reconnecting", e);
+            return false;
+        }
+        finally {
+            getCallStats("health_check").record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private static void closeQuietly(PooledConnection connection)
+    {
+        try {
+            connection.connection.close();
+        }
+        catch (RuntimeException e) {
+            LOGGER.debug("Exception happened during closing metastore connection.", e);
+        }
+    }
+
+    @FunctionalInterface
+    interface MetastoreCall<T>
+    {
+        T call(ThriftHiveMetastore.Iface client)
+                throws TException;
+    }
+
+    @FunctionalInterface
+    interface ConnectionFactory
+    {
+        MetastoreConnection connect()
+                throws TTransportException;
+    }
+
+    interface MetastoreConnection
+    {
+        ThriftHiveMetastore.Iface getClient();
+
+        boolean isOpen();
+
+        void close();
+    }
+
+    private static class PooledConnection
+    {
+        private final MetastoreConnection connection;
+        private long lastUsedNanos = System.nanoTime();
+
+        PooledConnection(MetastoreConnection connection)
+        {
+            this.connection = requireNonNull(connection, "connection is null");
+        }
+
+        ThriftHiveMetastore.Iface getClient()
+        {
+            return connection.getClient();
+        }
+    }
+}
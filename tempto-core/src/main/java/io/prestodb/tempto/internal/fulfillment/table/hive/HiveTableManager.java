@@ -13,31 +13,52 @@
  */
 package io.prestodb.tempto.internal.fulfillment.table.hive;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
+import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State;
 import io.prestodb.tempto.fulfillment.table.TableDefinition;
 import io.prestodb.tempto.fulfillment.table.TableHandle;
 import io.prestodb.tempto.fulfillment.table.TableManager;
 import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource;
 import io.prestodb.tempto.fulfillment.table.hive.HiveTableDefinition;
+import io.prestodb.tempto.fulfillment.table.hive.HiveTableDefinition.PartitionDefinition;
+import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatistics;
+import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatisticsRepository;
 import io.prestodb.tempto.internal.fulfillment.table.AbstractTableManager;
 import io.prestodb.tempto.internal.fulfillment.table.TableName;
 import io.prestodb.tempto.internal.fulfillment.table.TableNameGenerator;
+import io.prestodb.tempto.internal.fulfillment.table.hive.statistics.TableStatisticsCollector;
 import io.prestodb.tempto.internal.hadoop.hdfs.HdfsDataSourceWriter;
 import io.prestodb.tempto.query.QueryExecutor;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.LOADED;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.PREPARED;
 import static java.lang.Integer.parseInt;
+import static java.lang.Math.min;
 import static java.lang.String.format;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
 
 @TableManager.Descriptor(tableDefinitionClass = HiveTableDefinition.class, type = "HIVE")
@@ -47,6 +68,12 @@ public class HiveTableManager
 {
     private static final Logger LOGGER = getLogger(HiveTableManager.class);
 
+    public static final int DEFAULT_PARTITION_UPLOAD_PARALLELISM = 4;
+    private static final int ADD_PARTITIONS_BATCH_SIZE = 100;
+    private static final String STATISTICS_METADATA_NAME = "statistics";
+    private static final int COLLECTED_STATISTICS_CACHE_SIZE = 1000;
+    private static final int CONTENT_KEYS_CACHE_SIZE = 1000;
+
     private final QueryExecutor queryExecutor;
     private final HdfsDataSourceWriter hdfsDataSourceWriter;
     private final String testDataBasePath;
@@ -55,6 +82,18 @@ public class HiveTableManager
     private final String hiveDatabasePath;
     private final boolean injectStatsForImmutableTables;
     private final boolean injectStatsForMutableTables;
+    private final int partitionUploadParallelism;
+    private final boolean shareMutableTablesData;
+    // statistics collected during upload, by data source revision and table columns
+    private final Cache<String, TableStatistics> collectedStatistics = CacheBuilder.newBuilder()
+            .maximumSize(COLLECTED_STATISTICS_CACHE_SIZE)
+            .build();
+    // content keys of shared data, by data source revision
+    private final Cache<String, String> contentKeys = CacheBuilder.newBuilder()
+            .maximumSize(CONTENT_KEYS_CACHE_SIZE)
+            .build();
+    // concurrent uploads to the same location, e.g. of shared data, would remove each other's files
+    private final ConcurrentMap<String, Object> uploadLocks = new ConcurrentHashMap<>();
 
     @Inject
     public HiveTableManager(
@@ -67,18 +106,24 @@ public class HiveTableManager
             @Named("inject_stats_for_immutable_tables") boolean injectStatsForImmutableTables,
             @Named("inject_stats_for_mutable_tables") boolean injectStatsForMutableTables,
             @Named("metastore.host") String thriftHost,
-            @Named("metastore.port") String thriftPort)
+            @Named("metastore.port") String thriftPort,
+            Configuration configuration)
     {
         this(
                 queryExecutor,
                 hdfsDataSourceWriter,
                 tableNameGenerator,
-                new HiveThriftClient(thriftHost, parseInt(thriftPort)),
+                new HiveThriftClient(
+                        thriftHost,
+                        parseInt(thriftPort),
+                        configuration.getInt("databases." + databaseName + ".metastore.pool_size").orElse(HiveThriftClient.DEFAULT_POOL_SIZE)),
                 testDataBasePath,
                 databaseName,
                 databasePath,
                 injectStatsForImmutableTables,
-                injectStatsForMutableTables);
+                injectStatsForMutableTables,
+                configuration.getInt("databases." + databaseName + ".partition_upload_parallelism").orElse(DEFAULT_PARTITION_UPLOAD_PARALLELISM),
+                configuration.getBoolean("databases." + databaseName + ".share_mutable_tables_data").orElse(false));
     }
 
     public HiveTableManager(
@@ -91,6 +136,33 @@ public class HiveTableManager
             String databasePath,
             boolean injectStatsForImmutableTables,
             boolean injectStatsForMutableTables)
+    {
+        this(
+                queryExecutor,
+                hdfsDataSourceWriter,
+                tableNameGenerator,
+                hiveThriftClient,
+                testDataBasePath,
+                databaseName,
+                databasePath,
+                injectStatsForImmutableTables,
+                injectStatsForMutableTables,
+                DEFAULT_PARTITION_UPLOAD_PARALLELISM,
+                false);
+    }
+
+    public HiveTableManager(
+            QueryExecutor queryExecutor,
+            HdfsDataSourceWriter hdfsDataSourceWriter,
+            TableNameGenerator tableNameGenerator,
+            HiveThriftClient hiveThriftClient,
+            String testDataBasePath,
+            String databaseName,
+            String databasePath,
+            boolean injectStatsForImmutableTables,
+            boolean injectStatsForMutableTables,
+            int partitionUploadParallelism,
+            boolean shareMutableTablesData)
     {
         super(queryExecutor, tableNameGenerator);
         this.hiveThriftClient = hiveThriftClient;
@@ -105,23 +177,57 @@ public class HiveTableManager
         this.hiveDatabasePath = databasePath;
         this.injectStatsForImmutableTables = injectStatsForImmutableTables;
         this.injectStatsForMutableTables = injectStatsForMutableTables;
+        checkArgument(partitionUploadParallelism > 0, "partitionUploadParallelism must be greater than 0: %s", partitionUploadParallelism);
+        this.partitionUploadParallelism = partitionUploadParallelism;
+        this.shareMutableTablesData = shareMutableTablesData;
     }
 
     @Override
     public HiveTableInstance createImmutable(HiveTableDefinition tableDefinition, TableHandle tableHandle)
     {
-        checkState(!tableDefinition.isPartitioned(), "Partitioning not supported for immutable tables");
         TableName tableName = createImmutableTableName(tableHandle);
         LOGGER.debug("creating immutable table {}", tableHandle.getName());
 
+        if (tableDefinition.isPartitioned()) {
+            return createImmutablePartitioned(tableDefinition, tableName);
+        }
+
+        boolean injectStats = tableDefinition.getInjectStats().orElse(injectStatsForImmutableTables);
         String tableDataPath = getImmutableTableHdfsPath(tableDefinition.getDataSource());
-        uploadTableData(tableDataPath, tableDefinition.getDataSource());
+        Optional<TableStatistics> statistics = uploadTableData(tableDefinition, tableDataPath, tableDefinition.getDataSource(), injectStats);
 
         dropTableIgnoreError(tableName);
         createTable(tableDefinition, tableName, Optional.of(tableDataPath));
         markTableAsExternal(tableName);
+        if (injectStats) {
+            injectStatistics(tableDefinition, tableName, statistics, tableDefinition.getInjectStats().orElse(false));
+        }
+
+        return new HiveTableInstance(tableName, tableDefinition);
+    }
+
+    /**
+     * Partitions data is stored at locations derived from its content, as data sources of different partitions
+     * may share a path suffix. Identical data is shared between partitions and tables and reused across runs.
+     * The table is external, so dropping it keeps the data.
+     */
+    private HiveTableInstance createImmutablePartitioned(HiveTableDefinition tableDefinition, TableName tableName)
+    {
+        List<PartitionDefinition> partitionDefinitions = tableDefinition.getPartitionDefinitions();
+        List<HiveDataSource> dataSources = getDataSources(partitionDefinitions).stream()
+                .map(this::contentAddressed)
+                .collect(toList());
+        List<String> partitionDataPaths = dataSources.stream()
+                .map(this::getImmutableTableHdfsPath)
+                .collect(toList());
+        uploadPartitionsData(dataSources, partitionDataPaths);
+
+        dropTableIgnoreError(tableName);
+        createTable(tableDefinition, tableName, Optional.of(getImmutablePartitionedTableHdfsPath(tableName)));
+        markTableAsExternal(tableName);
+        addPartitions(tableName, partitionDefinitions, partitionDataPaths);
         if (tableDefinition.getInjectStats().orElse(injectStatsForImmutableTables)) {
-            injectStatistics(tableDefinition, tableName, tableDefinition.getInjectStats().orElse(false));
+            injectStatistics(tableDefinition, tableName, Optional.empty(), tableDefinition.getInjectStats().orElse(false));
         }
 
         return new HiveTableInstance(tableName, tableDefinition);
@@ -137,26 +243,49 @@ public class HiveTableManager
             return new HiveTableInstance(tableName, tableDefinition);
         }
 
-        createTable(tableDefinition, tableName, Optional.empty());
-
+        boolean shareData = state == LOADED && tableDefinition.getShareMutableData().orElse(shareMutableTablesData);
+        boolean injectStats = state == LOADED && tableDefinition.getInjectStats().orElse(injectStatsForMutableTables);
+        Optional<TableStatistics> statistics = Optional.empty();
         if (tableDefinition.isPartitioned()) {
-            int partitionId = 0;
-            for (HiveTableDefinition.PartitionDefinition partitionDefinition : tableDefinition.getPartitionDefinitions()) {
-                String partitionDataPath = getMutableTableHdfsPath(tableName, Optional.of(partitionId));
-                if (state == LOADED) {
-                    uploadTableData(partitionDataPath, partitionDefinition.getDataSource());
+            createTable(tableDefinition, tableName, Optional.empty());
+            List<PartitionDefinition> partitionDefinitions = tableDefinition.getPartitionDefinitions();
+            List<HiveDataSource> dataSources = getDataSources(partitionDefinitions);
+            List<String> partitionDataPaths = new ArrayList<>();
+            if (shareData) {
+                // dropping the table must not remove shared partitions data
+                markTableAsExternal(tableName);
+                dataSources = dataSources.stream()
+                        .map(this::contentAddressed)
+                        .collect(toList());
+                dataSources.forEach(dataSource -> partitionDataPaths.add(getImmutableTableHdfsPath(dataSource)));
+            }
+            else {
+                for (int partitionId = 0; partitionId < partitionDefinitions.size(); ++partitionId) {
+                    partitionDataPaths.add(getMutableTableHdfsPath(tableName, Optional.of(partitionId)));
                 }
-                queryExecutor.executeQuery(partitionDefinition.getAddPartitionTableDDL(tableName, partitionDataPath));
-                partitionId++;
             }
+            if (state == LOADED) {
+                uploadPartitionsData(dataSources, partitionDataPaths);
+            }
+            addPartitions(tableName, partitionDefinitions, partitionDataPaths);
+        }
+        else if (shareData) {
+            HiveDataSource dataSource = contentAddressed(tableDefinition.getDataSource());
+            String tableDataPath = getImmutableTableHdfsPath(dataSource);
+            statistics = uploadTableData(tableDefinition, tableDataPath, dataSource, injectStats);
+            createTable(tableDefinition, tableName, Optional.of(tableDataPath));
+            markTableAsExternal(tableName);
         }
-        else if (state == LOADED) {
-            String tableDataPath = getMutableTableHdfsPath(tableName, Optional.empty());
-            uploadTableData(tableDataPath, tableDefinition.getDataSource());
+        else {
+            createTable(tableDefinition, tableName, Optional.empty());
+            if (state == LOADED) {
+                String tableDataPath = getMutableTableHdfsPath(tableName, Optional.empty());
+                statistics = uploadTableData(tableDefinition, tableDataPath, tableDefinition.getDataSource(), injectStats);
+            }
         }
 
-        if (state == LOADED && tableDefinition.getInjectStats().orElse(injectStatsForMutableTables)) {
-            injectStatistics(tableDefinition, tableName, tableDefinition.getInjectStats().orElse(false));
+        if (injectStats) {
+            injectStatistics(tableDefinition, tableName, statistics, tableDefinition.getInjectStats().orElse(false));
         }
 
         return new HiveTableInstance(tableName, tableDefinition);
@@ -174,9 +303,136 @@ public class HiveTableManager
         return HiveTableDefinition.class;
     }
 
+    private static List<HiveDataSource> getDataSources(List<PartitionDefinition> partitionDefinitions)
+    {
+        return partitionDefinitions.stream()
+                .map(PartitionDefinition::getDataSource)
+                .collect(toList());
+    }
+
+    /**
+     * Statistics of data sources not providing them are collected while the data is uploaded, using columns of the
+     * table DDL. They are stored with the data on HDFS, so they are available also when upload of unchanged data is skipped.
+     */
+    private Optional<TableStatistics> uploadTableData(HiveTableDefinition tableDefinition, String tableDataPath, HiveDataSource dataSource, boolean collectStatistics)
+    {
+        Optional<TableStatisticsCollector> collector = Optional.empty();
+        if (collectStatistics && !dataSource.getStatistics().isPresent()) {
+            collector = TableStatisticsCollector.forCreateTableDDL(tableDefinition.getCreateTableDDL(tableDefinition.getName(), Optional.empty()));
+        }
+        if (!collector.isPresent()) {
+            uploadTableData(tableDataPath, dataSource);
+            return dataSource.getStatistics();
+        }
+
+        String fingerprint = collector.get().getFingerprint();
+        Optional<String> cacheKey = dataSource.revisionMarker()
+                .map(revisionMarker -> dataSource.getPathSuffix() + "@" + revisionMarker + "@" + fingerprint);
+        Optional<TableStatistics> statistics = cacheKey.map(collectedStatistics::getIfPresent);
+        if (statistics.isPresent()) {
+            uploadTableData(tableDataPath, dataSource);
+            return statistics;
+        }
+
+        uploadTableData(tableDataPath, collector.get().collectingFrom(dataSource));
+        statistics = collector.get().getStatistics();
+        if (statistics.isPresent()) {
+            hdfsDataSourceWriter.setMetadata(tableDataPath, STATISTICS_METADATA_NAME, fingerprint + " " + TableStatisticsRepository.toJson(statistics.get()));
+        }
+        else {
+            // upload of unchanged data was skipped
+            statistics = hdfsDataSourceWriter.getMetadata(tableDataPath, STATISTICS_METADATA_NAME)
+                    .filter(metadata -> metadata.startsWith(fingerprint + " "))
+                    .map(metadata -> TableStatisticsRepository.fromJson(metadata.substring(fingerprint.length() + 1)));
+        }
+        if (statistics.isPresent() && cacheKey.isPresent()) {
+            collectedStatistics.put(cacheKey.get(), statistics.get());
+        }
+        return statistics;
+    }
+
     private void uploadTableData(String tableDataPath, HiveDataSource dataSource)
     {
-        hdfsDataSourceWriter.ensureDataOnHdfs(tableDataPath, dataSource);
+        synchronized (uploadLocks.computeIfAbsent(tableDataPath, path -> new Object())) {
+            hdfsDataSourceWriter.ensureDataOnHdfs(tableDataPath, dataSource);
+        }
+    }
+
+    /**
+     * Data is hashed once per data source revision, as path suffix and revision marker identify the data.
+     */
+    private HiveDataSource contentAddressed(HiveDataSource dataSource)
+    {
+        Optional<String> revisionMarker = dataSource.revisionMarker();
+        if (!revisionMarker.isPresent()) {
+            return new ContentAddressedDataSource(dataSource, ContentAddressedDataSource.hashData(dataSource));
+        }
+        try {
+            String contentKey = contentKeys.get(
+                    dataSource.getPathSuffix() + "@" + revisionMarker.get(),
+                    () -> ContentAddressedDataSource.hashData(dataSource));
+            return new ContentAddressedDataSource(dataSource, contentKey);
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Data of at most {@code partitionUploadParallelism} partitions is uploaded concurrently. Data of partitions
+     * sharing a path is uploaded once, as shared paths are derived from the data content.
+     */
+    private void uploadPartitionsData(List<HiveDataSource> partitionDataSources, List<String> partitionDataPaths)
+    {
+        Map<String, HiveDataSource> dataSources = new LinkedHashMap<>();
+        for (int i = 0; i < partitionDataSources.size(); ++i) {
+            dataSources.putIfAbsent(partitionDataPaths.get(i), partitionDataSources.get(i));
+        }
+
+        if (partitionUploadParallelism == 1 || dataSources.size() == 1) {
+            dataSources.forEach(this::uploadTableData);
+            return;
+        }
+
+        ExecutorService executor = newFixedThreadPool(
+                min(partitionUploadParallelism, dataSources.size()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("hive-partition-upload-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            List<Future<?>> uploads = new ArrayList<>();
+            dataSources.forEach((partitionDataPath, dataSource) ->
+                    uploads.add(executor.submit(() -> uploadTableData(partitionDataPath, dataSource))));
+            for (Future<?> upload : uploads) {
+                upload.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading partitions data", e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("Could not upload partitions data", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Partitions are added with {@code ALTER TABLE ... ADD} statements, each adding up to {@link #ADD_PARTITIONS_BATCH_SIZE} partitions.
+     */
+    private void addPartitions(TableName tableName, List<PartitionDefinition> partitionDefinitions, List<String> partitionDataPaths)
+    {
+        for (int start = 0; start < partitionDefinitions.size(); start += ADD_PARTITIONS_BATCH_SIZE) {
+            StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(tableName.getNameInDatabase()).append(" ADD");
+            for (int i = start; i < min(start + ADD_PARTITIONS_BATCH_SIZE, partitionDefinitions.size()); ++i) {
+                ddl.append(' ').append(partitionDefinitions.get(i).getPartitionClause(partitionDataPaths.get(i)));
+            }
+            queryExecutor.executeQuery(ddl.toString());
+        }
     }
 
     private String getImmutableTableHdfsPath(HiveDataSource dataSource)
@@ -184,6 +440,11 @@ public class HiveTableManager
         return testDataBasePath + "/" + dataSource.getPathSuffix();
     }
 
+    private String getImmutablePartitionedTableHdfsPath(TableName tableName)
+    {
+        return testDataBasePath + "/partitioned_tables/" + tableName.getNameInDatabase();
+    }
+
     private String getMutableTableHdfsPath(TableName tableName, Optional<Integer> partitionId)
     {
         StringBuilder sb = new StringBuilder();
@@ -208,13 +469,13 @@ public class HiveTableManager
         queryExecutor.executeQuery(format("ALTER TABLE %s SET TBLPROPERTIES('EXTERNAL'='TRUE')", tableName.getNameInDatabase()));
     }
 
-    private void injectStatistics(HiveTableDefinition tableDefinition, TableName tableName, boolean mustInject)
+    private void injectStatistics(HiveTableDefinition tableDefinition, TableName tableName, Optional<TableStatistics> statistics, boolean mustInject)
     {
-        if (tableDefinition.isPartitioned() || !tableDefinition.getDataSource().getStatistics().isPresent()) {
+        if (tableDefinition.isPartitioned() || !statistics.isPresent()) {
             checkArgument(!mustInject, "Injecting statistics requested, but injecting is not possible");
             return;
         }
-        hiveThriftClient.setStatistics(tableName, tableDefinition.getDataSource().getStatistics().get());
+        hiveThriftClient.setStatistics(tableName, statistics.get());
     }
 
     @Override
@@ -13,9 +13,12 @@
  */
 package io.prestodb.tempto.internal.fulfillment.table.hive;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.prestodb.tempto.fulfillment.table.hive.statistics.ColumnStatistics;
 import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatistics;
 import io.prestodb.tempto.internal.fulfillment.table.TableName;
+import io.prestodb.tempto.internal.fulfillment.table.hive.HiveMetastoreClientPool.MetastoreConnection;
+import io.prestodb.tempto.internal.stats.CallStats;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsData;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsDesc;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsObj;
@@ -25,7 +28,7 @@ import org.apache.hadoop.hive.metastore.api.Decimal;
 import org.apache.hadoop.hive.metastore.api.DecimalColumnStatsData;
 import org.apache.hadoop.hive.metastore.api.DoubleColumnStatsData;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
-import org.apache.hadoop.hive.metastore.api.GetTableRequest;
+import org.apache.hadoop.hive.metastore.api.GetTablesRequest;
 import org.apache.hadoop.hive.metastore.api.LongColumnStatsData;
 import org.apache.hadoop.hive.metastore.api.StringColumnStatsData;
 import org.apache.hadoop.hive.metastore.api.Table;
@@ -38,56 +41,177 @@ import org.apache.thrift.transport.TTransportException;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.function.Predicate;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.primitives.Shorts.checkedCast;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static java.lang.Integer.parseInt;
+import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
+/**
+ * Sets table statistics in the Hive metastore. Safe for concurrent use: calls are made with connections
+ * from a {@link HiveMetastoreClientPool}, and statistics requested concurrently are set in batches.
+ */
 public class HiveThriftClient
         implements AutoCloseable
 {
-    private final TTransport transport;
-    private final ThriftHiveMetastore.Client client;
+    public static final int DEFAULT_POOL_SIZE = 4;
+    private static final int MAX_STATISTICS_BATCH_SIZE = 100;
+
+    private final HiveMetastoreClientPool clientPool;
+    private final Queue<PendingStatistics> pendingStatistics = new ConcurrentLinkedQueue<>();
+    // limits concurrently set batches, so that statistics requested meanwhile are batched
+    private final Semaphore batchPermits;
 
     public HiveThriftClient(String thriftHost, int thriftPort)
     {
-        try {
-            transport = new TSocket(thriftHost, thriftPort);
-            transport.open();
-        }
-        catch (TTransportException e) {
-            throw new RuntimeException(e);
-        }
-        TBinaryProtocol protocol = new TBinaryProtocol(transport);
-        client = new ThriftHiveMetastore.Client(protocol);
+        this(thriftHost, thriftPort, DEFAULT_POOL_SIZE);
+    }
+
+    public HiveThriftClient(String thriftHost, int thriftPort, int poolSize)
+    {
+        this(new HiveMetastoreClientPool(() -> connect(thriftHost, thriftPort), poolSize));
+    }
+
+    @VisibleForTesting
+    HiveThriftClient(HiveMetastoreClientPool clientPool)
+    {
+        this.clientPool = requireNonNull(clientPool, "clientPool is null");
+        this.batchPermits = new Semaphore(clientPool.getPoolSize());
+    }
+
+    private static MetastoreConnection connect(String thriftHost, int thriftPort)
+            throws TTransportException
+    {
+        TTransport transport = new TSocket(thriftHost, thriftPort);
+        transport.open();
+        ThriftHiveMetastore.Client client = new ThriftHiveMetastore.Client(new TBinaryProtocol(transport));
+        return new MetastoreConnection()
+        {
+            @Override
+            public ThriftHiveMetastore.Iface getClient()
+            {
+                return client;
+            }
+
+            @Override
+            public boolean isOpen()
+            {
+                return transport.isOpen();
+            }
+
+            @Override
+            public void close()
+            {
+                transport.close();
+            }
+        };
+    }
+
+    /**
+     * @return statistics of calls to the metastore, by method name
+     */
+    public Map<String, CallStats> getCallStats()
+    {
+        return clientPool.getCallStats();
     }
 
     void setStatistics(TableName tableName, TableStatistics tableStatistics)
     {
+        PendingStatistics statistics = new PendingStatistics(tableName, tableStatistics);
+        pendingStatistics.add(statistics);
+
+        batchPermits.acquireUninterruptibly();
         try {
-            GetTableRequest getTableRequest = new GetTableRequest(
-                    getSchema(tableName), tableName.getSchemalessNameInDatabase());
+            List<PendingStatistics> batch = new ArrayList<>();
+            PendingStatistics pending;
+            while (batch.size() < MAX_STATISTICS_BATCH_SIZE && (pending = pendingStatistics.poll()) != null) {
+                batch.add(pending);
+            }
+            // batch may be empty if statistics were already taken by another thread
+            setStatistics(batch);
+        }
+        finally {
+            batchPermits.release();
+        }
+
+        try {
+            getUninterruptibly(statistics.result);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("Could not set statistics of table " + tableName, e.getCause());
+        }
+    }
 
-            Table table = client.get_table_req(getTableRequest).getTable();
-            setRowsCount(tableName, tableStatistics, table);
+    /**
+     * Tables are fetched with a single call per schema, then row counts and column statistics are set for each table.
+     */
+    private void setStatistics(List<PendingStatistics> batch)
+    {
+        Map<String, List<PendingStatistics>> batchBySchema = batch.stream()
+                .collect(groupingBy(statistics -> getSchema(statistics.tableName), LinkedHashMap::new, toList()));
+        batchBySchema.forEach((schema, schemaBatch) -> {
+            Map<String, Table> tables;
             try {
-                setColumnStatistics(tableName, tableStatistics, table, fieldSchema -> true);
+                tables = getTables(schema, schemaBatch);
             }
-            catch (TException ignore) {
-                transport.close();
-                transport.open();
-                // try to avoid date type as it not supported in hive 1.1.0
-                setColumnStatistics(tableName, tableStatistics, table, fieldSchema -> !fieldSchema.getType().equals("date"));
+            catch (TException | RuntimeException e) {
+                schemaBatch.forEach(statistics -> statistics.result.completeExceptionally(e));
+                return;
             }
+            for (PendingStatistics statistics : schemaBatch) {
+                try {
+                    Table table = tables.get(statistics.tableName.getSchemalessNameInDatabase().toLowerCase(ENGLISH));
+                    checkState(table != null, "Table %s not found in metastore", statistics.tableName);
+                    setStatistics(statistics.tableName, statistics.tableStatistics, table);
+                    statistics.result.complete(null);
+                }
+                catch (TException | RuntimeException e) {
+                    statistics.result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private Map<String, Table> getTables(String schema, List<PendingStatistics> batch)
+            throws TException
+    {
+        GetTablesRequest request = new GetTablesRequest(schema);
+        request.setTblNames(batch.stream()
+                .map(statistics -> statistics.tableName.getSchemalessNameInDatabase())
+                .distinct()
+                .collect(toList()));
+        List<Table> tables = clientPool.call("get_table_objects_by_name_req", client -> client.get_table_objects_by_name_req(request)).getTables();
+        return tables.stream()
+                .collect(toMap(table -> table.getTableName().toLowerCase(ENGLISH), identity(), (first, second) -> first));
+    }
+
+    private void setStatistics(TableName tableName, TableStatistics tableStatistics, Table table)
+            throws TException
+    {
+        setRowsCount(tableName, tableStatistics, table);
+        try {
+            setColumnStatistics(tableName, tableStatistics, table, fieldSchema -> true);
         }
-        catch (TException e) {
-            throw new RuntimeException(e);
+        catch (TException ignore) {
+            // try to avoid date type as it not supported in hive 1.1.0
+            setColumnStatistics(tableName, tableStatistics, table, fieldSchema -> !fieldSchema.getType().equals("date"));
         }
     }
 
@@ -104,7 +228,10 @@ public class HiveThriftClient
         tableParameters.put("numFiles", "1");
         tableParameters.put("STATS_GENERATED_VIA_STATS_TASK", "true");
 
-        client.alter_table(getSchema(tableName), tableName.getSchemalessNameInDatabase(), table);
+        clientPool.call("alter_table", client -> {
+            client.alter_table(getSchema(tableName), tableName.getSchemalessNameInDatabase(), table);
+            return null;
+        });
     }
 
     private String getSchema(TableName tableName)
@@ -128,7 +255,7 @@ public class HiveThriftClient
         org.apache.hadoop.hive.metastore.api.ColumnStatistics hiveColumnStatistics = new org.apache.hadoop.hive.metastore.api.ColumnStatistics();
         hiveColumnStatistics.setStatsDesc(hiveColumnStatisticsDesc);
         hiveColumnStatistics.setStatsObj(hiveColumnStatisticsObjs);
-        client.update_table_column_statistics(hiveColumnStatistics);
+        clientPool.call("update_table_column_statistics", client -> client.update_table_column_statistics(hiveColumnStatistics));
     }
 
     private ColumnStatisticsObj toHiveColumnStatistics(FieldSchema fieldSchema, ColumnStatistics columnStatistics)
@@ -207,7 +334,20 @@ public class HiveThriftClient
     @Override
     public void close()
     {
-        transport.close();
+        clientPool.close();
+    }
+
+    private static class PendingStatistics
+    {
+        private final TableName tableName;
+        private final TableStatistics tableStatistics;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingStatistics(TableName tableName, TableStatistics tableStatistics)
+        {
+            this.tableName = requireNonNull(tableName, "tableName is null");
+            this.tableStatistics = requireNonNull(tableStatistics, "tableStatistics is null");
+        }
     }
 
     private static Decimal toHiveDecimal(Object objectValue, int scale)
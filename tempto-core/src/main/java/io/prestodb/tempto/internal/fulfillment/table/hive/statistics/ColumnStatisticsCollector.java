@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestodb.tempto.internal.fulfillment.table.hive.statistics;
+
+import com.google.common.hash.HashFunction;
+import io.prestodb.tempto.fulfillment.table.hive.statistics.ColumnStatistics;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+import static com.google.common.hash.Hashing.murmur3_128;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collects statistics of values of a single column, given as bytes of text file fields. Values which cannot
+ * be parsed as the column type are counted as nulls, the same way Hive reads them.
+ */
+class ColumnStatisticsCollector
+{
+    private static final HashFunction HASH_FUNCTION = murmur3_128();
+
+    enum ValueType
+    {
+        LONG, DOUBLE, DECIMAL, DATE, STRING
+    }
+
+    private final ValueType valueType;
+    private final HyperLogLog distinctValues = new HyperLogLog();
+    private long nullsCount;
+    private long valuesCount;
+    private long minLong = Long.MAX_VALUE;
+    private long maxLong = Long.MIN_VALUE;
+    private double minDouble = Double.POSITIVE_INFINITY;
+    private double maxDouble = Double.NEGATIVE_INFINITY;
+
+    ColumnStatisticsCollector(ValueType valueType)
+    {
+        this.valueType = requireNonNull(valueType, "valueType is null");
+    }
+
+    void addNull()
+    {
+        nullsCount++;
+    }
+
+    void add(byte[] bytes, int offset, int length)
+    {
+        try {
+            switch (valueType) {
+                case LONG:
+                    addLong(Long.parseLong(new String(bytes, offset, length, UTF_8)));
+                    break;
+                case DOUBLE:
+                    addDouble(Double.parseDouble(new String(bytes, offset, length, UTF_8)));
+                    break;
+                case DECIMAL:
+                    addDouble(new BigDecimal(new String(bytes, offset, length, UTF_8)).doubleValue());
+                    break;
+                case DATE:
+                    addLong(LocalDate.parse(new String(bytes, offset, length, UTF_8)).toEpochDay());
+                    break;
+                case STRING:
+                    distinctValues.add(HASH_FUNCTION.hashBytes(bytes, offset, length).asLong());
+                    valuesCount++;
+                    break;
+            }
+        }
+        catch (NumberFormatException | DateTimeParseException e) {
+            nullsCount++;
+        }
+    }
+
+    private void addLong(long value)
+    {
+        distinctValues.add(HASH_FUNCTION.hashLong(value).asLong());
+        valuesCount++;
+        minLong = min(minLong, value);
+        maxLong = max(maxLong, value);
+    }
+
+    private void addDouble(double value)
+    {
+        distinctValues.add(HASH_FUNCTION.hashLong(Double.doubleToLongBits(value)).asLong());
+        valuesCount++;
+        minDouble = min(minDouble, value);
+        maxDouble = max(maxDouble, value);
+    }
+
+    void merge(ColumnStatisticsCollector other)
+    {
+        distinctValues.merge(other.distinctValues);
+        nullsCount += other.nullsCount;
+        valuesCount += other.valuesCount;
+        minLong = min(minLong, other.minLong);
+        maxLong = max(maxLong, other.maxLong);
+        minDouble = min(minDouble, other.minDouble);
+        maxDouble = max(maxDouble, other.maxDouble);
+    }
+
+    ColumnStatistics build()
+    {
+        long distinctValuesCount = min(distinctValues.cardinality(), valuesCount);
+        if (valuesCount == 0 || valueType == ValueType.STRING) {
+            return new ColumnStatistics(distinctValuesCount, nullsCount, Optional.empty(), Optional.empty());
+        }
+        if (valueType == ValueType.LONG || valueType == ValueType.DATE) {
+            return new ColumnStatistics(distinctValuesCount, nullsCount, Optional.of(minLong), Optional.of(maxLong));
+        }
+        return new ColumnStatistics(distinctValuesCount, nullsCount, Optional.of(minDouble), Optional.of(maxDouble));
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestodb.tempto.internal.fulfillment.table.hive.statistics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource;
+import io.prestodb.tempto.fulfillment.table.hive.statistics.ColumnStatistics;
+import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatistics;
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer;
+import io.prestodb.tempto.internal.fulfillment.table.hive.statistics.ColumnStatisticsCollector.ValueType;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes {@link TableStatistics} of delimited text data while it is read, e.g. when it is uploaded to HDFS.
+ * Columns and the text format are taken from the table DDL, so only tables stored as delimited text files
+ * with columns of types supported by statistics injection are handled.
+ * <p>
+ * Number of distinct values is estimated with {@link HyperLogLog}.
+ */
+public class TableStatisticsCollector
+{
+    private static final Pattern COLUMNS_START = Pattern.compile("(?is)\\bTABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?[^\\s(]+\\s*\\(");
+    private static final Pattern FIELDS_DELIMITER = Pattern.compile("(?is)\\bFIELDS\\s+TERMINATED\\s+BY\\s+'((?:\\\\.|[^'])*)'");
+    private static final Pattern NULL_FORMAT = Pattern.compile("(?is)\\bNULL\\s+DEFINED\\s+AS\\s+'((?:\\\\.|[^'])*)'");
+    private static final Pattern OTHER_STORAGE_FORMAT = Pattern.compile("(?is)\\bSTORED\\s+(?:AS\\s+(?!TEXTFILE\\b)|BY\\b)|\\bROW\\s+FORMAT\\s+SERDE\\b");
+    private static final byte DEFAULT_FIELDS_DELIMITER = 1;
+    private static final String DEFAULT_NULL_FORMAT = "\\N";
+
+    private final List<String> columnNames;
+    private final List<ValueType> columnTypes;
+    private final byte fieldsDelimiter;
+    private final byte[] nullFormat;
+    private final String fingerprint;
+    private final Map<Integer, FileStatistics> filesStatistics = new ConcurrentHashMap<>();
+    private volatile int filesCount = -1;
+
+    private TableStatisticsCollector(List<String> columnNames, List<ValueType> columnTypes, byte fieldsDelimiter, String nullFormat, String columnsDefinition)
+    {
+        this.columnNames = ImmutableList.copyOf(columnNames);
+        this.columnTypes = ImmutableList.copyOf(columnTypes);
+        this.fieldsDelimiter = fieldsDelimiter;
+        this.nullFormat = nullFormat.getBytes(UTF_8);
+        this.fingerprint = sha256().hashString(columnsDefinition + "|" + fieldsDelimiter + "|" + nullFormat, UTF_8).toString();
+    }
+
+    /**
+     * @return collector for data of a table created with given DDL, if its columns and format are supported
+     */
+    public static Optional<TableStatisticsCollector> forCreateTableDDL(String createTableDDL)
+    {
+        Matcher columnsStart = COLUMNS_START.matcher(createTableDDL);
+        if (!columnsStart.find()) {
+            return Optional.empty();
+        }
+        int columnsEnd = findClosingParenthesis(createTableDDL, columnsStart.end());
+        if (columnsEnd < 0) {
+            return Optional.empty();
+        }
+        String tableProperties = createTableDDL.substring(columnsEnd + 1);
+        if (OTHER_STORAGE_FORMAT.matcher(tableProperties).find()) {
+            return Optional.empty();
+        }
+
+        ImmutableList.Builder<String> columnNames = ImmutableList.builder();
+        ImmutableList.Builder<ValueType> columnTypes = ImmutableList.builder();
+        String columnsDefinition = createTableDDL.substring(columnsStart.end(), columnsEnd);
+        for (String columnDefinition : splitTopLevel(columnsDefinition)) {
+            String[] nameAndType = columnDefinition.trim().split("\\s+", 2);
+            if (nameAndType.length != 2) {
+                return Optional.empty();
+            }
+            Optional<ValueType> valueType = valueType(nameAndType[1]);
+            if (!valueType.isPresent()) {
+                return Optional.empty();
+            }
+            columnNames.add(nameAndType[0].replace("`", "").toLowerCase(ENGLISH));
+            columnTypes.add(valueType.get());
+        }
+
+        Optional<Byte> fieldsDelimiter = Optional.of(DEFAULT_FIELDS_DELIMITER);
+        Matcher fieldsDelimiterMatcher = FIELDS_DELIMITER.matcher(tableProperties);
+        if (fieldsDelimiterMatcher.find()) {
+            fieldsDelimiter = toDelimiter(unescape(fieldsDelimiterMatcher.group(1)));
+        }
+        String nullFormat = DEFAULT_NULL_FORMAT;
+        Matcher nullFormatMatcher = NULL_FORMAT.matcher(tableProperties);
+        if (nullFormatMatcher.find()) {
+            nullFormat = unescape(nullFormatMatcher.group(1));
+        }
+        if (!fieldsDelimiter.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(new TableStatisticsCollector(columnNames.build(), columnTypes.build(), fieldsDelimiter.get(), nullFormat, columnsDefinition));
+    }
+
+    private static int findClosingParenthesis(String value, int start)
+    {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            else if (quoted) {
+                continue;
+            }
+            else if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits column definitions on commas which are not within parentheses (e.g. of decimal type) or comments.
+     */
+    private static List<String> splitTopLevel(String columnsDefinition)
+    {
+        ImmutableList.Builder<String> parts = ImmutableList.builder();
+        int depth = 0;
+        boolean quoted = false;
+        int partStart = 0;
+        for (int i = 0; i < columnsDefinition.length(); i++) {
+            char c = columnsDefinition.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            else if (quoted) {
+                continue;
+            }
+            else if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+            }
+            else if (c == ',' && depth == 0) {
+                parts.add(columnsDefinition.substring(partStart, i));
+                partStart = i + 1;
+            }
+        }
+        parts.add(columnsDefinition.substring(partStart));
+        return parts.build();
+    }
+
+    private static Optional<ValueType> valueType(String typeDefinition)
+    {
+        String type = typeDefinition.toLowerCase(ENGLISH).split("\\s+comment\\s+", 2)[0].replaceAll("\\s+", "");
+        switch (type) {
+            case "tinyint":
+            case "smallint":
+            case "int":
+            case "bigint":
+                return Optional.of(ValueType.LONG);
+            case "double":
+                return Optional.of(ValueType.DOUBLE);
+            case "date":
+                return Optional.of(ValueType.DATE);
+        }
+        if (type.matches("decimal\\(\\d+,\\d+\\)")) {
+            return Optional.of(ValueType.DECIMAL);
+        }
+        if (type.matches("(?:var)?char\\(\\d+\\)")) {
+            return Optional.of(ValueType.STRING);
+        }
+        return Optional.empty();
+    }
+
+    private static String unescape(String value)
+    {
+        if (value.matches("\\\\[0-7]{3}")) {
+            return String.valueOf((char) Integer.parseInt(value.substring(1), 8));
+        }
+        return value
+                .replace("\\t", "\t")
+                .replace("\\\\", "\\");
+    }
+
+    private static Optional<Byte> toDelimiter(String value)
+    {
+        // Hive uses only the first character of the delimiter
+        if (value.isEmpty() || value.charAt(0) > 127) {
+            return Optional.empty();
+        }
+        return Optional.of((byte) value.charAt(0));
+    }
+
+    /**
+     * @return identifies columns and text format, statistics collected for the same data are equal if fingerprints are equal
+     */
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+     * Returns data source with the data of given data source, which collects statistics of the data while it is read.
+     * Statistics are available when all the files of the data source were read till their end.
+     */
+    public HiveDataSource collectingFrom(HiveDataSource dataSource)
+    {
+        return new StatisticsCollectingDataSource(dataSource);
+    }
+
+    /**
+     * @return statistics of the data read, or empty if not all the files were read
+     */
+    public Optional<TableStatistics> getStatistics()
+    {
+        int filesCount = this.filesCount;
+        if (filesCount < 0 || filesStatistics.size() != filesCount) {
+            return Optional.empty();
+        }
+        long rowCount = 0;
+        ColumnStatisticsCollector[] columns = newColumnCollectors();
+        for (FileStatistics fileStatistics : filesStatistics.values()) {
+            rowCount += fileStatistics.rowCount;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].merge(fileStatistics.columns[i]);
+            }
+        }
+        ImmutableMap.Builder<String, ColumnStatistics> columnsStatistics = ImmutableMap.builder();
+        for (int i = 0; i < columns.length; i++) {
+            columnsStatistics.put(columnNames.get(i), columns[i].build());
+        }
+        return Optional.of(new TableStatistics(rowCount, columnsStatistics.build()));
+    }
+
+    private ColumnStatisticsCollector[] newColumnCollectors()
+    {
+        return columnTypes.stream()
+                .map(ColumnStatisticsCollector::new)
+                .toArray(ColumnStatisticsCollector[]::new);
+    }
+
+    private class StatisticsCollectingDataSource
+            implements HiveDataSource
+    {
+        private final HiveDataSource delegate;
+
+        StatisticsCollectingDataSource(HiveDataSource delegate)
+        {
+            this.delegate = requireNonNull(delegate, "delegate is null");
+        }
+
+        @Override
+        public String getPathSuffix()
+        {
+            return delegate.getPathSuffix();
+        }
+
+        @Override
+        public Collection<RepeatableContentProducer> data()
+        {
+            filesStatistics.clear();
+            filesCount = -1;
+            Collection<RepeatableContentProducer> files = delegate.data();
+            // files are wrapped lazily, as the data source may create them only when requested
+            return new AbstractCollection<RepeatableContentProducer>()
+            {
+                @Override
+                public Iterator<RepeatableContentProducer> iterator()
+                {
+                    Iterator<RepeatableContentProducer> iterator = files.iterator();
+                    return new Iterator<RepeatableContentProducer>()
+                    {
+                        private int fileIndex;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            boolean hasNext = iterator.hasNext();
+                            if (!hasNext) {
+                                filesCount = fileIndex;
+                            }
+                            return hasNext;
+                        }
+
+                        @Override
+                        public RepeatableContentProducer next()
+                        {
+                            RepeatableContentProducer file = iterator.next();
+                            int index = fileIndex++;
+                            return () -> new StatisticsCollectingInputStream(file.getInputStream(), index);
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return files.size();
+                }
+            };
+        }
+
+        @Override
+        public Optional<String> revisionMarker()
+        {
+            return delegate.revisionMarker();
+        }
+
+        @Override
+        public Optional<TableStatistics> getStatistics()
+        {
+            return delegate.getStatistics();
+        }
+    }
+
+    /**
+     * Statistics of a file are discarded if the file is read again, e.g. when its upload is retried.
+     */
+    private class StatisticsCollectingInputStream
+            extends FilterInputStream
+    {
+        private final int fileIndex;
+        private final FileStatistics fileStatistics = new FileStatistics();
+        private final byte[] singleByte = new byte[1];
+        private boolean finished;
+
+        StatisticsCollectingInputStream(InputStream in, int fileIndex)
+        {
+            super(in);
+            this.fileIndex = fileIndex;
+            filesStatistics.remove(fileIndex);
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            int value = super.read();
+            if (value < 0) {
+                finish();
+            }
+            else {
+                singleByte[0] = (byte) value;
+                fileStatistics.add(singleByte, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            int read = super.read(buffer, offset, length);
+            if (read < 0) {
+                finish();
+            }
+            else {
+                fileStatistics.add(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n)
+                throws IOException
+        {
+            // skipped bytes must be seen by the collector
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit)
+        {
+        }
+
+        @Override
+        public synchronized void reset()
+                throws IOException
+        {
+            throw new IOException("mark/reset not supported");
+        }
+
+        private void finish()
+        {
+            if (!finished) {
+                finished = true;
+                fileStatistics.finish();
+                filesStatistics.put(fileIndex, fileStatistics);
+            }
+        }
+    }
+
+    private class FileStatistics
+    {
+        private final ColumnStatisticsCollector[] columns = newColumnCollectors();
+        private byte[] line = new byte[1024];
+        private int lineLength;
+        private long rowCount;
+
+        void add(byte[] buffer, int offset, int length)
+        {
+            int lineStart = offset;
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    append(buffer, lineStart, i - lineStart);
+                    addLine();
+                    lineStart = i + 1;
+                }
+            }
+            append(buffer, lineStart, end - lineStart);
+        }
+
+        void finish()
+        {
+            if (lineLength > 0) {
+                addLine();
+            }
+        }
+
+        private void append(byte[] buffer, int offset, int length)
+        {
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+            System.arraycopy(buffer, offset, line, lineLength, length);
+            lineLength += length;
+        }
+
+        private void addLine()
+        {
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            rowCount++;
+            int fieldStart = 0;
+            for (int column = 0; column < columns.length; column++) {
+                if (fieldStart > length) {
+                    // missing trailing fields are read as nulls
+                    columns[column].addNull();
+                    continue;
+                }
+                int fieldEnd = fieldStart;
+                while (fieldEnd < length && line[fieldEnd] != fieldsDelimiter) {
+                    fieldEnd++;
+                }
+                if (isNull(fieldStart, fieldEnd - fieldStart)) {
+                    columns[column].addNull();
+                }
+                else {
+                    columns[column].add(line, fieldStart, fieldEnd - fieldStart);
+                }
+                fieldStart = fieldEnd + 1;
+            }
+            lineLength = 0;
+        }
+
+        private boolean isNull(int offset, int length)
+        {
+            if (length != nullFormat.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (line[offset + i] != nullFormat[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -19,8 +19,14 @@ import io.airlift.tpch.TpchEntity;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Iterator;
 
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Output stream which prints out '|' delimited TPCH data for given entity, ex:
  * <pre>
@@ -48,36 +54,91 @@ public class TpchEntityByteSource<T extends TpchEntity>
     private static class IterableTpchEntityInputStream<T extends TpchEntity>
             extends InputStream
     {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
         private final Iterator<T> rowIterator;
-        private CharSequence currentLine;
-        private int currentReadLineIndex;
-        private boolean newLinePrinted = true;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private boolean firstLine = true;
 
         public IterableTpchEntityInputStream(Iterable<T> iterable)
         {
             this.rowIterator = iterable.iterator();
         }
 
-        // TODO: implement read(byte[]) if this is slow
         @Override
         public int read()
                 throws IOException
         {
-            if (currentLine == null || currentReadLineIndex >= currentLine.length()) {
-                if (rowIterator.hasNext()) {
-                    newLinePrinted = currentLine == null;
-                    currentReadLineIndex = 0;
-                    currentLine = rowIterator.next().toLine();
-                }
-                else {
-                    return -1;
-                }
+            if (!ensureBufferNotEmpty()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+                throws IOException
+        {
+            checkPositionIndexes(offset, offset + length, bytes.length);
+            if (length == 0) {
+                return 0;
+            }
+
+            int bytesRead = 0;
+            while (bytesRead < length && ensureBufferNotEmpty()) {
+                int chunkLength = min(length - bytesRead, limit - position);
+                System.arraycopy(buffer, position, bytes, offset + bytesRead, chunkLength);
+                position += chunkLength;
+                bytesRead += chunkLength;
+            }
+            return bytesRead == 0 ? -1 : bytesRead;
+        }
+
+        @Override
+        public int available()
+        {
+            return limit - position;
+        }
+
+        private boolean ensureBufferNotEmpty()
+        {
+            if (position < limit) {
+                return true;
+            }
+            position = 0;
+            limit = 0;
+            // encode as many rows as fit into the buffer, but at least one
+            while (rowIterator.hasNext() && (limit == 0 || limit < buffer.length / 2)) {
+                encodeLine(rowIterator.next().toLine());
             }
-            if (!newLinePrinted) {
-                newLinePrinted = true;
-                return '\n';
+            return limit > 0;
+        }
+
+        private void encodeLine(String line)
+        {
+            // lines are separated (not terminated) with new line character
+            int maxEncodedLength = line.length() * 3 + 1;
+            if (limit + maxEncodedLength > buffer.length) {
+                buffer = Arrays.copyOf(buffer, max(buffer.length * 2, limit + maxEncodedLength));
+            }
+            if (!firstLine) {
+                buffer[limit++] = '\n';
+            }
+            firstLine = false;
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c >= 0x80) {
+                    // TPC-H data is plain ASCII, handle anything else with the regular encoder
+                    byte[] encoded = line.substring(i).getBytes(UTF_8);
+                    System.arraycopy(encoded, 0, buffer, limit, encoded.length);
+                    limit += encoded.length;
+                    return;
+                }
+                buffer[limit++] = (byte) c;
             }
-            return currentLine.charAt(currentReadLineIndex++);
         }
     }
 }
@@ -14,61 +14,159 @@
 
 package io.prestodb.tempto.internal.fulfillment.table.jdbc;
 
+import io.prestodb.tempto.internal.stats.CallStats;
 import io.prestodb.tempto.query.QueryExecutor;
+import org.slf4j.Logger;
 
+import java.sql.JDBCType;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.joining;
+import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Loads rows using {@link PreparedStatement#executeBatch()}.
+ * <p>
+ * The number of rows sent in a single {@code executeBatch} call is adjusted after each call, so that calls
+ * take about {@link #TARGET_EXECUTE_BATCH_MILLIS} and send no more than {@link #MAX_EXECUTE_BATCH_BYTES}.
+ */
 class BatchLoader
         implements Loader
 {
+    private static final Logger LOGGER = getLogger(BatchLoader.class);
+
+    static final int MIN_EXECUTE_BATCH_ROWS = 100;
+    static final int MAX_EXECUTE_BATCH_ROWS = 50_000;
+    static final int INITIAL_EXECUTE_BATCH_ROWS = 1000;
+    static final long TARGET_EXECUTE_BATCH_MILLIS = 500;
+    static final long MAX_EXECUTE_BATCH_BYTES = 16 * 1024 * 1024;
+
+    private final String tableName;
     private final PreparedStatement preparedStatement;
-    private final int columnsCount;
+    private final ColumnBinder[] columnBinders;
+    private final CallStats executeBatchStats = new CallStats();
+    private int executeBatchRows = INITIAL_EXECUTE_BATCH_ROWS;
+    private long loadedRows;
+    private long loadedBytes;
 
-    public BatchLoader(QueryExecutor queryExecutor, String tableName, int columnsCount)
+    public BatchLoader(QueryExecutor queryExecutor, String tableName, List<JDBCType> columnTypes)
             throws SQLException
     {
-        String questionMarks = IntStream.range(0, columnsCount)
+        String questionMarks = IntStream.range(0, columnTypes.size())
                 .mapToObj(i -> "?")
                 .collect(joining(","));
         preparedStatement = queryExecutor.getConnection()
                 .prepareStatement(String.format("INSERT INTO %s VALUES (%s)", tableName, questionMarks));
-        this.columnsCount = columnsCount;
+        this.tableName = tableName;
+        this.columnBinders = columnTypes.stream()
+                .map(ColumnBinder::forType)
+                .toArray(ColumnBinder[]::new);
     }
 
     @Override
     public void load(List<List<Object>> batch)
             throws SQLException
     {
-        if (batch.size() == 0) {
-            return;
-        }
-        for (List<Object> row : batch) {
-            checkArgument(row.size() == columnsCount, "Unexpected columns count: %d vs %d", row.size(), columnsCount);
-            int pos = 1;
-            for (Object value : row) {
-                preparedStatement.setObject(pos, value);
-                ++pos;
+        int batchStart = 0;
+        while (batchStart < batch.size()) {
+            int batchEnd = Math.min(batch.size(), batchStart + executeBatchRows);
+            long bytes = 0;
+            for (int rowIndex = batchStart; rowIndex < batchEnd; ++rowIndex) {
+                bytes += bindRow(batch.get(rowIndex));
+                preparedStatement.addBatch();
             }
-            preparedStatement.addBatch();
+            executeBatch(batch, batchStart, batchEnd - batchStart, bytes);
+            batchStart = batchEnd;
+        }
+    }
+
+    private long bindRow(List<Object> row)
+            throws SQLException
+    {
+        checkArgument(row.size() == columnBinders.length, "Unexpected columns count: %d vs %d", row.size(), columnBinders.length);
+        long bytes = 0;
+        for (int column = 0; column < columnBinders.length; ++column) {
+            Object value = row.get(column);
+            columnBinders[column].bind(preparedStatement, column + 1, value);
+            bytes += estimatedSize(value);
+        }
+        return bytes;
+    }
+
+    private void executeBatch(List<List<Object>> batch, int offset, int rows, long bytes)
+            throws SQLException
+    {
+        long start = System.nanoTime();
+        boolean failed = true;
+        int[] insertCounts;
+        try {
+            insertCounts = preparedStatement.executeBatch();
+            failed = false;
         }
-        int[] insertCounts = preparedStatement.executeBatch();
+        finally {
+            executeBatchStats.record(System.nanoTime() - start, failed);
+        }
+        long millis = NANOSECONDS.toMillis(System.nanoTime() - start);
         for (int rowIndex = 0; rowIndex < insertCounts.length; ++rowIndex) {
-            if (insertCounts[rowIndex] != 1) {
-                throw new RuntimeException("could not insert values=" + batch.get(rowIndex));
+            if (insertCounts[rowIndex] != 1 && insertCounts[rowIndex] != PreparedStatement.SUCCESS_NO_INFO) {
+                throw new RuntimeException("could not insert values=" + batch.get(offset + rowIndex));
             }
         }
+        loadedRows += rows;
+        loadedBytes += bytes;
+        executeBatchRows = nextExecuteBatchRows(executeBatchRows, rows, millis, bytes);
+    }
+
+    static int nextExecuteBatchRows(int currentRows, int executedRows, long executeMillis, long executedBytes)
+    {
+        if (executedRows < currentRows) {
+            // batch was not full, timings are not representative
+            return currentRows;
+        }
+        long bytesPerRow = Math.max(1, executedBytes / executedRows);
+        int maxRowsBySize = (int) Math.min(MAX_EXECUTE_BATCH_ROWS, MAX_EXECUTE_BATCH_BYTES / bytesPerRow);
+        int nextRows = currentRows;
+        if (executeMillis > TARGET_EXECUTE_BATCH_MILLIS) {
+            nextRows = currentRows / 2;
+        }
+        else if (executeMillis < TARGET_EXECUTE_BATCH_MILLIS / 2) {
+            nextRows = currentRows * 2;
+        }
+        return Math.max(MIN_EXECUTE_BATCH_ROWS, Math.min(maxRowsBySize, nextRows));
+    }
+
+    private static long estimatedSize(Object value)
+    {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        return Long.BYTES;
     }
 
     @Override
     public void close()
             throws SQLException
     {
+        if (loadedRows > 0) {
+            long millis = executeBatchStats.getTotalMillis();
+            LOGGER.info("Loaded {} rows ({} KB) into {} in {} ms ({} rows/s), executeBatch: {}, final batch size: {}",
+                    loadedRows,
+                    loadedBytes / 1024,
+                    tableName,
+                    millis,
+                    loadedRows * SECONDS.toMillis(1) / Math.max(1, millis),
+                    executeBatchStats,
+                    executeBatchRows);
+        }
         if (preparedStatement != null) {
             preparedStatement.close();
         }
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Binds values of a single column to a {@link PreparedStatement} parameter using a setter specific
+ * to the column type. Values of unexpected Java types are bound with {@link PreparedStatement#setObject(int, Object)}.
+ */
+@FunctionalInterface
+interface ColumnBinder
+{
+    void bind(PreparedStatement statement, int position, Object value)
+            throws SQLException;
+
+    static ColumnBinder forType(JDBCType type)
+    {
+        ColumnBinder nonNullBinder = nonNullBinder(type);
+        int sqlType = type.getVendorTypeNumber();
+        return (statement, position, value) -> {
+            if (value == null) {
+                statement.setNull(position, sqlType);
+            }
+            else {
+                nonNullBinder.bind(statement, position, value);
+            }
+        };
+    }
+
+    static ColumnBinder nonNullBinder(JDBCType type)
+    {
+        switch (type) {
+            case BIGINT:
+                return (statement, position, value) -> {
+                    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                        statement.setLong(position, ((Number) value).longValue());
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case INTEGER:
+            case SMALLINT:
+            case TINYINT:
+                return (statement, position, value) -> {
+                    if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                        statement.setInt(position, ((Number) value).intValue());
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case DOUBLE:
+            case FLOAT:
+                return (statement, position, value) -> {
+                    if (value instanceof Double || value instanceof Float) {
+                        statement.setDouble(position, ((Number) value).doubleValue());
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case REAL:
+                return (statement, position, value) -> {
+                    if (value instanceof Float) {
+                        statement.setFloat(position, (Float) value);
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case DECIMAL:
+            case NUMERIC:
+                return (statement, position, value) -> {
+                    if (value instanceof BigDecimal) {
+                        statement.setBigDecimal(position, (BigDecimal) value);
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case CHAR:
+            case VARCHAR:
+            case LONGVARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case LONGNVARCHAR:
+                return (statement, position, value) -> {
+                    if (value instanceof String) {
+                        statement.setString(position, (String) value);
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case BOOLEAN:
+            case BIT:
+                return (statement, position, value) -> {
+                    if (value instanceof Boolean) {
+                        statement.setBoolean(position, (Boolean) value);
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case DATE:
+                return (statement, position, value) -> {
+                    if (value instanceof Date) {
+                        statement.setDate(position, (Date) value);
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            case TIMESTAMP:
+                return (statement, position, value) -> {
+                    if (value instanceof Timestamp) {
+                        statement.setTimestamp(position, (Timestamp) value);
+                    }
+                    else {
+                        statement.setObject(position, value);
+                    }
+                };
+            default:
+                return PreparedStatement::setObject;
+        }
+    }
+}
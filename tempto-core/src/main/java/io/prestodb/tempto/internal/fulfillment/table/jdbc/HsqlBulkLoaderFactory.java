@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc;
+
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoader;
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoaderFactory;
+import io.prestodb.tempto.fulfillment.table.jdbc.CsvRowWriter;
+import io.prestodb.tempto.query.QueryExecutor;
+
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+
+/**
+ * Loads data into HSQLDB through a temporary TEXT table backed by a CSV file.
+ * <p>
+ * The CSV file is written by the client, so only in-process databases are supported. HSQLDB allows TEXT tables
+ * with files outside of the database directory only if {@code textdb.allow_full_path} system property is set
+ * to {@code true}. This is checked when the loader is created, so that data is loaded with JDBC batches otherwise.
+ * Tables with columns which cannot be written to CSV, e.g. binary columns, are loaded with JDBC batches too.
+ */
+@BulkLoaderFactory.Descriptor(databaseProductName = "HSQL Database Engine")
+public class HsqlBulkLoaderFactory
+        implements BulkLoaderFactory
+{
+    private static final Pattern IN_PROCESS_URL = Pattern.compile("^jdbc:hsqldb:(mem|file):", CASE_INSENSITIVE);
+
+    @Override
+    public BulkLoader create(QueryExecutor queryExecutor, String tableName, List<JDBCType> columnTypes)
+            throws SQLException
+    {
+        CsvRowWriter.checkSupported(columnTypes);
+        Connection connection = queryExecutor.getConnection();
+        String url = connection.getMetaData().getURL();
+        if (!IN_PROCESS_URL.matcher(url).find()) {
+            throw new SQLFeatureNotSupportedException("HSQLDB text table source is a local file, database is not in-process: " + url);
+        }
+        return new HsqlTextTableLoader(connection, tableName, columnTypes.size());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc;
+
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoader;
+import io.prestodb.tempto.fulfillment.table.jdbc.CsvRowWriter;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.UUID.randomUUID;
+import static org.slf4j.LoggerFactory.getLogger;
+
+class HsqlTextTableLoader
+        implements BulkLoader
+{
+    private static final Logger LOGGER = getLogger(HsqlTextTableLoader.class);
+
+    private final Connection connection;
+    private final String tableName;
+    private final int columnsCount;
+    private final String textTableName = "tempto_bulk_" + randomUUID().toString().replace("-", "");
+    private final Path sourceFile;
+
+    HsqlTextTableLoader(Connection connection, String tableName, int columnsCount)
+            throws SQLException
+    {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.columnsCount = columnsCount;
+        try {
+            this.sourceFile = Files.createTempFile("tempto-bulk-", ".csv");
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            execute("CREATE TEXT TABLE " + textTableName + " AS (SELECT * FROM " + tableName + ") WITH NO DATA");
+        }
+        catch (SQLException | RuntimeException e) {
+            deleteSourceFile();
+            throw e;
+        }
+        try {
+            // fails unless the database allows text table sources outside of its directory
+            setSource();
+            execute("SET TABLE " + textTableName + " SOURCE OFF");
+        }
+        catch (SQLException e) {
+            SQLFeatureNotSupportedException notSupported = new SQLFeatureNotSupportedException("HSQLDB does not allow text table source " + sourceFile + ", is textdb.allow_full_path set?", e);
+            try {
+                close();
+            }
+            catch (SQLException | RuntimeException closeException) {
+                notSupported.addSuppressed(closeException);
+            }
+            throw notSupported;
+        }
+    }
+
+    @Override
+    public void load(List<List<Object>> rows)
+            throws SQLException
+    {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(sourceFile, UTF_8)) {
+            CsvRowWriter rowWriter = new CsvRowWriter(writer, columnsCount);
+            for (List<Object> row : rows) {
+                rowWriter.writeRow(row);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        setSource();
+        try (Statement statement = connection.createStatement()) {
+            int insertedRows = statement.executeUpdate("INSERT INTO " + tableName + " SELECT * FROM " + textTableName);
+            if (insertedRows != rows.size()) {
+                throw new RuntimeException("could not insert all rows into " + tableName + ", inserted " + insertedRows + " of " + rows.size());
+            }
+        }
+        finally {
+            execute("SET TABLE " + textTableName + " SOURCE OFF");
+        }
+    }
+
+    @Override
+    public void close()
+            throws SQLException
+    {
+        try {
+            execute("DROP TABLE " + textTableName);
+        }
+        finally {
+            deleteSourceFile();
+        }
+    }
+
+    private void setSource()
+            throws SQLException
+    {
+        execute("SET TABLE " + textTableName + " SOURCE '" + sourceFile.toAbsolutePath().toString().replace("'", "''") + ";encoding=UTF-8'");
+    }
+
+    private void execute(String sql)
+            throws SQLException
+    {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private void deleteSourceFile()
+    {
+        try {
+            Files.deleteIfExists(sourceFile);
+        }
+        catch (IOException e) {
+            LOGGER.debug("unable to delete {}", sourceFile, e);
+        }
+    }
+}
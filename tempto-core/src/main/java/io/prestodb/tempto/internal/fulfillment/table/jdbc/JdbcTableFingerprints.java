@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc;
+
+import com.google.common.hash.Hasher;
+import io.prestodb.tempto.fulfillment.table.jdbc.RelationalDataSource;
+import io.prestodb.tempto.fulfillment.table.jdbc.RelationalTableDefinition;
+import io.prestodb.tempto.query.QueryExecutionException;
+import io.prestodb.tempto.query.QueryExecutor;
+import io.prestodb.tempto.query.QueryResult;
+import org.slf4j.Logger;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.hash.Hashing.sha256;
+import static io.prestodb.tempto.fulfillment.table.ParallelPartsIterator.closeIterator;
+import static io.prestodb.tempto.query.QueryExecutor.param;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.sql.JDBCType.VARCHAR;
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Stores fingerprints of immutable tables in a metadata table of the database, so that tables loaded
+ * in previous runs can be reused as long as their definition and data did not change.
+ */
+class JdbcTableFingerprints
+{
+    private static final Logger LOGGER = getLogger(JdbcTableFingerprints.class);
+
+    static final String FINGERPRINTS_TABLE = "tempto_table_fingerprints";
+
+    private final QueryExecutor queryExecutor;
+    private volatile boolean fingerprintsTableCreated;
+
+    JdbcTableFingerprints(QueryExecutor queryExecutor)
+    {
+        this.queryExecutor = requireNonNull(queryExecutor, "queryExecutor is null");
+    }
+
+    /**
+     * Computes fingerprint from table DDL and data source. Unless data source provides its own fingerprint,
+     * all the data rows are read and hashed.
+     */
+    static String fingerprint(RelationalTableDefinition tableDefinition, String nameInDatabase)
+    {
+        Hasher hasher = sha256().newHasher();
+        putString(hasher, tableDefinition.getCreateTableDDL(nameInDatabase));
+        RelationalDataSource dataSource = tableDefinition.getDataSource();
+        Optional<String> dataFingerprint = dataSource.getDataFingerprint();
+        if (dataFingerprint.isPresent()) {
+            putString(hasher, dataFingerprint.get());
+        }
+        else {
+            Iterator<List<Object>> rows = dataSource.getDataRows();
+            try {
+                while (rows.hasNext()) {
+                    List<Object> row = rows.next();
+                    hasher.putInt(row.size());
+                    for (Object value : row) {
+                        if (value == null) {
+                            hasher.putInt(-1);
+                        }
+                        else {
+                            putString(hasher, value.getClass().getName());
+                            putString(hasher, value.toString());
+                        }
+                    }
+                }
+            }
+            finally {
+                closeIterator(rows);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putString(Hasher hasher, String value)
+    {
+        hasher.putInt(value.length());
+        hasher.putString(value, UTF_8);
+    }
+
+    /**
+     * @return stored fingerprint of the table, empty if there is none or it can not be read
+     */
+    Optional<String> get(String nameInDatabase)
+    {
+        try {
+            ensureFingerprintsTableExists();
+            QueryResult result = queryExecutor.executeQuery(
+                    "SELECT fingerprint FROM " + FINGERPRINTS_TABLE + " WHERE table_name = ?",
+                    param(VARCHAR, nameInDatabase));
+            if (result.getRowsCount() == 0) {
+                return Optional.empty();
+            }
+            return Optional.of((String) result.row(0).get(0));
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Unable to read fingerprint of table {}, table will be recreated", nameInDatabase, e);
+            return Optional.empty();
+        }
+    }
+
+    void set(String nameInDatabase, String fingerprint)
+    {
+        try {
+            ensureFingerprintsTableExists();
+            queryExecutor.executeQuery("DELETE FROM " + FINGERPRINTS_TABLE + " WHERE table_name = ?", param(VARCHAR, nameInDatabase));
+            queryExecutor.executeQuery(
+                    "INSERT INTO " + FINGERPRINTS_TABLE + " (table_name, fingerprint) VALUES (?, ?)",
+                    param(VARCHAR, nameInDatabase),
+                    param(VARCHAR, fingerprint));
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Unable to store fingerprint of table {}", nameInDatabase, e);
+        }
+    }
+
+    void remove(String nameInDatabase)
+    {
+        try {
+            ensureFingerprintsTableExists();
+            queryExecutor.executeQuery("DELETE FROM " + FINGERPRINTS_TABLE + " WHERE table_name = ?", param(VARCHAR, nameInDatabase));
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Unable to remove fingerprint of table {}", nameInDatabase, e);
+        }
+    }
+
+    private synchronized void ensureFingerprintsTableExists()
+    {
+        if (fingerprintsTableCreated) {
+            return;
+        }
+        try {
+            queryExecutor.executeQuery("SELECT table_name FROM " + FINGERPRINTS_TABLE + " WHERE 1=2");
+        }
+        catch (QueryExecutionException e) {
+            LOGGER.debug("creating table {}", FINGERPRINTS_TABLE);
+            queryExecutor.executeQuery("CREATE TABLE " + FINGERPRINTS_TABLE + " (table_name VARCHAR(1024), fingerprint VARCHAR(64))");
+        }
+        fingerprintsTableCreated = true;
+    }
+}
@@ -15,6 +15,7 @@
 package io.prestodb.tempto.internal.fulfillment.table.jdbc;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State;
@@ -27,6 +28,8 @@ import io.prestodb.tempto.fulfillment.table.jdbc.RelationalTableDefinition;
 import io.prestodb.tempto.internal.fulfillment.table.AbstractTableManager;
 import io.prestodb.tempto.internal.fulfillment.table.TableName;
 import io.prestodb.tempto.internal.fulfillment.table.TableNameGenerator;
+import io.prestodb.tempto.query.JdbcConnectionScope;
+import io.prestodb.tempto.query.JdbcQueryExecutor;
 import io.prestodb.tempto.query.QueryExecutionException;
 import io.prestodb.tempto.query.QueryExecutor;
 import io.prestodb.tempto.query.QueryResult;
@@ -40,12 +43,23 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.CREATED;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.LOADED;
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.PREPARED;
+import static io.prestodb.tempto.fulfillment.table.ParallelPartsIterator.closeIterator;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
 import static org.slf4j.LoggerFactory.getLogger;
 
 @TableManager.Descriptor(tableDefinitionClass = RelationalTableDefinition.class, type = "JDBC")
@@ -53,11 +67,18 @@ public class JdbcTableManager
         extends AbstractTableManager<RelationalTableDefinition>
 {
     private static final int BATCH_SIZE = 10000;
+    private static final String LOAD_PARALLELISM_KEY = "table_load_parallelism";
+    private static final String BULK_LOAD_KEY = "bulk_load";
+    private static final String TABLE_FINGERPRINTS_KEY = "table_fingerprints";
+    private static final List<List<Object>> END_OF_DATA = new ArrayList<>();
+    private static final long QUEUE_OFFER_TIMEOUT_MILLIS = 100;
+    private static final long WORKERS_TERMINATION_TIMEOUT_SECONDS = 30;
     private static final Logger LOGGER = getLogger(JdbcTableManager.class);
 
     private final QueryExecutor queryExecutor;
     private final String databaseName;
     private final Configuration configuration;
+    private final JdbcTableFingerprints fingerprints;
 
     @Inject
     public JdbcTableManager(
@@ -70,6 +91,7 @@ public class JdbcTableManager
         this.databaseName = databaseName;
         this.configuration = configuration;
         this.queryExecutor = checkNotNull(queryExecutor, "queryExecutor is null");
+        this.fingerprints = new JdbcTableFingerprints(queryExecutor);
     }
 
     @Override
@@ -77,9 +99,11 @@ public class JdbcTableManager
     {
         TableName tableName = createImmutableTableName(tableHandle);
         LOGGER.debug("creating immutable table {}", tableName);
-        // TODO: drop and recreate table if the underlying data has changed
 
-        if (!tableName.getSchema().isPresent()) {
+        if (configuration.getBoolean("databases." + databaseName + "." + TABLE_FINGERPRINTS_KEY).orElse(false)) {
+            createImmutableWithFingerprint(tableDefinition, tableName);
+        }
+        else if (!tableName.getSchema().isPresent()) {
             // If there's no schema specified, you need to drop and recreate the table because there
             // could be a table from another schema that has the same name
             dropTableIgnoreError(tableName);
@@ -94,6 +118,36 @@ public class JdbcTableManager
         return new JdbcTableInstance(tableName, tableDefinition);
     }
 
+    private void createImmutableWithFingerprint(RelationalTableDefinition tableDefinition, TableName tableName)
+    {
+        String nameInDatabase = tableName.getNameInDatabase();
+        String fingerprint = JdbcTableFingerprints.fingerprint(tableDefinition, nameInDatabase);
+        if (fingerprint.equals(fingerprints.get(nameInDatabase).orElse(null)) && isQueryable(tableName)) {
+            LOGGER.info("Table {} is up to date, skipping creation of immutable table", nameInDatabase);
+            return;
+        }
+        // fingerprint is removed first, so that a partially loaded table is not reused
+        fingerprints.remove(nameInDatabase);
+        dropTableIgnoreError(tableName);
+        createAndInsertData(tableDefinition, tableName);
+        fingerprints.set(nameInDatabase, fingerprint);
+    }
+
+    /**
+     * Unlike {@link #tableExists(TableName)}, checks table visible under the given name, e.g. in the default schema
+     * if the name is not qualified.
+     */
+    private boolean isQueryable(TableName tableName)
+    {
+        try {
+            queryExecutor.executeQuery("SELECT * FROM " + tableName.getNameInDatabase() + " WHERE 1=2");
+            return true;
+        }
+        catch (QueryExecutionException e) {
+            return false;
+        }
+    }
+
     private void createAndInsertData(RelationalTableDefinition tableDefinition, TableName tableName)
     {
         createTable(tableDefinition, tableName);
@@ -184,10 +238,26 @@ public class JdbcTableManager
     private void insertData(TableName tableName, RelationalDataSource dataSource)
     {
         Iterator<List<Object>> dataRows = dataSource.getDataRows();
+        try {
+            insertRows(tableName, dataRows);
+        }
+        finally {
+            closeIterator(dataRows);
+        }
+    }
+
+    private void insertRows(TableName tableName, Iterator<List<Object>> dataRows)
+    {
         if (!dataRows.hasNext()) {
             return;
         }
-        try (Loader loader = new LoaderFactory().create(queryExecutor, tableName.getNameInDatabase())) {
+        int loadParallelism = configuration.getInt("databases." + databaseName + "." + LOAD_PARALLELISM_KEY).orElse(1);
+        checkArgument(loadParallelism > 0, "%s must be positive", LOAD_PARALLELISM_KEY);
+        if (loadParallelism > 1 && queryExecutor instanceof JdbcQueryExecutor) {
+            insertDataInParallel(tableName, dataRows, loadParallelism);
+            return;
+        }
+        try (Loader loader = loaderFactory().create(queryExecutor, tableName.getNameInDatabase())) {
             for (List<List<Object>> batch : partitionBy(dataRows, BATCH_SIZE)) {
                 loader.load(batch);
             }
@@ -197,6 +267,124 @@ public class JdbcTableManager
         }
     }
 
+    /**
+     * Loads batches read from {@code dataRows} using {@code workersCount} workers. Each worker uses its own connection
+     * and loader and commits each batch in a separate transaction. If any worker fails, loading is stopped
+     * and the partially loaded table is dropped.
+     */
+    private void insertDataInParallel(TableName tableName, Iterator<List<Object>> dataRows, int workersCount)
+    {
+        LOGGER.debug("loading table {} using {} workers", tableName, workersCount);
+        BlockingQueue<List<List<Object>>> batches = new ArrayBlockingQueue<>(2 * workersCount);
+        ExecutorService executor = newFixedThreadPool(
+                workersCount,
+                new ThreadFactoryBuilder().setNameFormat("jdbc-table-load-%d").setDaemon(true).build());
+        try {
+            List<Future<?>> workers = range(0, workersCount)
+                    .mapToObj(i -> executor.submit(() -> loadBatches(tableName.getNameInDatabase(), batches)))
+                    .collect(toList());
+            for (List<List<Object>> batch : partitionBy(dataRows, BATCH_SIZE)) {
+                enqueue(batches, batch, workers);
+            }
+            for (int i = 0; i < workersCount; ++i) {
+                enqueue(batches, END_OF_DATA, workers);
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        catch (InterruptedException | ExecutionException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            stopWorkers(executor);
+            dropTableIgnoreError(tableName);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new RuntimeException("Could not load data into table " + tableName.getNameInDatabase(), cause);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void enqueue(BlockingQueue<List<List<Object>>> batches, List<List<Object>> batch, List<Future<?>> workers)
+            throws InterruptedException, ExecutionException
+    {
+        while (!batches.offer(batch, QUEUE_OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+            for (Future<?> worker : workers) {
+                if (worker.isDone()) {
+                    // workers complete only after reading all the data, so a completed worker has failed
+                    worker.get();
+                }
+            }
+        }
+    }
+
+    private Void loadBatches(String tableName, BlockingQueue<List<List<Object>>> batches)
+            throws SQLException, InterruptedException
+    {
+        try (JdbcConnectionScope ignored = JdbcConnectionScope.open()) {
+            Connection connection = queryExecutor.getConnection();
+            try (Loader loader = loaderFactory().create(queryExecutor, tableName)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (List<List<Object>> batch = batches.take(); batch != END_OF_DATA; batch = batches.take()) {
+                        loader.load(batch);
+                        connection.commit();
+                    }
+                }
+                catch (SQLException | RuntimeException | InterruptedException e) {
+                    rollbackIgnoreError(connection);
+                    restoreAutoCommit(connection, e);
+                    throw e;
+                }
+                connection.setAutoCommit(true);
+            }
+            return null;
+        }
+    }
+
+    private LoaderFactory loaderFactory()
+    {
+        return new LoaderFactory(configuration.getBoolean("databases." + databaseName + "." + BULK_LOAD_KEY).orElse(false));
+    }
+
+    private static void rollbackIgnoreError(Connection connection)
+    {
+        try {
+            connection.rollback();
+        }
+        catch (SQLException e) {
+            LOGGER.debug("unable to rollback transaction", e);
+        }
+    }
+
+    /**
+     * Failure to restore auto commit is added to the original failure, so that it does not hide it.
+     */
+    private static void restoreAutoCommit(Connection connection, Exception failure)
+    {
+        try {
+            connection.setAutoCommit(true);
+        }
+        catch (SQLException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void stopWorkers(ExecutorService executor)
+    {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(WORKERS_TERMINATION_TIMEOUT_SECONDS, SECONDS)) {
+                LOGGER.warn("table loading workers did not terminate in {} seconds", WORKERS_TERMINATION_TIMEOUT_SECONDS);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public static Iterable<List<List<Object>>> partitionBy(Iterator<List<Object>> dataRows, int partitionSize)
     {
         return () -> new Iterator<List<List<Object>>>()
@@ -14,30 +14,108 @@
 
 package io.prestodb.tempto.internal.fulfillment.table.jdbc;
 
+import com.google.common.base.Supplier;
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoader;
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoaderFactory;
 import io.prestodb.tempto.query.QueryExecutor;
 import org.slf4j.Logger;
 
 import java.sql.JDBCType;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
+import static com.google.common.base.Suppliers.memoize;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static io.prestodb.tempto.internal.ReflectionHelper.getAnnotatedSubTypesOf;
+import static io.prestodb.tempto.internal.ReflectionHelper.instantiate;
 import static org.slf4j.LoggerFactory.getLogger;
 
 class LoaderFactory
 {
     private static final Logger LOGGER = getLogger(LoaderFactory.class);
 
+    private static final Supplier<Map<String, BulkLoaderFactory>> BULK_LOADER_FACTORIES = memoize(() ->
+            instantiate(getAnnotatedSubTypesOf(BulkLoaderFactory.class, BulkLoaderFactory.Descriptor.class)).stream()
+                    .collect(toImmutableMap(
+                            factory -> factory.getClass().getAnnotation(BulkLoaderFactory.Descriptor.class).databaseProductName(),
+                            factory -> factory)));
+
+    private final boolean bulkLoadEnabled;
+
+    LoaderFactory(boolean bulkLoadEnabled)
+    {
+        this.bulkLoadEnabled = bulkLoadEnabled;
+    }
+
     Loader create(QueryExecutor queryExecutor, String tableName)
             throws SQLException
     {
         List<JDBCType> columnTypes = queryExecutor.executeQuery("SELECT * FROM " + tableName + " WHERE 1=2").getColumnTypes();
 
+        if (bulkLoadEnabled) {
+            Optional<Loader> bulkLoader = createBulkLoader(queryExecutor, tableName, columnTypes);
+            if (bulkLoader.isPresent()) {
+                return bulkLoader.get();
+            }
+        }
+
         try {
-            return new BatchLoader(queryExecutor, tableName, columnTypes.size());
+            return new BatchLoader(queryExecutor, tableName, columnTypes);
         }
         catch (SQLException sqlException) {
             LOGGER.warn("Unable to insert data with PreparedStatement", sqlException);
             return new InsertLoader(queryExecutor, tableName, columnTypes);
         }
     }
+
+    private static Optional<Loader> createBulkLoader(QueryExecutor queryExecutor, String tableName, List<JDBCType> columnTypes)
+            throws SQLException
+    {
+        String databaseProductName = queryExecutor.getConnection().getMetaData().getDatabaseProductName();
+        BulkLoaderFactory bulkLoaderFactory = BULK_LOADER_FACTORIES.get().get(databaseProductName);
+        if (bulkLoaderFactory == null) {
+            return Optional.empty();
+        }
+        try {
+            BulkLoader bulkLoader = bulkLoaderFactory.create(queryExecutor, tableName, columnTypes);
+            LOGGER.debug("Loading data into {} with {}", tableName, bulkLoader.getClass().getSimpleName());
+            return Optional.of(new BulkLoaderAdapter(bulkLoader));
+        }
+        catch (SQLFeatureNotSupportedException e) {
+            LOGGER.debug("Bulk load into {} is not supported, falling back to batch inserts: {}", tableName, e.getMessage());
+            return Optional.empty();
+        }
+        catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Unable to bulk load data into {}, falling back to batch inserts", tableName, e);
+            return Optional.empty();
+        }
+    }
+
+    private static class BulkLoaderAdapter
+            implements Loader
+    {
+        private final BulkLoader bulkLoader;
+
+        BulkLoaderAdapter(BulkLoader bulkLoader)
+        {
+            this.bulkLoader = bulkLoader;
+        }
+
+        @Override
+        public void load(List<List<Object>> batch)
+                throws SQLException
+        {
+            bulkLoader.load(batch);
+        }
+
+        @Override
+        public void close()
+                throws SQLException
+        {
+            bulkLoader.close();
+        }
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc;
+
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoader;
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoaderFactory;
+import io.prestodb.tempto.fulfillment.table.jdbc.CsvRowWriter;
+import io.prestodb.tempto.query.QueryExecutor;
+
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Loads data into PostgreSQL with {@code COPY ... FROM STDIN}. PostgreSQL JDBC driver is accessed
+ * reflectively, so that it does not have to be on the tempto classpath.
+ */
+@BulkLoaderFactory.Descriptor(databaseProductName = "PostgreSQL")
+public class PostgreSqlBulkLoaderFactory
+        implements BulkLoaderFactory
+{
+    @Override
+    public BulkLoader create(QueryExecutor queryExecutor, String tableName, List<JDBCType> columnTypes)
+            throws SQLException
+    {
+        CsvRowWriter.checkSupported(columnTypes);
+        return new PostgreSqlCopyLoader(queryExecutor.getConnection(), tableName, columnTypes.size());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc;
+
+import io.prestodb.tempto.fulfillment.table.jdbc.BulkLoader;
+import io.prestodb.tempto.fulfillment.table.jdbc.CsvRowWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+class PostgreSqlCopyLoader
+        implements BulkLoader
+{
+    private final String tableName;
+    private final int columnsCount;
+    private final Object copyManager;
+    private final Method copyIn;
+
+    PostgreSqlCopyLoader(Connection connection, String tableName, int columnsCount)
+            throws SQLException
+    {
+        this.tableName = tableName;
+        this.columnsCount = columnsCount;
+        Connection driverConnection = connection.unwrap(Connection.class);
+        try {
+            Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection", true, driverConnection.getClass().getClassLoader());
+            this.copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(driverConnection);
+            this.copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new SQLException("PostgreSQL copy API is not available", e);
+        }
+    }
+
+    @Override
+    public void load(List<List<Object>> rows)
+            throws SQLException
+    {
+        if (rows.isEmpty()) {
+            return;
+        }
+        StringWriter csv = new StringWriter();
+        try {
+            CsvRowWriter rowWriter = new CsvRowWriter(csv, columnsCount);
+            for (List<Object> row : rows) {
+                rowWriter.writeRow(row);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long copiedRows = copyIn(String.format("COPY %s FROM STDIN WITH (FORMAT csv)", tableName), new StringReader(csv.toString()));
+        if (copiedRows != rows.size()) {
+            throw new RuntimeException("could not insert all rows into " + tableName + ", inserted " + copiedRows + " of " + rows.size());
+        }
+    }
+
+    private long copyIn(String sql, Reader data)
+            throws SQLException
+    {
+        try {
+            return (long) copyIn.invoke(copyManager, sql, data);
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new RuntimeException("could not copy data into " + tableName, e.getCause());
+        }
+        catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
@@ -14,12 +14,29 @@
 
 package io.prestodb.tempto.internal.hadoop.hdfs;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource;
 import io.prestodb.tempto.hadoop.hdfs.HdfsClient;
 import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer;
 import jakarta.inject.Inject;
 import org.slf4j.Logger;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public class DefaultHdfsDataSourceWriter
@@ -27,30 +44,191 @@ public class DefaultHdfsDataSourceWriter
 {
     private static final Logger LOGGER = getLogger(DefaultHdfsDataSourceWriter.class);
 
+    public static final String CONF_TESTS_HDFS_REUSE_UNCHANGED_DATA_KEY = "tests.hdfs.reuse_unchanged_data";
+    public static final String CONF_HDFS_UPLOAD_PARALLELISM_KEY = "hdfs.upload.parallelism";
+    public static final String CONF_HDFS_UPLOAD_RETRIES_KEY = "hdfs.upload.retries";
+    public static final String REVISION_XATTR_NAME = "user.tempto-revision";
+    private static final String METADATA_XATTR_PREFIX = "user.tempto-";
+
+    private static final int DEFAULT_UPLOAD_PARALLELISM = 4;
+    private static final int DEFAULT_UPLOAD_RETRIES = 2;
+    private static final long UPLOAD_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     private final HdfsClient hdfsClient;
+    private final boolean reuseUnchangedData;
+    private final int uploadParallelism;
+    private final int uploadRetries;
+    // shared by all uploads, so at most uploadParallelism files are uploaded at once also when data sets are uploaded concurrently
+    private final ExecutorService uploadExecutor;
 
     @Inject
-    public DefaultHdfsDataSourceWriter(HdfsClient hdfsClient)
+    public DefaultHdfsDataSourceWriter(HdfsClient hdfsClient, Configuration configuration)
+    {
+        this(
+                hdfsClient,
+                configuration.getBoolean(CONF_TESTS_HDFS_REUSE_UNCHANGED_DATA_KEY).orElse(true),
+                configuration.getInt(CONF_HDFS_UPLOAD_PARALLELISM_KEY).orElse(DEFAULT_UPLOAD_PARALLELISM),
+                configuration.getInt(CONF_HDFS_UPLOAD_RETRIES_KEY).orElse(DEFAULT_UPLOAD_RETRIES));
+    }
+
+    public DefaultHdfsDataSourceWriter(HdfsClient hdfsClient, boolean reuseUnchangedData, int uploadParallelism, int uploadRetries)
     {
-        this.hdfsClient = hdfsClient;
+        checkArgument(uploadParallelism > 0, "uploadParallelism must be greater than 0: %s", uploadParallelism);
+        checkArgument(uploadRetries >= 0, "uploadRetries must not be negative: %s", uploadRetries);
+        this.hdfsClient = requireNonNull(hdfsClient, "hdfsClient is null");
+        this.reuseUnchangedData = reuseUnchangedData;
+        this.uploadParallelism = uploadParallelism;
+        this.uploadRetries = uploadRetries;
+        this.uploadExecutor = createUploadExecutor(uploadParallelism);
     }
 
     @Override
     public void ensureDataOnHdfs(String dataSourcePath, HiveDataSource dataSource)
     {
+        Optional<String> revisionMarker = reuseUnchangedData ? dataSource.revisionMarker() : Optional.empty();
+        if (revisionMarker.isPresent() && isDataUpToDate(dataSourcePath, revisionMarker.get())) {
+            return;
+        }
+
         hdfsClient.delete(dataSourcePath);
         hdfsClient.createDirectory(dataSourcePath);
         storeTableFiles(dataSourcePath, dataSource);
+        // marker is stored as the last step, so interrupted upload is never considered up to date
+        revisionMarker.ifPresent(marker -> hdfsClient.setXAttr(dataSourcePath, REVISION_XATTR_NAME, marker));
     }
 
+    /**
+     * Metadata is stored in extended attributes of the data directory. Failures are not fatal, as metadata can be recomputed.
+     */
+    @Override
+    public void setMetadata(String dataPath, String name, String value)
+    {
+        try {
+            hdfsClient.setXAttr(dataPath, METADATA_XATTR_PREFIX + name, value);
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Could not store {} of data in {}", name, dataPath, e);
+        }
+    }
+
+    @Override
+    public Optional<String> getMetadata(String dataPath, String name)
+    {
+        try {
+            return hdfsClient.getXAttr(dataPath, METADATA_XATTR_PREFIX + name);
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Could not read {} of data in {}", name, dataPath, e);
+            return Optional.empty();
+        }
+    }
+
+    private boolean isDataUpToDate(String dataSourcePath, String revisionMarker)
+    {
+        Optional<String> storedRevisionMarker = hdfsClient.getXAttr(dataSourcePath, REVISION_XATTR_NAME);
+        if (!storedRevisionMarker.isPresent()) {
+            return false;
+        }
+        if (storedRevisionMarker.get().equals(revisionMarker)) {
+            LOGGER.debug("Directory {} ({}) already exists, skipping upload of data", dataSourcePath, revisionMarker);
+            return true;
+        }
+        LOGGER.info("Directory {} ({}) already exists, but has different revision marker than expected: {}, so data will be uploaded again",
+                dataSourcePath, storedRevisionMarker.get(), revisionMarker);
+        return false;
+    }
+
+    /**
+     * Files are uploaded concurrently by at most {@code uploadParallelism} threads. Next file content is not
+     * requested from the data source until there is a free upload slot, and no new uploads are started after
+     * any of them fails.
+     */
     private void storeTableFiles(String dataSourcePath, HiveDataSource dataSource)
     {
-        int fileIndex = 0;
-        for (RepeatableContentProducer fileContent : dataSource.data()) {
-            String filePath = dataSourcePath + "/data_" + fileIndex;
-            LOGGER.debug("Saving new file {}", filePath);
-            hdfsClient.saveFile(filePath, fileContent);
-            fileIndex++;
+        Semaphore uploadSlots = new Semaphore(uploadParallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<Future<?>> uploads = newArrayList();
+        try {
+            int fileIndex = 0;
+            for (RepeatableContentProducer fileContent : dataSource.data()) {
+                uploadSlots.acquire();
+                if (failure.get() != null) {
+                    break;
+                }
+                String filePath = dataSourcePath + "/data_" + fileIndex;
+                uploads.add(uploadExecutor.submit(() -> {
+                    try {
+                        saveFile(filePath, fileContent);
+                    }
+                    catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally {
+                        uploadSlots.release();
+                    }
+                }));
+                fileIndex++;
+            }
+            for (Future<?> upload : uploads) {
+                upload.get();
+            }
+        }
+        catch (InterruptedException e) {
+            uploads.forEach(upload -> upload.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading data to " + dataSourcePath, e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("Could not upload data to " + dataSourcePath, e.getCause());
+        }
+
+        if (failure.get() != null) {
+            throw new RuntimeException("Could not upload data to " + dataSourcePath, failure.get());
+        }
+    }
+
+    /**
+     * Upload threads are stopped when idle, so the executor does not keep threads while no data is uploaded.
+     */
+    private static ExecutorService createUploadExecutor(int uploadParallelism)
+    {
+        if (uploadParallelism == 1) {
+            return newDirectExecutorService();
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                uploadParallelism,
+                uploadParallelism,
+                UPLOAD_THREAD_KEEP_ALIVE_SECONDS,
+                SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("hdfs-upload-%d")
+                        .setDaemon(true)
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public void close()
+    {
+        uploadExecutor.shutdownNow();
+    }
+
+    private void saveFile(String filePath, RepeatableContentProducer fileContent)
+    {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                LOGGER.debug("Saving new file {}", filePath);
+                hdfsClient.saveFile(filePath, fileContent);
+                return;
+            }
+            catch (RuntimeException e) {
+                if (attempt >= uploadRetries) {
+                    throw e;
+                }
+                LOGGER.warn("Could not save file {}, retrying ({}/{})", filePath, attempt + 1, uploadRetries, e);
+            }
         }
     }
 }
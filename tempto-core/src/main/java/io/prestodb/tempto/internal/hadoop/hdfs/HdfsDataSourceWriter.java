@@ -16,7 +16,30 @@ package io.prestodb.tempto.internal.hadoop.hdfs;
 
 import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource;
 
+import java.util.Optional;
+
 public interface HdfsDataSourceWriter
+        extends AutoCloseable
 {
     void ensureDataOnHdfs(String dataPath, HiveDataSource dataSource);
+
+    /**
+     * Stores a small named value with the data at given path. The value is removed when the data is uploaded again.
+     */
+    default void setMetadata(String dataPath, String name, String value)
+    {
+    }
+
+    default Optional<String> getMetadata(String dataPath, String name)
+    {
+        return Optional.empty();
+    }
+
+    /**
+     * Releases resources used for uploads, e.g. upload threads.
+     */
+    @Override
+    default void close()
+    {
+    }
 }
@@ -27,6 +27,7 @@ import io.prestodb.tempto.initialization.SuiteModuleProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,9 +43,14 @@ public class HdfsModuleProvider
     private static final Logger logger = LoggerFactory.getLogger(HdfsModuleProvider.class);
 
     public static final String CONF_TESTS_HDFS_PATH_KEY = "tests.hdfs.path";
+    public static final String CONF_HDFS_WEBHDFS_MAX_CONNECTIONS_KEY = "hdfs.webhdfs.max_connections";
+    public static final String CONF_HDFS_WEBHDFS_MAX_CONNECTIONS_PER_ROUTE_KEY = "hdfs.webhdfs.max_connections_per_route";
 
     private static final String AUTHENTICATION_SPNEGO = "SPNEGO";
     private static final int NUMBER_OF_HTTP_RETRIES = 3;
+    private static final int DEFAULT_MAX_CONNECTIONS = 64;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 16;
+    private static final int VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS = 2000;
 
     @Override
     public Module getModule(Configuration configuration)
@@ -93,7 +99,17 @@ public class HdfsModuleProvider
             @Singleton
             CloseableHttpClient createHttpClient()
             {
+                // connections to namenode and datanodes are kept alive and shared by all WebHDFS requests
+                PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+                connectionManager.setMaxTotal(configuration.getInt(CONF_HDFS_WEBHDFS_MAX_CONNECTIONS_KEY).orElse(DEFAULT_MAX_CONNECTIONS));
+                connectionManager.setDefaultMaxPerRoute(configuration.getInt(CONF_HDFS_WEBHDFS_MAX_CONNECTIONS_PER_ROUTE_KEY).orElse(DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+                connectionManager.setValidateAfterInactivity(VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS);
+
                 HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+                httpClientBuilder.setConnectionManager(connectionManager);
+                // all requests are sent on behalf of the single configured user, so authenticated (e.g. SPNEGO)
+                // connections can be reused by any request
+                httpClientBuilder.disableConnectionState();
                 httpClientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(NUMBER_OF_HTTP_RETRIES, true));
                 return httpClientBuilder.build();
             }
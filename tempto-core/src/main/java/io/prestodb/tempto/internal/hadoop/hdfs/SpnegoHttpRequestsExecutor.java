@@ -25,6 +25,7 @@ import io.prestodb.tempto.kerberos.KerberosAuthentication;
 import org.apache.http.auth.AuthSchemeProvider;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
+import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.AuthSchemes;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
@@ -76,8 +77,10 @@ public class SpnegoHttpRequestsExecutor
 
     private final CloseableHttpClient httpClient;
     private final KerberosAuthentication kerberosAuthentication;
-    private final HttpContext spnegoAwareHttpContext;
     private final boolean useCanonicalHostname;
+    private final Lookup<AuthSchemeProvider> authSchemeRegistry;
+    private final CredentialsProvider credentialsProvider;
+    private final ThreadLocal<HttpContext> spnegoAwareHttpContext = ThreadLocal.withInitial(this::createSpnegoAwareHttpContext);
 
     @Inject
     public SpnegoHttpRequestsExecutor(
@@ -87,19 +90,22 @@ public class SpnegoHttpRequestsExecutor
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.kerberosAuthentication = requireNonNull(kerberosAuthentication, "kerberosAuthentication is null");
-        this.spnegoAwareHttpContext = createSpnegoAwareHttpContext();
         this.useCanonicalHostname = configuration.getBoolean("hdfs.webhdfs.spnego_use_canonical_hostname").orElse(false);
+        this.authSchemeRegistry = RegistryBuilder.<AuthSchemeProvider>create()
+                .register(AuthSchemes.SPNEGO, new SPNegoSchemeFactory(true, useCanonicalHostname)).build();
+        BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(new AuthScope(null, -1, null), new NullCredentials());
+        this.credentialsProvider = credentialsProvider;
     }
 
+    /**
+     * {@link HttpContext} is not thread safe, but it keeps authentication state between requests,
+     * so a separate context is used by each thread sending requests.
+     */
     private HttpContext createSpnegoAwareHttpContext()
     {
         HttpClientContext httpContext = HttpClientContext.create();
-        Lookup<AuthSchemeProvider> authSchemeRegistry = RegistryBuilder.<AuthSchemeProvider>create()
-                .register(AuthSchemes.SPNEGO, new SPNegoSchemeFactory(true, useCanonicalHostname)).build();
         httpContext.setAuthSchemeRegistry(authSchemeRegistry);
-
-        BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        credentialsProvider.setCredentials(new AuthScope(null, -1, null), new NullCredentials());
         httpContext.setCredentialsProvider(credentialsProvider);
         return httpContext;
     }
@@ -111,7 +117,7 @@ public class SpnegoHttpRequestsExecutor
         Subject authenticationSubject = kerberosAuthentication.authenticate();
         return Subject.doAs(authenticationSubject, (PrivilegedAction<CloseableHttpResponse>) () -> {
             try {
-                return httpClient.execute(request, spnegoAwareHttpContext);
+                return httpClient.execute(request, spnegoAwareHttpContext.get());
             }
             catch (IOException e) {
                 throw Throwables.propagate(e);
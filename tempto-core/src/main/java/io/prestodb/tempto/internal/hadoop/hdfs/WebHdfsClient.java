@@ -16,11 +16,14 @@ package io.prestodb.tempto.internal.hadoop.hdfs;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.prestodb.tempto.hadoop.hdfs.HdfsClient;
+import io.prestodb.tempto.internal.stats.CallStats;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpRequest;
@@ -35,6 +38,7 @@ import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.ContentProducer;
 import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -45,13 +49,19 @@ import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Collections.emptyMap;
-import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.apache.commons.io.IOUtils.copyLarge;
 import static org.apache.http.HttpStatus.SC_CREATED;
+import static org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR;
 import static org.apache.http.HttpStatus.SC_NOT_FOUND;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.apache.http.HttpStatus.SC_TEMPORARY_REDIRECT;
@@ -71,10 +81,15 @@ public class WebHdfsClient
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final TypeReference<Map<String, Object>> MAP_TYPE_REFERENCE = new TypeReference<Map<String, Object>>() {};
+    private static final int MAX_FILES_PENDING_SYNCHRONIZATION = 10_000;
 
     private final HostAndPort namenode;
     private final String username;
     private final HttpRequestsExecutor httpRequestsExecutor;
+    private final ConcurrentMap<String, CallStats> operationStats = new ConcurrentHashMap<>();
+    // sorted, so that files saved under a directory can be found without scanning all the files
+    private final NavigableSet<String> savedFilesPendingSynchronization = new ConcurrentSkipListSet<>();
+    private final AtomicInteger savedFilesPendingSynchronizationCount = new AtomicInteger();
 
     @Inject
     public WebHdfsClient(
@@ -94,10 +109,11 @@ public class WebHdfsClient
     {
         // TODO: reconsider permission=777
         HttpPut mkdirRequest = new HttpPut(buildUri(path, "MKDIRS", ImmutableMap.of("permission", "777")));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(mkdirRequest)) {
+        try (CloseableHttpResponse response = execute("MKDIRS", mkdirRequest)) {
             if (response.getStatusLine().getStatusCode() != SC_OK) {
                 throw invalidStatusException("MKDIRS", path, mkdirRequest, response);
             }
+            EntityUtils.consume(response.getEntity());
             logger.debug("Created directory {} - username: {}", path, username);
         }
         catch (IOException e) {
@@ -109,10 +125,14 @@ public class WebHdfsClient
     public void delete(String path)
     {
         HttpDelete removeFileOrDirectoryRequest = new HttpDelete(buildUri(path, "DELETE", ImmutableMap.of("recursive", "true")));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(removeFileOrDirectoryRequest)) {
+        try (CloseableHttpResponse response = execute("DELETE", removeFileOrDirectoryRequest)) {
             if (response.getStatusLine().getStatusCode() != SC_OK) {
                 throw invalidStatusException("DELETE", path, removeFileOrDirectoryRequest, response);
             }
+            EntityUtils.consume(response.getEntity());
+            for (String savedFile : getSavedFilesPendingSynchronization(path)) {
+                removeSavedFilePendingSynchronization(savedFile);
+            }
             logger.debug("Removed file or directory {} - username: {}", path, username);
         }
         catch (IOException e) {
@@ -148,18 +168,19 @@ public class WebHdfsClient
 
     private void saveFile(String path, HttpEntity entity)
     {
-        String writeRedirectUri = executeAndGetRedirectUri(new HttpPut(
+        String writeRedirectUri = executeAndGetRedirectUri("CREATE", new HttpPut(
                 buildUri(path, "CREATE", ImmutableMap.of("overwrite", "true"))));
         HttpPut writeRequest = new HttpPut(writeRedirectUri);
         writeRequest.addHeader("content-type", "application/octet-stream");
         writeRequest.setEntity(entity);
 
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(writeRequest)) {
+        try (CloseableHttpResponse response = execute("CREATE_DATA", writeRequest)) {
             if (response.getStatusLine().getStatusCode() != SC_CREATED) {
                 throw invalidStatusException("CREATE", path, writeRequest, response);
             }
-            long length = waitForFileSavedAndReturnLength(path);
-            logger.debug("Saved file {} - username: {}, size: {}", path, username, byteCountToDisplaySize(length));
+            EntityUtils.consume(response.getEntity());
+            addSavedFilePendingSynchronization(path);
+            logger.debug("Saved file {} - username: {}", path, username);
         }
         catch (IOException e) {
             throw new RuntimeException("Could not save file " + path + " in hdfs, user: " + username, e);
@@ -170,7 +191,7 @@ public class WebHdfsClient
     public void loadFile(String path, OutputStream outputStream)
     {
         HttpGet readRequest = new HttpGet(buildUri(path, "OPEN", ImmutableMap.of()));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(readRequest)) {
+        try (CloseableHttpResponse response = execute("OPEN", readRequest)) {
             if (response.getStatusLine().getStatusCode() != SC_OK) {
                 throw invalidStatusException("OPEN", path, readRequest, response);
             }
@@ -187,7 +208,7 @@ public class WebHdfsClient
     private Object getAttributeValue(String path, String attribute)
     {
         HttpGet readRequest = new HttpGet(buildUri(path, "GETFILESTATUS", emptyMap()));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(readRequest)) {
+        try (CloseableHttpResponse response = execute("GETFILESTATUS", readRequest)) {
             int statusCode = response.getStatusLine().getStatusCode();
             if (statusCode != SC_OK) {
                 throw invalidStatusException("GETFILESTATUS", path, readRequest, response);
@@ -218,7 +239,8 @@ public class WebHdfsClient
     public boolean exist(String path)
     {
         HttpGet readRequest = new HttpGet(buildUri(path, "GETFILESTATUS", emptyMap()));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(readRequest)) {
+        try (CloseableHttpResponse response = execute("GETFILESTATUS", readRequest)) {
+            EntityUtils.consume(response.getEntity());
             return response.getStatusLine().getStatusCode() == SC_OK;
         }
         catch (IOException e) {
@@ -234,11 +256,13 @@ public class WebHdfsClient
                 "xattr.value", value,
                 "flag", "CREATE"
         );
+        synchronizeSavedFiles(path);
         HttpPut setXAttrRequest = new HttpPut(buildUri(path, "SETXATTR", params));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(setXAttrRequest)) {
+        try (CloseableHttpResponse response = execute("SETXATTR", setXAttrRequest)) {
             if (response.getStatusLine().getStatusCode() != SC_OK) {
                 throw invalidStatusException("SETXATTR", path, setXAttrRequest, response);
             }
+            EntityUtils.consume(response.getEntity());
             logger.debug("Set xAttr {} = {} for {}, username: {}", key, value, path, username);
         }
         catch (IOException e) {
@@ -249,11 +273,13 @@ public class WebHdfsClient
     @Override
     public void removeXAttr(String path, String key)
     {
+        synchronizeSavedFiles(path);
         HttpPut setXAttrRequest = new HttpPut(buildUri(path, "REMOVEXATTR", ImmutableMap.of("xattr.name", key)));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(setXAttrRequest)) {
+        try (CloseableHttpResponse response = execute("REMOVEXATTR", setXAttrRequest)) {
             if (response.getStatusLine().getStatusCode() != SC_OK) {
                 throw invalidStatusException("SETXATTR", path, setXAttrRequest, response);
             }
+            EntityUtils.consume(response.getEntity());
             logger.debug("Remove xAttr {} for {}, username: {}", key, path, username);
         }
         catch (IOException e) {
@@ -266,8 +292,9 @@ public class WebHdfsClient
     public Optional<String> getXAttr(String path, String key)
     {
         HttpGet setXAttrRequest = new HttpGet(buildUri(path, "GETXATTRS", ImmutableMap.of()));
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(setXAttrRequest)) {
+        try (CloseableHttpResponse response = execute("GETXATTRS", setXAttrRequest)) {
             if (response.getStatusLine().getStatusCode() == SC_NOT_FOUND) {
+                EntityUtils.consume(response.getEntity());
                 return Optional.empty();
             }
             if (response.getStatusLine().getStatusCode() != SC_OK) {
@@ -292,12 +319,13 @@ public class WebHdfsClient
         }
     }
 
-    private String executeAndGetRedirectUri(HttpUriRequest request)
+    private String executeAndGetRedirectUri(String operation, HttpUriRequest request)
     {
-        try (CloseableHttpResponse response = httpRequestsExecutor.execute(request)) {
+        try (CloseableHttpResponse response = execute(operation, request)) {
             if (response.getStatusLine().getStatusCode() != SC_TEMPORARY_REDIRECT) {
                 throw new RuntimeException("Expected redirect for request: " + request);
             }
+            EntityUtils.consume(response.getEntity());
             return response.getFirstHeader("Location").getValue();
         }
         catch (IOException e) {
@@ -307,12 +335,85 @@ public class WebHdfsClient
 
     /**
      * There is some wired bug in WebHDFS, which happens for big files. Just after saving such file
-     * it is not possible to immediately set xAttr. Calling GETFILESTATUS seems to introduce
-     * some synchronization point, so it should be used just after saving file.
+     * it is not possible to immediately set xAttr. Calling GETFILESTATUS on the saved file seems to introduce
+     * some synchronization point, so it is called before xAttr of just saved file (or its parent
+     * directory) is modified, instead of after every saved file.
+     */
+    private void synchronizeSavedFiles(String path)
+    {
+        for (String savedFile : getSavedFilesPendingSynchronization(path)) {
+            if (removeSavedFilePendingSynchronization(savedFile)) {
+                getLength(savedFile);
+            }
+        }
+    }
+
+    private void addSavedFilePendingSynchronization(String path)
+    {
+        if (savedFilesPendingSynchronizationCount.get() >= MAX_FILES_PENDING_SYNCHRONIZATION) {
+            // too many files are pending, synchronize immediately
+            removeSavedFilePendingSynchronization(path);
+            getLength(path);
+        }
+        else if (savedFilesPendingSynchronization.add(path)) {
+            savedFilesPendingSynchronizationCount.incrementAndGet();
+        }
+    }
+
+    private boolean removeSavedFilePendingSynchronization(String path)
+    {
+        if (savedFilesPendingSynchronization.remove(path)) {
+            savedFilesPendingSynchronizationCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return saved files pending synchronization, which are the given path or are under it
      */
-    private long waitForFileSavedAndReturnLength(String path)
+    private List<String> getSavedFilesPendingSynchronization(String path)
     {
-        return getLength(path);
+        String directory = path.endsWith("/") ? path : path + "/";
+        // '0' is the character following '/', so the range contains exactly the paths starting with the directory
+        String directoryEnd = directory.substring(0, directory.length() - 1) + '0';
+        ImmutableList.Builder<String> savedFiles = ImmutableList.builder();
+        if (savedFilesPendingSynchronization.contains(path)) {
+            savedFiles.add(path);
+        }
+        savedFiles.addAll(savedFilesPendingSynchronization.subSet(directory, directoryEnd));
+        return savedFiles.build();
+    }
+
+    @VisibleForTesting
+    int getSavedFilesPendingSynchronizationCount()
+    {
+        return savedFilesPendingSynchronizationCount.get();
+    }
+
+    /**
+     * @return statistics of requests sent to WebHDFS, by operation
+     */
+    public Map<String, CallStats> getOperationStats()
+    {
+        return ImmutableMap.copyOf(operationStats);
+    }
+
+    private CloseableHttpResponse execute(String operation, HttpUriRequest request)
+            throws IOException
+    {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            CloseableHttpResponse response = httpRequestsExecutor.execute(request);
+            failed = response.getStatusLine().getStatusCode() >= SC_INTERNAL_SERVER_ERROR;
+            return response;
+        }
+        finally {
+            long nanos = System.nanoTime() - start;
+            operationStats.computeIfAbsent(operation, key -> new CallStats()).record(nanos, failed);
+            logger.trace("WebHDFS {} request took {}ms", operation, NANOSECONDS.toMillis(nanos));
+        }
     }
 
     private URI buildUri(String path, String operation, Map<String, String> parameters)
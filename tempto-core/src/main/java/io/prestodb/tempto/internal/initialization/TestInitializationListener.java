@@ -31,6 +31,7 @@ import io.prestodb.tempto.fulfillment.RequirementFulfiller.AutoTestLevelFulfille
 import io.prestodb.tempto.fulfillment.TestStatus;
 import io.prestodb.tempto.fulfillment.table.TableManager;
 import io.prestodb.tempto.fulfillment.table.TableManagerDispatcher;
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient;
 import io.prestodb.tempto.initialization.AutoModuleProvider;
 import io.prestodb.tempto.initialization.SuiteModuleProvider;
 import io.prestodb.tempto.initialization.TestMethodModuleProvider;
@@ -43,6 +44,9 @@ import io.prestodb.tempto.internal.fulfillment.command.SuiteCommandFulfiller;
 import io.prestodb.tempto.internal.fulfillment.command.TestCommandFulfiller;
 import io.prestodb.tempto.internal.fulfillment.table.ImmutableTablesFulfiller;
 import io.prestodb.tempto.internal.fulfillment.table.MutableTablesFulfiller;
+import io.prestodb.tempto.internal.hadoop.hdfs.HdfsDataSourceWriter;
+import io.prestodb.tempto.internal.hadoop.hdfs.WebHdfsClient;
+import io.prestodb.tempto.query.JdbcConnectionsPool;
 import org.slf4j.Logger;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
@@ -214,7 +218,29 @@ public class TestInitializationListener
         }
 
         TestStatus testStatus = context.getFailedTests().size() > 0 ? FAILURE : SUCCESS;
+        GuiceTestContext suiteTestContext = suiteTestContextStack.get().peek();
+        Optional<JdbcConnectionsPool> jdbcConnectionsPool = suiteTestContext.getOptionalDependency(JdbcConnectionsPool.class);
+        Optional<HdfsClient> hdfsClient = suiteTestContext.getOptionalDependency(HdfsClient.class);
+        Optional<HdfsDataSourceWriter> hdfsDataSourceWriter = suiteTestContext.getOptionalDependency(HdfsDataSourceWriter.class);
         doCleanup(suiteTestContextStack.get(), suiteLevelFulfillers, testStatus);
+        jdbcConnectionsPool.ifPresent(TestInitializationListener::closeIdleConnections);
+        hdfsDataSourceWriter.ifPresent(HdfsDataSourceWriter::close);
+        hdfsClient.filter(WebHdfsClient.class::isInstance)
+                .map(WebHdfsClient.class::cast)
+                .ifPresent(TestInitializationListener::logRequestStatistics);
+    }
+
+    private static void logRequestStatistics(WebHdfsClient webHdfsClient)
+    {
+        webHdfsClient.getOperationStats().forEach((operation, stats) ->
+                LOGGER.info("WebHDFS {} requests: {}", operation, stats));
+    }
+
+    private static void closeIdleConnections(JdbcConnectionsPool jdbcConnectionsPool)
+    {
+        jdbcConnectionsPool.getConnectionPools().forEach((jdbcParamsState, connectionPool) ->
+                LOGGER.info("JDBC connections of {}: {}", jdbcParamsState.getName().orElse(jdbcParamsState.url), connectionPool));
+        jdbcConnectionsPool.closeIdleConnections();
     }
 
     @Override
@@ -14,17 +14,24 @@
 package io.prestodb.tempto.internal.query;
 
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
-import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
 import com.datastax.oss.driver.api.core.metadata.Metadata;
 import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
 import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.SchemaChangeListenerBase;
 import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
 import com.datastax.oss.driver.api.core.type.DataType;
 import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.query.QueryExecutionException;
 import io.prestodb.tempto.query.QueryResult;
@@ -34,17 +41,37 @@ import java.sql.JDBCType;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.lang.String.format;
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
 import static java.util.stream.Collectors.toList;
 
 public class CassandraQueryExecutor
         implements AutoCloseable
 {
+    public static final int DEFAULT_PAGE_SIZE = 5000;
+    public static final int DEFAULT_PREPARED_STATEMENTS_CACHE_SIZE = 100;
+
+    private static final Pattern SCHEMA_CHANGE_STATEMENT = Pattern.compile("^\\s*(CREATE|ALTER|DROP)\\b", CASE_INSENSITIVE);
+
     private static final Map<DataType, JDBCType> typeMapping;
     private final CqlSession session;
+    private final int pageSize;
+    // schema metadata snapshot, valid while its generation is the current one
+    private final AtomicReference<SchemaMetadataSnapshot> schemaMetadata = new AtomicReference<>();
+    // incremented by schema change events and schema changing statements
+    private final AtomicLong schemaGeneration = new AtomicLong();
+    private final Cache<String, PreparedStatement> preparedStatements;
 
     static {
         typeMapping = ImmutableMap.<DataType, JDBCType>builder()
@@ -80,12 +107,34 @@ public class CassandraQueryExecutor
         String host = configuration.getStringMandatory("databases.cassandra.host");
         int port = configuration.getIntMandatory("databases.cassandra.port");
         String dc = configuration.getString("databases.cassandra.datacenter").orElse("datacenter1");
+        this.pageSize = configuration.getInt("databases.cassandra.page_size").orElse(DEFAULT_PAGE_SIZE);
+        checkArgument(pageSize > 0, "page_size must be greater than zero");
+        this.preparedStatements = preparedStatementsCache(
+                configuration.getInt("databases.cassandra.prepared_statements_cache_size").orElse(DEFAULT_PREPARED_STATEMENTS_CACHE_SIZE));
 
         // Driver 4.x requires a local datacenter to be specified
         // Using "datacenter1" as the default, which is the standard for single-datacenter deployments
         session = CqlSession.builder()
                 .addContactPoint(new InetSocketAddress(host, port))
                 .withLocalDatacenter(dc)
+                .withSchemaChangeListener(new InvalidatingSchemaChangeListener())
+                .build();
+    }
+
+    @VisibleForTesting
+    CassandraQueryExecutor(CqlSession session, int pageSize, int preparedStatementsCacheSize)
+    {
+        checkArgument(pageSize > 0, "page_size must be greater than zero");
+        this.session = session;
+        this.pageSize = pageSize;
+        this.preparedStatements = preparedStatementsCache(preparedStatementsCacheSize);
+    }
+
+    private static Cache<String, PreparedStatement> preparedStatementsCache(int size)
+    {
+        checkArgument(size >= 0, "prepared_statements_cache_size is negative");
+        return CacheBuilder.newBuilder()
+                .maximumSize(size)
                 .build();
     }
 
@@ -94,11 +143,14 @@ public class CassandraQueryExecutor
     {
         checkState(!session.isClosed(), "Trying to execute query using closed Session");
 
-        ResultSet rs = session.execute(sql);
+        AsyncResultSet page = getUnchecked(session.executeAsync(SimpleStatement.newInstance(sql).setPageSize(pageSize)));
         List<ColumnDefinition> definitions = newArrayList();
-        for (ColumnDefinition def : rs.getColumnDefinitions()) {
+        for (ColumnDefinition def : page.getColumnDefinitions()) {
             definitions.add(def);
         }
+        if (SCHEMA_CHANGE_STATEMENT.matcher(sql).find()) {
+            invalidateSchemaMetadata();
+        }
 
         List<JDBCType> types = definitions.stream()
                 .map(definition -> getJDBCType(definition.getType()))
@@ -111,12 +163,20 @@ public class CassandraQueryExecutor
 
         QueryResult.QueryResultBuilder resultBuilder = new QueryResult.QueryResultBuilder(types, columnNames);
 
-        for (Row row : rs) {
-            List<Object> builderRow = newArrayList();
-            for (int i = 0; i < types.size(); ++i) {
-                builderRow.add(row.getObject(i));
+        while (true) {
+            // fetch the next page while rows of the current one are being converted
+            Optional<CompletionStage<AsyncResultSet>> nextPage = page.hasMorePages() ? Optional.of(page.fetchNextPage()) : Optional.empty();
+            for (Row row : page.currentPage()) {
+                List<Object> builderRow = newArrayList();
+                for (int i = 0; i < types.size(); ++i) {
+                    builderRow.add(row.getObject(i));
+                }
+                resultBuilder.addRow(builderRow);
             }
-            resultBuilder.addRow(builderRow);
+            if (!nextPage.isPresent()) {
+                break;
+            }
+            page = getUnchecked(nextPage.get());
         }
 
         return resultBuilder.build();
@@ -127,9 +187,23 @@ public class CassandraQueryExecutor
         return session;
     }
 
+    /**
+     * Returns a statement prepared for given CQL, reusing recently prepared statements.
+     */
+    public PreparedStatement prepare(String cql)
+    {
+        try {
+            return preparedStatements.get(cql, () -> session.prepare(cql));
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException("Could not prepare statement: " + cql, e.getCause());
+        }
+    }
+
     public List<String> getColumnNames(String keyspaceName, String tableName)
     {
-        Optional<KeyspaceMetadata> keyspaceMetadata = session.getMetadata().getKeyspace(keyspaceName);
+        Optional<KeyspaceMetadata> keyspaceMetadata = getSchemaMetadata().getKeyspace(keyspaceName);
         if (!keyspaceMetadata.isPresent()) {
             throw new IllegalStateException(format("Keyspace %s does not exist", keyspaceName));
         }
@@ -145,7 +219,7 @@ public class CassandraQueryExecutor
 
     public boolean tableExists(String keyspaceName, String tableName)
     {
-        Optional<KeyspaceMetadata> keyspaceMetadata = session.getMetadata().getKeyspace(keyspaceName);
+        Optional<KeyspaceMetadata> keyspaceMetadata = getSchemaMetadata().getKeyspace(keyspaceName);
         if (!keyspaceMetadata.isPresent()) {
             return false;
         }
@@ -154,8 +228,7 @@ public class CassandraQueryExecutor
 
     public List<String> getTableNames(String keyspaceName)
     {
-        Metadata clusterMetadata = session.getMetadata();
-        Optional<KeyspaceMetadata> keyspaceMetadata = clusterMetadata.getKeyspace(keyspaceName);
+        Optional<KeyspaceMetadata> keyspaceMetadata = getSchemaMetadata().getKeyspace(keyspaceName);
         if (!keyspaceMetadata.isPresent()) {
             return ImmutableList.of();
         }
@@ -168,11 +241,101 @@ public class CassandraQueryExecutor
     @Override
     public void close()
     {
+        preparedStatements.invalidateAll();
         if (!session.isClosed()) {
             session.close();
         }
     }
 
+    private Metadata getSchemaMetadata()
+    {
+        long generation = schemaGeneration.get();
+        SchemaMetadataSnapshot snapshot = schemaMetadata.get();
+        if (snapshot != null && snapshot.generation == generation) {
+            return snapshot.metadata;
+        }
+        // metadata fetched concurrently with invalidation is stored with the previous generation, so it is not reused
+        SchemaMetadataSnapshot fetched = new SchemaMetadataSnapshot(generation, session.getMetadata());
+        schemaMetadata.accumulateAndGet(fetched, (current, update) -> current == null || current.generation < update.generation ? update : current);
+        return fetched.metadata;
+    }
+
+    @VisibleForTesting
+    void invalidateSchemaMetadata()
+    {
+        schemaGeneration.incrementAndGet();
+    }
+
+    private void onSchemaChange()
+    {
+        invalidateSchemaMetadata();
+        // prepared statements may refer to columns which do not exist anymore
+        preparedStatements.invalidateAll();
+    }
+
+    private static <T> T getUnchecked(CompletionStage<T> stage)
+    {
+        try {
+            return stage.toCompletableFuture().join();
+        }
+        catch (CompletionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class SchemaMetadataSnapshot
+    {
+        private final long generation;
+        private final Metadata metadata;
+
+        SchemaMetadataSnapshot(long generation, Metadata metadata)
+        {
+            this.generation = generation;
+            this.metadata = metadata;
+        }
+    }
+
+    private class InvalidatingSchemaChangeListener
+            extends SchemaChangeListenerBase
+    {
+        @Override
+        public void onKeyspaceCreated(KeyspaceMetadata keyspace)
+        {
+            onSchemaChange();
+        }
+
+        @Override
+        public void onKeyspaceDropped(KeyspaceMetadata keyspace)
+        {
+            onSchemaChange();
+        }
+
+        @Override
+        public void onKeyspaceUpdated(KeyspaceMetadata current, KeyspaceMetadata previous)
+        {
+            onSchemaChange();
+        }
+
+        @Override
+        public void onTableCreated(TableMetadata table)
+        {
+            onSchemaChange();
+        }
+
+        @Override
+        public void onTableDropped(TableMetadata table)
+        {
+            onSchemaChange();
+        }
+
+        @Override
+        public void onTableUpdated(TableMetadata current, TableMetadata previous)
+        {
+            onSchemaChange();
+        }
+    }
+
     private static JDBCType getJDBCType(DataType type)
     {
         JDBCType jdbcType = typeMapping.get(type);
@@ -0,0 +1,355 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.query;
+
+import java.sql.JDBCType;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Append-only storage of values of a single query result column.
+ * <p>
+ * Numeric and boolean columns are kept in primitive arrays and string columns are dictionary encoded,
+ * as long as appended values are of the Java type the JDBC driver is expected to return for the column type.
+ * Otherwise {@link #append(Object)} rejects the value and the column has to be converted with {@link #toObjectVector()}.
+ * Values returned by {@link #get(int)} are of the same type as the appended ones.
+ */
+public abstract class ColumnVector
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_DICTIONARY_SIZE = 10_000;
+
+    public static ColumnVector forType(JDBCType type)
+    {
+        switch (type) {
+            case BIGINT:
+                return new LongColumnVector(Long.class);
+            case INTEGER:
+                return new LongColumnVector(Integer.class);
+            case SMALLINT:
+                return new LongColumnVector(Short.class);
+            case TINYINT:
+                return new LongColumnVector(Byte.class);
+            case DOUBLE:
+            case FLOAT:
+                return new DoubleColumnVector(Double.class);
+            case REAL:
+                return new DoubleColumnVector(Float.class);
+            case BOOLEAN:
+            case BIT:
+                return new BooleanColumnVector();
+            case CHAR:
+            case VARCHAR:
+            case LONGVARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case LONGNVARCHAR:
+                return new DictionaryColumnVector();
+            default:
+                return new ObjectColumnVector();
+        }
+    }
+
+    public abstract int size();
+
+    public abstract Object get(int position);
+
+    /**
+     * @return false if value can not be stored in this vector, in which case vector is not modified
+     */
+    public abstract boolean append(Object value);
+
+    public ColumnVector toObjectVector()
+    {
+        ObjectColumnVector objectVector = new ObjectColumnVector();
+        for (int position = 0; position < size(); ++position) {
+            objectVector.append(get(position));
+        }
+        return objectVector;
+    }
+
+    /**
+     * @return read-only list view of values of this vector
+     */
+    public List<Object> asList()
+    {
+        return new AbstractList<Object>()
+        {
+            @Override
+            public Object get(int index)
+            {
+                return ColumnVector.this.get(index);
+            }
+
+            @Override
+            public int size()
+            {
+                return ColumnVector.this.size();
+            }
+        };
+    }
+
+    private abstract static class PrimitiveColumnVector
+            extends ColumnVector
+    {
+        private final BitSet nulls = new BitSet();
+        protected int size;
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public Object get(int position)
+        {
+            checkElementIndex(position, size);
+            if (nulls.get(position)) {
+                return null;
+            }
+            return getNonNull(position);
+        }
+
+        @Override
+        public boolean append(Object value)
+        {
+            if (value == null) {
+                ensureCapacity(size + 1);
+                nulls.set(size);
+                size++;
+                return true;
+            }
+            if (!accepts(value)) {
+                return false;
+            }
+            ensureCapacity(size + 1);
+            set(size, value);
+            size++;
+            return true;
+        }
+
+        protected abstract boolean accepts(Object value);
+
+        protected abstract void ensureCapacity(int capacity);
+
+        protected abstract void set(int position, Object value);
+
+        protected abstract Object getNonNull(int position);
+
+        protected static int grownCapacity(int currentCapacity, int capacity)
+        {
+            return Math.max(capacity, Math.max(INITIAL_CAPACITY, currentCapacity * 2));
+        }
+    }
+
+    private static class LongColumnVector
+            extends PrimitiveColumnVector
+    {
+        private final Class<?> javaType;
+        private long[] values = new long[0];
+
+        LongColumnVector(Class<?> javaType)
+        {
+            this.javaType = javaType;
+        }
+
+        @Override
+        protected boolean accepts(Object value)
+        {
+            return value.getClass() == javaType;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (values.length < capacity) {
+                values = Arrays.copyOf(values, grownCapacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        protected void set(int position, Object value)
+        {
+            values[position] = ((Number) value).longValue();
+        }
+
+        @Override
+        protected Object getNonNull(int position)
+        {
+            long value = values[position];
+            if (javaType == Integer.class) {
+                return (int) value;
+            }
+            if (javaType == Short.class) {
+                return (short) value;
+            }
+            if (javaType == Byte.class) {
+                return (byte) value;
+            }
+            return value;
+        }
+    }
+
+    private static class DoubleColumnVector
+            extends PrimitiveColumnVector
+    {
+        private final Class<?> javaType;
+        private double[] values = new double[0];
+
+        DoubleColumnVector(Class<?> javaType)
+        {
+            this.javaType = javaType;
+        }
+
+        @Override
+        protected boolean accepts(Object value)
+        {
+            return value.getClass() == javaType;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (values.length < capacity) {
+                values = Arrays.copyOf(values, grownCapacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        protected void set(int position, Object value)
+        {
+            values[position] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        protected Object getNonNull(int position)
+        {
+            double value = values[position];
+            if (javaType == Float.class) {
+                return (float) value;
+            }
+            return value;
+        }
+    }
+
+    private static class BooleanColumnVector
+            extends PrimitiveColumnVector
+    {
+        private final BitSet values = new BitSet();
+
+        @Override
+        protected boolean accepts(Object value)
+        {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            // BitSet grows on demand
+        }
+
+        @Override
+        protected void set(int position, Object value)
+        {
+            values.set(position, (Boolean) value);
+        }
+
+        @Override
+        protected Object getNonNull(int position)
+        {
+            return values.get(position);
+        }
+    }
+
+    private static class DictionaryColumnVector
+            extends PrimitiveColumnVector
+    {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] positions = new int[0];
+
+        @Override
+        protected boolean accepts(Object value)
+        {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            return ids.containsKey(value) || dictionary.size() < MAX_DICTIONARY_SIZE;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (positions.length < capacity) {
+                positions = Arrays.copyOf(positions, grownCapacity(positions.length, capacity));
+            }
+        }
+
+        @Override
+        protected void set(int position, Object value)
+        {
+            positions[position] = ids.computeIfAbsent((String) value, key -> {
+                dictionary.add(key);
+                return dictionary.size() - 1;
+            });
+        }
+
+        @Override
+        protected Object getNonNull(int position)
+        {
+            return dictionary.get(positions[position]);
+        }
+    }
+
+    private static class ObjectColumnVector
+            extends ColumnVector
+    {
+        private final List<Object> values = new ArrayList<>();
+
+        @Override
+        public int size()
+        {
+            return values.size();
+        }
+
+        @Override
+        public Object get(int position)
+        {
+            return values.get(position);
+        }
+
+        @Override
+        public boolean append(Object value)
+        {
+            values.add(value);
+            return true;
+        }
+
+        @Override
+        public ColumnVector toObjectVector()
+        {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.query;
+
+import com.google.common.collect.ImmutableSet;
+import io.prestodb.tempto.internal.stats.CallStats;
+import org.slf4j.Logger;
+
+import javax.sql.DataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.Objects.requireNonNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps up to {@code maxIdleConnections} connections obtained from a {@link DataSource} for reuse.
+ * <p>
+ * Borrowed connections are returned to the pool when closed. Idle connections are validated before
+ * being borrowed again and the prepare statement is run on every borrow. When a connection is returned,
+ * its catalog, schema and read only flag are restored. Connections which may carry state that cannot be
+ * restored are closed instead of reused, i.e. connections left with auto commit disabled, connections
+ * which executed session or transaction control statements (e.g. {@code USE}, {@code SET SESSION}),
+ * connections with changed transaction isolation, holdability, network timeout, client info or type map,
+ * and connections which were unwrapped, as driver specific session changes cannot be tracked.
+ */
+public class ConnectionPool
+{
+    private static final Logger LOGGER = getLogger(ConnectionPool.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final Pattern SESSION_STATEMENT = Pattern.compile(
+            "^\\s*(USE|SET|RESET|BEGIN|START\\s+TRANSACTION|PREPARE|DEALLOCATE|DECLARE|ALTER\\s+SESSION" +
+                    "|CREATE\\s+(GLOBAL\\s+|LOCAL\\s+)?(TEMP|TEMPORARY)\\s)\\b",
+            CASE_INSENSITIVE);
+    private static final Set<String> SESSION_METHODS = ImmutableSet.of(
+            "unwrap",
+            "setTransactionIsolation",
+            "setHoldability",
+            "setNetworkTimeout",
+            "setClientInfo",
+            "setTypeMap");
+    private static final Set<String> STATEMENT_METHODS = ImmutableSet.of("createStatement", "prepareStatement", "prepareCall");
+
+    private final DataSource dataSource;
+    private final Optional<String> prepareStatement;
+    private final int maxIdleConnections;
+    private final BlockingDeque<PhysicalConnection> idleConnections;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final CallStats borrowStats = new CallStats();
+
+    public ConnectionPool(DataSource dataSource, Optional<String> prepareStatement, int maxIdleConnections)
+    {
+        checkArgument(maxIdleConnections >= 0, "maxIdleConnections is negative");
+        this.dataSource = requireNonNull(dataSource, "dataSource is null");
+        this.prepareStatement = requireNonNull(prepareStatement, "prepareStatement is null");
+        this.maxIdleConnections = maxIdleConnections;
+        this.idleConnections = new LinkedBlockingDeque<>(Math.max(maxIdleConnections, 1));
+    }
+
+    public Connection getConnection()
+            throws SQLException
+    {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            PhysicalConnection connection = pollValidIdleConnection().orElse(null);
+            if (connection == null) {
+                connection = createConnection();
+            }
+            prepare(connection);
+            activeConnections.incrementAndGet();
+            failed = false;
+            return pooledConnection(connection);
+        }
+        finally {
+            borrowStats.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    public int getActiveConnections()
+    {
+        return activeConnections.get();
+    }
+
+    public int getIdleConnections()
+    {
+        return idleConnections.size();
+    }
+
+    /**
+     * @return statistics of time spent on obtaining connections from the pool
+     */
+    public CallStats getBorrowStats()
+    {
+        return borrowStats;
+    }
+
+    public void close()
+    {
+        PhysicalConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            closeQuietly(connection.connection);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("active: %d, idle: %d, borrow: %s", getActiveConnections(), getIdleConnections(), borrowStats);
+    }
+
+    private Optional<PhysicalConnection> pollValidIdleConnection()
+    {
+        PhysicalConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            if (isValid(connection.connection)) {
+                return Optional.of(connection);
+            }
+            closeQuietly(connection.connection);
+        }
+        return Optional.empty();
+    }
+
+    private PhysicalConnection createConnection()
+            throws SQLException
+    {
+        Connection connection = dataSource.getConnection();
+        try {
+            return new PhysicalConnection(connection);
+        }
+        catch (SQLException | RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    private void prepare(PhysicalConnection connection)
+            throws SQLException
+    {
+        if (prepareStatement.isPresent()) {
+            try (Statement statement = connection.connection.createStatement()) {
+                statement.execute(prepareStatement.get());
+            }
+            catch (SQLException | RuntimeException e) {
+                closeQuietly(connection.connection);
+                throw e;
+            }
+        }
+    }
+
+    private void release(PhysicalConnection connection, boolean sessionModified)
+    {
+        activeConnections.decrementAndGet();
+        if (maxIdleConnections == 0 || sessionModified || !connection.reset() || !idleConnections.offerFirst(connection)) {
+            closeQuietly(connection.connection);
+        }
+    }
+
+    private static boolean isValid(Connection connection)
+    {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        }
+        catch (SQLException | RuntimeException | AbstractMethodError e) {
+            // some drivers do not implement isValid
+            try {
+                return !connection.isClosed();
+            }
+            catch (SQLException | RuntimeException ignored) {
+                return false;
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection)
+    {
+        try {
+            connection.close();
+        }
+        catch (SQLException | RuntimeException e) {
+            LOGGER.debug("Exception happened during closing connection.", e);
+        }
+    }
+
+    private static boolean isSessionStatement(Object sql)
+    {
+        return sql instanceof String && SESSION_STATEMENT.matcher((String) sql).find();
+    }
+
+    private Connection pooledConnection(PhysicalConnection connection)
+    {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                new PooledConnectionHandler(connection));
+    }
+
+    private static class PhysicalConnection
+    {
+        private final Connection connection;
+        private final String catalog;
+        private final String schema;
+        private final boolean readOnly;
+
+        PhysicalConnection(Connection connection)
+                throws SQLException
+        {
+            this.connection = connection;
+            this.catalog = connection.getCatalog();
+            this.schema = getSchema(connection);
+            this.readOnly = connection.isReadOnly();
+        }
+
+        /**
+         * @return true if the connection was restored to its initial state and can be reused
+         */
+        boolean reset()
+        {
+            try {
+                if (connection.isClosed() || !connection.getAutoCommit()) {
+                    return false;
+                }
+                if (!Objects.equals(connection.getCatalog(), catalog)) {
+                    connection.setCatalog(catalog);
+                }
+                if (!Objects.equals(getSchema(connection), schema)) {
+                    connection.setSchema(schema);
+                }
+                if (connection.isReadOnly() != readOnly) {
+                    connection.setReadOnly(readOnly);
+                }
+                connection.clearWarnings();
+                return true;
+            }
+            catch (SQLException | RuntimeException | AbstractMethodError e) {
+                LOGGER.debug("Could not reset connection state, connection will not be reused.", e);
+                return false;
+            }
+        }
+
+        private static String getSchema(Connection connection)
+                throws SQLException
+        {
+            try {
+                return connection.getSchema();
+            }
+            catch (AbstractMethodError | SQLFeatureNotSupportedException e) {
+                // drivers implementing pre JDBC 4.1 interfaces do not support schemas
+                return null;
+            }
+        }
+    }
+
+    private class PooledConnectionHandler
+            implements InvocationHandler
+    {
+        private final PhysicalConnection physicalConnection;
+        private final Connection connection;
+        private volatile boolean sessionModified;
+        private boolean closed;
+
+        PooledConnectionHandler(PhysicalConnection physicalConnection)
+        {
+            this.physicalConnection = physicalConnection;
+            this.connection = physicalConnection.connection;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable
+        {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(physicalConnection, sessionModified);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "pooled " + connection;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            if (SESSION_METHODS.contains(method.getName())) {
+                sessionModified = true;
+            }
+            if (method.getName().startsWith("prepare") && args != null && isSessionStatement(args[0])) {
+                sessionModified = true;
+            }
+            Object result = invokeOn(connection, method, args);
+            if (STATEMENT_METHODS.contains(method.getName())) {
+                // statements are proxied, so that their connection is the pooled one
+                return Proxy.newProxyInstance(
+                        ConnectionPool.class.getClassLoader(),
+                        new Class<?>[] {method.getReturnType()},
+                        new StatementHandler((Statement) result, (Connection) proxy));
+            }
+            return result;
+        }
+
+        private class StatementHandler
+                implements InvocationHandler
+        {
+            private final Statement statement;
+            private final Connection pooledConnection;
+
+            StatementHandler(Statement statement, Connection pooledConnection)
+            {
+                this.statement = statement;
+                this.pooledConnection = pooledConnection;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable
+            {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "getConnection":
+                        return pooledConnection;
+                    case "unwrap":
+                        sessionModified = true;
+                        break;
+                }
+                if ((method.getName().startsWith("execute") || method.getName().equals("addBatch")) && args != null && isSessionStatement(args[0])) {
+                    sessionModified = true;
+                }
+                return invokeOn(statement, method, args);
+            }
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args)
+            throws Throwable
+    {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static io.prestodb.tempto.query.JdbcConnectivityParamsState.DEFAULT_MAX_IDLE_CONNECTIONS;
 
 public class JdbcConnectionsConfiguration
 {
@@ -32,6 +33,7 @@ public class JdbcConnectionsConfiguration
     private static final String JDBC_USER_KEY = "jdbc_user";
     private static final String JDBC_PASSWORD_KEY = "jdbc_password";
     private static final String JDBC_POOLING_KEY = "jdbc_pooling";
+    private static final String JDBC_MAX_IDLE_CONNECTIONS_KEY = "jdbc_max_idle_connections";
     private static final String JDBC_JAR = "jdbc_jar";
     private static final String ALIAS_KEY = "alias";
     private static final String PREPARE_STATEMENT_KEY = "prepare_statement";
@@ -60,6 +62,7 @@ public class JdbcConnectionsConfiguration
                 .setUser(connectionConfiguration.getStringMandatory(JDBC_USER_KEY))
                 .setPassword(connectionConfiguration.getStringMandatory(JDBC_PASSWORD_KEY))
                 .setPooling(connectionConfiguration.getBoolean(JDBC_POOLING_KEY).orElse(false))
+                .setMaxIdleConnections(connectionConfiguration.getInt(JDBC_MAX_IDLE_CONNECTIONS_KEY).orElse(DEFAULT_MAX_IDLE_CONNECTIONS))
                 .setJar(connectionConfiguration.getString(JDBC_JAR))
                 .setPrepareStatement(connectionConfiguration.getString(PREPARE_STATEMENT_KEY))
                 .setKerberosPrincipal(connectionConfiguration.getString(KERBEROS_PRINCIPAL_KEY))
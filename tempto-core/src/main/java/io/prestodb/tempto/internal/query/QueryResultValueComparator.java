@@ -20,6 +20,7 @@ import com.google.common.primitives.UnsignedBytes;
 import io.prestodb.tempto.configuration.Configuration;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.sql.Array;
 import java.sql.Date;
 import java.sql.JDBCType;
@@ -44,13 +45,17 @@ public class QueryResultValueComparator
 {
     public static final String FLOAT_TOLERANCE_CONFIGURATION_KEY = "tests.assert.float_tolerance";
 
+    private static final Object NULL_KEY = new Object();
+
     private final JDBCType type;
     private final Configuration configuration;
+    private final double floatTolerance;
 
     private QueryResultValueComparator(JDBCType type, Configuration configuration)
     {
         this.type = requireNonNull(type, "type is null");
         this.configuration = requireNonNull(configuration, "configuration is null");
+        this.floatTolerance = configuration.getDouble(FLOAT_TOLERANCE_CONFIGURATION_KEY).orElse(0.0);
     }
 
     public static QueryResultValueComparator comparatorForType(JDBCType type, Configuration configuration)
@@ -109,6 +114,79 @@ public class QueryResultValueComparator
         }
     }
 
+    /**
+     * @return whether {@link #hashKey(Object)} can be computed for values of this column; it can not be
+     * for floating point values compared with tolerance or for arrays
+     */
+    public boolean supportsHashKey()
+    {
+        switch (type) {
+            case REAL:
+            case FLOAT:
+            case DOUBLE:
+                return floatTolerance == 0;
+            case ARRAY:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns a key which is equal for two values if and only if they are equal according to this comparator.
+     * Returns empty if {@link #supportsHashKey()} is false or value is not of a type expected for the column.
+     */
+    public Optional<Object> hashKey(Object value)
+    {
+        if (!supportsHashKey()) {
+            return Optional.empty();
+        }
+        if (isNull(value)) {
+            return Optional.of(NULL_KEY);
+        }
+        switch (type) {
+            case CHAR:
+            case VARCHAR:
+            case LONGVARCHAR:
+            case LONGNVARCHAR:
+                return value instanceof String ? Optional.of(value) : Optional.empty();
+            case BINARY:
+            case VARBINARY:
+            case LONGVARBINARY:
+                return value instanceof byte[] ? Optional.of(ByteBuffer.wrap((byte[]) value)) : Optional.empty();
+            case BIT:
+            case BOOLEAN:
+                return value instanceof Boolean ? Optional.of(value) : Optional.empty();
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+                return isIntegerOrNarrower(value) ? Optional.of(((Number) value).longValue()) : Optional.empty();
+            case BIGINT:
+                return isLongOrNarrower(value) ? Optional.of(((Number) value).longValue()) : Optional.empty();
+            case REAL:
+            case FLOAT:
+            case DOUBLE:
+                if (!isFloatingPointValue(value)) {
+                    return Optional.empty();
+                }
+                // +0.0 and -0.0 are equal for the comparator but not for Double.equals
+                return Optional.of(getDoubleValue(value) + 0.0);
+            case DECIMAL:
+            case NUMERIC:
+                return value instanceof BigDecimal ? Optional.of(((BigDecimal) value).stripTrailingZeros()) : Optional.empty();
+            case DATE:
+                return value.getClass() == Date.class ? Optional.of(((Date) value).getTime()) : Optional.empty();
+            case TIME:
+            case TIME_WITH_TIMEZONE:
+                return value.getClass() == Time.class ? Optional.of(((Time) value).getTime()) : Optional.empty();
+            case TIMESTAMP:
+            case TIMESTAMP_WITH_TIMEZONE:
+                return value.getClass() == Timestamp.class ? Optional.of(value) : Optional.empty();
+            default:
+                return Optional.empty();
+        }
+    }
+
     private int arrayEqual(Object actual, Object expected)
     {
         if (!(actual instanceof Array && expected instanceof List)) {
@@ -209,9 +287,8 @@ public class QueryResultValueComparator
 
         double expectedDouble = getDoubleValue(expected);
         double tolerance = 0;
-        Optional<Double> configTolerance = configuration.getDouble(FLOAT_TOLERANCE_CONFIGURATION_KEY);
-        if (configTolerance.isPresent()) {
-            tolerance = Math.abs(configTolerance.get() * expectedDouble);
+        if (floatTolerance != 0) {
+            tolerance = Math.abs(floatTolerance * expectedDouble);
         }
         return DoubleMath.fuzzyCompare(getDoubleValue(actual), expectedDouble, tolerance);
     }
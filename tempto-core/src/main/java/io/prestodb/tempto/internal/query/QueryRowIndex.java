@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.query;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Index of query result rows which allows to check if a row equal to the expected one exists
+ * without scanning all the rows.
+ * <p>
+ * Rows are bucketed by {@link QueryRowMatcher#rowKey(List)} and only rows from the matching bucket are compared.
+ * Rows for which the key can not be computed are compared one by one, and so are expected rows with
+ * {@code anyOf} values.
+ */
+public class QueryRowIndex
+{
+    private final QueryRowMatcher rowMatcher;
+    private final List<List<Object>> rows;
+    private final Map<List<Object>, List<List<Object>>> indexedRows = new HashMap<>();
+    private final List<List<Object>> unindexedRows = new ArrayList<>();
+
+    public QueryRowIndex(QueryRowMatcher rowMatcher, List<List<Object>> rows)
+    {
+        this.rowMatcher = requireNonNull(rowMatcher, "rowMatcher is null");
+        this.rows = requireNonNull(rows, "rows is null");
+        for (List<Object> row : rows) {
+            Optional<List<Object>> key = rowMatcher.rowKey(row);
+            if (key.isPresent()) {
+                indexedRows.computeIfAbsent(key.get(), ignored -> new ArrayList<>()).add(row);
+            }
+            else {
+                unindexedRows.add(row);
+            }
+        }
+    }
+
+    public boolean contains(List<Object> expectedRow)
+    {
+        Optional<List<Object>> key = rowMatcher.rowKey(expectedRow);
+        if (!key.isPresent()) {
+            return anyRowEqual(expectedRow, rows);
+        }
+        List<List<Object>> candidates = indexedRows.getOrDefault(key.get(), ImmutableList.of());
+        return anyRowEqual(expectedRow, candidates) || anyRowEqual(expectedRow, unindexedRows);
+    }
+
+    private boolean anyRowEqual(List<Object> expectedRow, List<List<Object>> candidates)
+    {
+        for (List<Object> row : candidates) {
+            if (rowMatcher.rowsEqual(expectedRow, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -58,7 +58,7 @@ public class QueryRowMapper
         return row(rowValues);
     }
 
-    private Object convertValue(String value, JDBCType expectedType)
+    public static Object convertValue(String value, JDBCType expectedType)
     {
         requireNonNull(value, "value is null");
 
@@ -106,12 +106,12 @@ public class QueryRowMapper
         }
     }
 
-    private byte[] convertBinary(String value)
+    private static byte[] convertBinary(String value)
     {
         return DatatypeConverter.parseHexBinary(value);
     }
 
-    private Boolean convertBoolean(String value)
+    private static Boolean convertBoolean(String value)
     {
         if (value.equalsIgnoreCase(Boolean.TRUE.toString())) {
             return true;
@@ -122,7 +122,7 @@ public class QueryRowMapper
         throw unsupportedConversionException(value, JDBCType.BOOLEAN);
     }
 
-    private Boolean convertBit(String value)
+    private static Boolean convertBit(String value)
     {
         if (value.equals("0")) {
             return false;
@@ -133,7 +133,7 @@ public class QueryRowMapper
         throw unsupportedConversionException(value, JDBCType.BIT);
     }
 
-    private IllegalArgumentException unsupportedConversionException(String value, JDBCType type)
+    private static IllegalArgumentException unsupportedConversionException(String value, JDBCType type)
     {
         throw new IllegalArgumentException("Unsupported JDBC type conversion, type: " + type + ", value: " + value);
     }
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.query;
+
+import io.prestodb.tempto.assertions.QueryAssert.AcceptableValues;
+import io.prestodb.tempto.configuration.Configuration;
+
+import java.sql.JDBCType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares expected rows with actual query result rows using {@link QueryResultValueComparator}
+ * for each column.
+ */
+public class QueryRowMatcher
+{
+    private final List<QueryResultValueComparator> columnComparators;
+
+    public QueryRowMatcher(List<JDBCType> columnTypes, Configuration configuration)
+    {
+        this.columnComparators = columnTypes.stream()
+                .map(type -> QueryResultValueComparator.comparatorForType(type, configuration))
+                .collect(toList());
+    }
+
+    public boolean rowsEqual(List<Object> expectedRow, List<Object> actualRow)
+    {
+        if (expectedRow.size() != actualRow.size()) {
+            return false;
+        }
+        for (int i = 0; i < expectedRow.size(); ++i) {
+            List<Object> acceptableValues = expectedRow.get(i) instanceof AcceptableValues ?
+                    ((AcceptableValues) expectedRow.get(i)).getValues()
+                    : singletonList(expectedRow.get(i));
+            Object actualValue = actualRow.get(i);
+
+            if (!isAnyValueEqual(i, acceptableValues, actualValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a key of values of columns which support {@link QueryResultValueComparator#hashKey(Object)}.
+     * Rows which are equal according to {@link #rowsEqual(List, List)} have equal keys, the opposite does not
+     * have to hold. Returns empty if key can not be computed for the row, e.g. for {@link AcceptableValues}.
+     */
+    public Optional<List<Object>> rowKey(List<Object> row)
+    {
+        if (row.size() != columnComparators.size()) {
+            return Optional.empty();
+        }
+        List<Object> key = new ArrayList<>(row.size());
+        for (int i = 0; i < row.size(); ++i) {
+            QueryResultValueComparator comparator = columnComparators.get(i);
+            if (!comparator.supportsHashKey()) {
+                continue;
+            }
+            Object value = row.get(i);
+            if (value instanceof AcceptableValues) {
+                return Optional.empty();
+            }
+            Optional<Object> valueKey = comparator.hashKey(value);
+            if (!valueKey.isPresent()) {
+                return Optional.empty();
+            }
+            key.add(valueKey.get());
+        }
+        return Optional.of(key);
+    }
+
+    private boolean isAnyValueEqual(int column, List<Object> expectedValues, Object actualValue)
+    {
+        for (Object expectedValue : expectedValues) {
+            if (columnComparators.get(column).compare(actualValue, expectedValue) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestodb.tempto.internal.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Thread safe counters of calls to some remote service: number of calls, failures and call latencies.
+ */
+public class CallStats
+{
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos, boolean failed)
+    {
+        calls.increment();
+        if (failed) {
+            failures.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCalls()
+    {
+        return calls.sum();
+    }
+
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+
+    public long getTotalMillis()
+    {
+        return NANOSECONDS.toMillis(totalNanos.sum());
+    }
+
+    public long getMaxMillis()
+    {
+        return NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    public double getAverageMillis()
+    {
+        long calls = getCalls();
+        return calls == 0 ? 0 : NANOSECONDS.toMicros(totalNanos.sum()) / 1000.0 / calls;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("calls: %d, failures: %d, avg: %.1fms, max: %dms, total: %dms",
+                getCalls(), getFailures(), getAverageMillis(), getMaxMillis(), getTotalMillis());
+    }
+}
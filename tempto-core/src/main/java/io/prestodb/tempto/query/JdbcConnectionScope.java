@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.query;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Makes {@link JdbcQueryExecutor}s use connections dedicated to the current thread until the scope is closed.
+ * Closing the scope closes these connections. Outside of a scope all threads share the single connection of
+ * an executor.
+ * <p>
+ * Scopes are used e.g. by table fulfillment workers, so that tables created concurrently do not share
+ * a connection and its transaction.
+ */
+public final class JdbcConnectionScope
+        implements AutoCloseable
+{
+    private static final Logger LOGGER = getLogger(JdbcConnectionScope.class);
+    private static final ThreadLocal<JdbcConnectionScope> CURRENT_SCOPE = new ThreadLocal<>();
+
+    private final Thread thread = Thread.currentThread();
+    private final Map<JdbcQueryExecutor, Connection> connections = new LinkedHashMap<>();
+
+    private JdbcConnectionScope() {}
+
+    public static JdbcConnectionScope open()
+    {
+        checkState(CURRENT_SCOPE.get() == null, "JDBC connection scope is already open in this thread");
+        JdbcConnectionScope scope = new JdbcConnectionScope();
+        CURRENT_SCOPE.set(scope);
+        return scope;
+    }
+
+    static Optional<JdbcConnectionScope> current()
+    {
+        return Optional.ofNullable(CURRENT_SCOPE.get());
+    }
+
+    Optional<Connection> getConnection(JdbcQueryExecutor queryExecutor)
+    {
+        return Optional.ofNullable(connections.get(queryExecutor));
+    }
+
+    void setConnection(JdbcQueryExecutor queryExecutor, Connection connection)
+    {
+        connections.put(queryExecutor, connection);
+    }
+
+    Optional<Connection> removeConnection(JdbcQueryExecutor queryExecutor)
+    {
+        return Optional.ofNullable(connections.remove(queryExecutor));
+    }
+
+    @Override
+    public void close()
+    {
+        checkState(Thread.currentThread() == thread, "JDBC connection scope must be closed by the thread which opened it");
+        CURRENT_SCOPE.remove();
+        for (Connection connection : connections.values()) {
+            try {
+                connection.close();
+            }
+            catch (SQLException e) {
+                LOGGER.debug("Exception happened during closing connection.", e);
+            }
+        }
+        connections.clear();
+    }
+}
@@ -13,33 +13,51 @@
  */
 package io.prestodb.tempto.query;
 
-import javax.sql.DataSource;
+import com.google.common.collect.ImmutableMap;
+import io.prestodb.tempto.internal.query.ConnectionPool;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static com.google.common.collect.Maps.newHashMap;
 import static io.prestodb.tempto.internal.query.JdbcUtils.dataSource;
 
+/**
+ * Keeps a {@link ConnectionPool} per {@link JdbcConnectivityParamsState}. Safe to use from concurrently running tests.
+ * <p>
+ * Connections of data sources which pool connections on their own ({@code jdbc_pooling: true}) are not kept idle
+ * by this class, but they are still accounted in pool statistics.
+ */
 public class JdbcConnectionsPool
 {
-    private final Map<JdbcConnectivityParamsState, DataSource> dataSources = newHashMap();
+    private final Map<JdbcConnectivityParamsState, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
 
     public Connection connectionFor(JdbcConnectivityParamsState jdbcParamsState)
             throws SQLException
     {
-        if (!dataSources.containsKey(jdbcParamsState)) {
-            dataSources.put(jdbcParamsState, dataSource(jdbcParamsState));
-        }
-
-        Connection connection = dataSources.get(jdbcParamsState).getConnection();
-        if (jdbcParamsState.prepareStatement.isPresent()) {
-            try (Statement statement = connection.createStatement()) {
-                statement.execute(jdbcParamsState.prepareStatement.get());
-            }
-        }
-        return connection;
+        return connectionPools.computeIfAbsent(jdbcParamsState, JdbcConnectionsPool::createConnectionPool).getConnection();
+    }
+
+    /**
+     * @return snapshot of connection pools created so far, e.g. to report their statistics
+     */
+    public Map<JdbcConnectivityParamsState, ConnectionPool> getConnectionPools()
+    {
+        return ImmutableMap.copyOf(connectionPools);
+    }
+
+    /**
+     * Closes idle connections. Connections which are in use are closed when they are returned.
+     */
+    public void closeIdleConnections()
+    {
+        connectionPools.values().forEach(ConnectionPool::close);
+    }
+
+    private static ConnectionPool createConnectionPool(JdbcConnectivityParamsState jdbcParamsState)
+    {
+        int maxIdleConnections = jdbcParamsState.pooling ? 0 : jdbcParamsState.maxIdleConnections;
+        return new ConnectionPool(dataSource(jdbcParamsState), jdbcParamsState.prepareStatement, maxIdleConnections);
     }
 }
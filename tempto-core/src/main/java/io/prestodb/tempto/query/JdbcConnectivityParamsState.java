@@ -17,6 +17,7 @@ import io.prestodb.tempto.context.State;
 
 import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.empty;
 import static org.apache.commons.lang3.builder.EqualsBuilder.reflectionEquals;
@@ -29,12 +30,15 @@ import static org.apache.commons.lang3.builder.ToStringBuilder.reflectionToStrin
 public class JdbcConnectivityParamsState
         implements State
 {
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+
     private final String name;
     public final String driverClass;
     public final String url;
     public final String user;
     public final String password;
     public final boolean pooling;
+    public final int maxIdleConnections;
     public final Optional<String> jar;
     public final Optional<String> prepareStatement;
     public final Optional<String> kerberosPrincipal;
@@ -47,6 +51,7 @@ public class JdbcConnectivityParamsState
             String user,
             String password,
             boolean pooling,
+            int maxIdleConnections,
             Optional<String> jar,
             Optional<String> prepareStatement,
             Optional<String> kerberosPrincipal,
@@ -58,6 +63,8 @@ public class JdbcConnectivityParamsState
         this.user = requireNonNull(user, "user is null");
         this.password = requireNonNull(password, "password is null");
         this.pooling = pooling;
+        checkArgument(maxIdleConnections >= 0, "maxIdleConnections is negative");
+        this.maxIdleConnections = maxIdleConnections;
         this.jar = requireNonNull(jar, "jar is null");
         this.prepareStatement = requireNonNull(prepareStatement, "prepareStatement is null");
         this.kerberosPrincipal = requireNonNull(kerberosPrincipal, "kerberosPrincipal is null");
@@ -101,6 +108,7 @@ public class JdbcConnectivityParamsState
         private String user = "";
         private String password = "";
         private boolean pooling = false;
+        private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
         private Optional<String> jar = empty();
         private Optional<String> prepareStatement = empty();
         private Optional<String> kerberosPrincipal = empty();
@@ -144,6 +152,13 @@ public class JdbcConnectivityParamsState
             return this;
         }
 
+        public Builder setMaxIdleConnections(int maxIdleConnections)
+        {
+            checkArgument(maxIdleConnections >= 0, "maxIdleConnections is negative");
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
         public Builder setJar(Optional<String> jar)
         {
             this.jar = jar;
@@ -177,6 +192,7 @@ public class JdbcConnectivityParamsState
                     user,
                     password,
                     pooling,
+                    maxIdleConnections,
                     jar,
                     prepareStatement,
                     kerberosPrincipal,
@@ -23,6 +23,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Optional;
 
 import static io.prestodb.tempto.query.QueryResult.forSingleIntegerValue;
 import static io.prestodb.tempto.query.QueryResult.toSqlIndex;
@@ -33,6 +34,7 @@ public class JdbcQueryExecutor
         implements QueryExecutor
 {
     private static final Logger LOGGER = getLogger(JdbcQueryExecutor.class);
+    private static final int STREAMING_FETCH_SIZE = 1000;
 
     private final String jdbcUrl;
     private final JdbcConnectivityParamsState jdbcParamsState;
@@ -51,18 +53,45 @@ public class JdbcQueryExecutor
         testContext.registerCloseCallback(context -> this.close());
     }
 
+    /**
+     * Opens a new connection, used by all threads unless they are in a {@link JdbcConnectionScope}.
+     * In a scope, the connection is used only by the current thread until the scope is closed.
+     */
     public void openConnection()
     {
         closeConnection();
+        Optional<JdbcConnectionScope> scope = JdbcConnectionScope.current();
+        if (scope.isPresent()) {
+            scope.get().setConnection(this, newConnection());
+        }
+        else {
+            connection = newConnection();
+        }
+    }
+
+    public void closeConnection()
+    {
+        Optional<JdbcConnectionScope> scope = JdbcConnectionScope.current();
+        if (scope.isPresent()) {
+            scope.get().removeConnection(this).ifPresent(JdbcQueryExecutor::closeConnection);
+        }
+        else {
+            closeConnection(connection);
+            connection = null;
+        }
+    }
+
+    private Connection newConnection()
+    {
         try {
-            connection = jdbcConnectionsPool.connectionFor(jdbcParamsState);
+            return jdbcConnectionsPool.connectionFor(jdbcParamsState);
         }
         catch (SQLException e) {
             throw Throwables.propagate(e);
         }
     }
 
-    public void closeConnection()
+    private static void closeConnection(Connection connection)
     {
         if (connection != null) {
             try {
@@ -71,7 +100,6 @@ public class JdbcQueryExecutor
             catch (SQLException e) {
                 LOGGER.debug("Exception happened during closing connection.", e);
             }
-            connection = null;
         }
     }
 
@@ -82,9 +110,61 @@ public class JdbcQueryExecutor
         return execute(sql, params);
     }
 
+    /**
+     * Rows are fetched from the database in chunks set as the statement fetch size.
+     * Whether the result is actually streamed depends on the driver, e.g. PostgreSQL driver ignores the fetch size
+     * in auto commit mode and MySQL driver requires {@code useCursorFetch=true} connection property, otherwise
+     * they read the whole result into memory.
+     */
+    @Override
+    public StreamingQueryResult executeQueryStreaming(String sql, QueryParam... params)
+            throws QueryExecutionException
+    {
+        sql = removeTrailingSemicolon(sql);
+
+        LOGGER.debug("executing on {} streaming query {} with params {}", jdbcUrl, sql, params);
+
+        Statement statement = null;
+        try {
+            boolean hasResultSet;
+            if (params.length == 0) {
+                statement = getConnection().createStatement();
+                statement.setFetchSize(STREAMING_FETCH_SIZE);
+                hasResultSet = statement.execute(sql);
+            }
+            else {
+                PreparedStatement preparedStatement = getConnection().prepareStatement(sql);
+                statement = preparedStatement;
+                statement.setFetchSize(STREAMING_FETCH_SIZE);
+                setQueryParams(preparedStatement, params);
+                hasResultSet = preparedStatement.execute();
+            }
+
+            if (hasResultSet) {
+                return StreamingQueryResult.forResultSet(statement, statement.getResultSet());
+            }
+            QueryResult updateCount = forSingleIntegerValue(statement.getUpdateCount());
+            statement.close();
+            return StreamingQueryResult.forQueryResult(updateCount);
+        }
+        catch (SQLException e) {
+            closeStatement(statement);
+            throw new QueryExecutionException(e);
+        }
+    }
+
     @Override
     public Connection getConnection()
     {
+        Optional<JdbcConnectionScope> scope = JdbcConnectionScope.current();
+        if (scope.isPresent()) {
+            Optional<Connection> scopedConnection = scope.get().getConnection(this);
+            if (scopedConnection.isPresent()) {
+                return scopedConnection.get();
+            }
+            openConnection();
+            return scope.get().getConnection(this).get();
+        }
         if (connection == null) {
             openConnection();
         }
@@ -94,10 +174,6 @@ public class JdbcQueryExecutor
     private QueryResult execute(String sql, QueryParam... params)
             throws QueryExecutionException
     {
-        if (connection == null) {
-            openConnection();
-        }
-
         sql = removeTrailingSemicolon(sql);
 
         LOGGER.debug("executing on {} query {} with params {}", jdbcUrl, sql, params);
@@ -144,6 +220,18 @@ public class JdbcQueryExecutor
         }
     }
 
+    private static void closeStatement(Statement statement)
+    {
+        if (statement != null) {
+            try {
+                statement.close();
+            }
+            catch (SQLException e) {
+                LOGGER.debug("Exception happened during closing statement.", e);
+            }
+        }
+    }
+
     private static void setQueryParams(PreparedStatement statement, QueryParam[] params)
             throws SQLException
     {
@@ -156,7 +244,8 @@ public class JdbcQueryExecutor
     @Override
     public void close()
     {
-        closeConnection();
+        closeConnection(connection);
+        connection = null;
     }
 
     private String removeTrailingSemicolon(String sql)
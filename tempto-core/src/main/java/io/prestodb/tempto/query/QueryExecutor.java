@@ -40,6 +40,22 @@ public interface QueryExecutor
     QueryResult executeQuery(String sql, QueryParam... params)
             throws QueryExecutionException;
 
+    /**
+     * Executes statement and returns its result without materializing it in memory.
+     * Returned result has to be closed by the caller.
+     * <p>
+     * Default implementation materializes the result of {@link #executeQuery(String, QueryParam...)}.
+     *
+     * @param sql SQL query to be executed
+     * @param params Parameters to be used while executing query
+     * @return Result of executed statement.
+     */
+    default StreamingQueryResult executeQueryStreaming(String sql, QueryParam... params)
+            throws QueryExecutionException
+    {
+        return StreamingQueryResult.forQueryResult(executeQuery(sql, params));
+    }
+
     Connection getConnection();
 
     void close();
@@ -18,45 +18,55 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import io.prestodb.tempto.internal.query.ColumnVector;
 
 import java.sql.JDBCType;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.sql.JDBCType.INTEGER;
 import static java.util.Optional.ofNullable;
-import static java.util.stream.Collectors.toList;
 
 /**
  * Result of a query.
  * <p>
  * It stores all returned values, column names and their types as {@link java.sql.JDBCType}.
+ * Values are stored by column, see {@link ColumnVector}; rows and columns are exposed as read-only views.
  */
 public class QueryResult
 {
     private final List<JDBCType> columnTypes;
     private final BiMap<String, Integer> columnNamesIndexes;
-    private final List<List<Object>> values;
+    private final List<ColumnVector> columns;
+    private final int rowsCount;
     private final Optional<ResultSet> jdbcResultSet;
 
     private QueryResult(List<JDBCType> columnTypes, BiMap<String, Integer> columnNamesIndexes, List<List<Object>> values, Optional<ResultSet> jdbcResultSet)
+    {
+        this(columnTypes, columnNamesIndexes, toColumns(columnTypes, values), values.size(), jdbcResultSet);
+    }
+
+    private QueryResult(List<JDBCType> columnTypes, BiMap<String, Integer> columnNamesIndexes, List<ColumnVector> columns, int rowsCount, Optional<ResultSet> jdbcResultSet)
     {
         this.columnTypes = columnTypes;
-        this.values = values;
+        this.columns = columns;
+        this.rowsCount = rowsCount;
         this.columnNamesIndexes = columnNamesIndexes;
         this.jdbcResultSet = jdbcResultSet;
     }
 
     public int getRowsCount()
     {
-        return values.size();
+        return rowsCount;
     }
 
     public int getColumnsCount()
@@ -81,43 +91,58 @@ public class QueryResult
 
     public List<Object> row(int rowIndex)
     {
-        return values.get(rowIndex);
+        checkElementIndex(rowIndex, rowsCount);
+        return new AbstractList<Object>()
+        {
+            @Override
+            public Object get(int columnIndex)
+            {
+                return columns.get(columnIndex).get(rowIndex);
+            }
+
+            @Override
+            public int size()
+            {
+                return columns.size();
+            }
+        };
     }
 
     public List<List<Object>> rows()
     {
-        return values;
+        return new AbstractList<List<Object>>()
+        {
+            @Override
+            public List<Object> get(int rowIndex)
+            {
+                return row(rowIndex);
+            }
+
+            @Override
+            public int size()
+            {
+                return rowsCount;
+            }
+        };
     }
 
     @SuppressWarnings("unchecked")
     public <T> List<T> column(int sqlColumnIndex)
     {
-        int internalColumnIndex = fromSqlIndex(sqlColumnIndex);
-        return (List) values.stream()
-                .map(row -> row.get(internalColumnIndex))
-                .collect(toList());
+        return (List) columns.get(fromSqlIndex(sqlColumnIndex)).asList();
     }
 
     public QueryResult project(int... sqlColumnIndexes)
     {
         List<JDBCType> projectedColumnTypes = newArrayList();
-        List<String> projectedColumnNames = newArrayList();
+        BiMap<String, Integer> projectedColumnNamesIndexes = HashBiMap.create();
+        List<ColumnVector> projectedColumns = newArrayList();
         for (int sqlColumnIndex : sqlColumnIndexes) {
             projectedColumnTypes.add(columnTypes.get(fromSqlIndex(sqlColumnIndex)));
-            projectedColumnNames.add(columnNamesIndexes.inverse().get(sqlColumnIndex));
-        }
-        QueryResultBuilder queryResultBuilder = new QueryResultBuilder(projectedColumnTypes, projectedColumnNames);
-        for (List<Object> valueList : values) {
-            List<Object> projectedValueList = Lists.newArrayList();
-            for (int sqlColumnIndex : sqlColumnIndexes) {
-                projectedValueList.add(valueList.get(fromSqlIndex(sqlColumnIndex)));
-            }
-            queryResultBuilder.addRow(projectedValueList);
-        }
-        if (jdbcResultSet.isPresent()) {
-            queryResultBuilder.setJdbcResultSet(jdbcResultSet.get());
+            projectedColumnNamesIndexes.put(columnNamesIndexes.inverse().get(sqlColumnIndex), projectedColumns.size() + 1);
+            projectedColumns.add(columns.get(fromSqlIndex(sqlColumnIndex)));
         }
-        return queryResultBuilder.build();
+        return new QueryResult(projectedColumnTypes, projectedColumnNamesIndexes, projectedColumns, rowsCount, jdbcResultSet);
     }
 
     public Optional<ResultSet> getJdbcResultSet()
@@ -125,6 +150,11 @@ public class QueryResult
         return jdbcResultSet;
     }
 
+    Map<String, Integer> getColumnNamesIndexes()
+    {
+        return columnNamesIndexes;
+    }
+
     /**
      * In SQL/JDBC column indexing starts form 1. This method returns SQL index for given Java index.
      *
@@ -179,11 +209,42 @@ public class QueryResult
                 .build();
     }
 
+    private static List<ColumnVector> toColumns(List<JDBCType> columnTypes, List<List<Object>> values)
+    {
+        List<ColumnVector> columns = createColumns(columnTypes);
+        for (List<Object> row : values) {
+            for (int i = 0; i < columns.size(); ++i) {
+                appendValue(columns, i, row.get(i));
+            }
+        }
+        return columns;
+    }
+
+    private static List<ColumnVector> createColumns(List<JDBCType> columnTypes)
+    {
+        List<ColumnVector> columns = newArrayList();
+        for (JDBCType columnType : columnTypes) {
+            columns.add(ColumnVector.forType(columnType));
+        }
+        return columns;
+    }
+
+    private static void appendValue(List<ColumnVector> columns, int columnIndex, Object value)
+    {
+        ColumnVector column = columns.get(columnIndex);
+        if (!column.append(value)) {
+            column = column.toObjectVector();
+            column.append(value);
+            columns.set(columnIndex, column);
+        }
+    }
+
     public static class QueryResultBuilder
     {
         private final List<JDBCType> columnTypes = newArrayList();
         private final BiMap<String, Integer> columnNamesIndexes = HashBiMap.create();
-        private final List<List<Object>> values = newArrayList();
+        private final List<ColumnVector> columns;
+        private int rowsCount;
         private Optional<ResultSet> jdbcResultSet = Optional.empty();
 
         QueryResultBuilder(ResultSetMetaData metaData)
@@ -193,6 +254,7 @@ public class QueryResult
                 columnTypes.add(JDBCType.valueOf(metaData.getColumnType(sqlColumnIndex)));
                 columnNamesIndexes.put(metaData.getColumnName(sqlColumnIndex), sqlColumnIndex);
             }
+            columns = createColumns(columnTypes);
         }
 
         public QueryResultBuilder(List<JDBCType> columnTypes, List<String> columnNames)
@@ -206,6 +268,7 @@ public class QueryResult
                 columnNamesIndexes.put(columnName, sqlColumnIndex);
                 sqlColumnIndex++;
             }
+            columns = createColumns(columnTypes);
         }
 
         public QueryResultBuilder addRow(Object... rowValues)
@@ -216,7 +279,10 @@ public class QueryResult
         public QueryResultBuilder addRow(List<Object> rowValues)
         {
             Preconditions.checkState(rowValues.size() == columnTypes.size(), "expected %s objects", columnTypes.size());
-            values.add(newArrayList(rowValues));
+            for (int i = 0; i < rowValues.size(); ++i) {
+                appendValue(columns, i, rowValues.get(i));
+            }
+            rowsCount++;
             return this;
         }
 
@@ -226,11 +292,10 @@ public class QueryResult
             int columnCount = columnTypes.size();
 
             while (rs.next()) {
-                List<Object> row = newArrayList();
                 for (int sqlColumnIndex = 1; sqlColumnIndex <= columnCount; ++sqlColumnIndex) {
-                    row.add(rs.getObject(sqlColumnIndex));
+                    appendValue(columns, fromSqlIndex(sqlColumnIndex), rs.getObject(sqlColumnIndex));
                 }
-                values.add(row);
+                rowsCount++;
             }
             return this;
         }
@@ -243,7 +308,7 @@ public class QueryResult
 
         public QueryResult build()
         {
-            return new QueryResult(columnTypes, columnNamesIndexes, values, jdbcResultSet);
+            return new QueryResult(columnTypes, columnNamesIndexes, columns, rowsCount, jdbcResultSet);
         }
     }
 }
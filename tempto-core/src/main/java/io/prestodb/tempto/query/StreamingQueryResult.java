@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.query;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
+import static io.prestodb.tempto.query.QueryResult.fromSqlIndex;
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.ofNullable;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Result of a query which is read row by row from the underlying JDBC {@link ResultSet}.
+ * <p>
+ * Rows are not retained, so the result can be iterated only once. It should be closed
+ * after use, which releases the JDBC statement.
+ */
+public class StreamingQueryResult
+        implements Iterable<List<Object>>, AutoCloseable
+{
+    private final List<JDBCType> columnTypes;
+    private final Map<String, Integer> columnNamesIndexes;
+    private final Iterator<List<Object>> rows;
+    private final AutoCloseable closeable;
+    private boolean iterated;
+
+    private StreamingQueryResult(List<JDBCType> columnTypes, Map<String, Integer> columnNamesIndexes, Iterator<List<Object>> rows, AutoCloseable closeable)
+    {
+        this.columnTypes = ImmutableList.copyOf(requireNonNull(columnTypes, "columnTypes is null"));
+        this.columnNamesIndexes = ImmutableMap.copyOf(requireNonNull(columnNamesIndexes, "columnNamesIndexes is null"));
+        this.rows = requireNonNull(rows, "rows is null");
+        this.closeable = requireNonNull(closeable, "closeable is null");
+    }
+
+    public int getColumnsCount()
+    {
+        return columnTypes.size();
+    }
+
+    public List<JDBCType> getColumnTypes()
+    {
+        return columnTypes;
+    }
+
+    public JDBCType getColumnType(int columnIndex)
+    {
+        return columnTypes.get(fromSqlIndex(columnIndex));
+    }
+
+    public Optional<Integer> tryFindColumnIndex(String columnName)
+    {
+        return ofNullable(columnNamesIndexes.get(columnName));
+    }
+
+    @Override
+    public Iterator<List<Object>> iterator()
+    {
+        checkState(!iterated, "streaming query result can be iterated only once");
+        iterated = true;
+        return rows;
+    }
+
+    @Override
+    public Spliterator<List<Object>> spliterator()
+    {
+        return spliteratorUnknownSize(iterator(), ORDERED | NONNULL);
+    }
+
+    /**
+     * @return rows of this result; closing the returned stream closes this result
+     */
+    public Stream<List<Object>> stream()
+    {
+        return StreamSupport.stream(spliterator(), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            closeable.close();
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Could not close query result", e);
+        }
+    }
+
+    /**
+     * Creates a result which reads rows from given {@link ResultSet}. Given statement is closed
+     * together with the result.
+     */
+    public static StreamingQueryResult forResultSet(Statement statement, ResultSet resultSet)
+            throws SQLException
+    {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        List<JDBCType> columnTypes = newArrayList();
+        Map<String, Integer> columnNamesIndexes = new HashMap<>();
+        for (int sqlColumnIndex = 1; sqlColumnIndex <= metaData.getColumnCount(); ++sqlColumnIndex) {
+            columnTypes.add(JDBCType.valueOf(metaData.getColumnType(sqlColumnIndex)));
+            columnNamesIndexes.put(metaData.getColumnName(sqlColumnIndex), sqlColumnIndex);
+        }
+        return new StreamingQueryResult(columnTypes, columnNamesIndexes, new ResultSetIterator(resultSet, columnTypes.size()), statement);
+    }
+
+    /**
+     * Wraps already materialized result, e.g. for query executors which do not support streaming.
+     */
+    public static StreamingQueryResult forQueryResult(QueryResult queryResult)
+    {
+        return new StreamingQueryResult(queryResult.getColumnTypes(), queryResult.getColumnNamesIndexes(), queryResult.rows().iterator(), () -> {});
+    }
+
+    private static class ResultSetIterator
+            extends AbstractIterator<List<Object>>
+    {
+        private final ResultSet resultSet;
+        private final int columnCount;
+
+        ResultSetIterator(ResultSet resultSet, int columnCount)
+        {
+            this.resultSet = resultSet;
+            this.columnCount = columnCount;
+        }
+
+        @Override
+        protected List<Object> computeNext()
+        {
+            try {
+                if (!resultSet.next()) {
+                    return endOfData();
+                }
+                List<Object> row = newArrayList();
+                for (int sqlColumnIndex = 1; sqlColumnIndex <= columnCount; ++sqlColumnIndex) {
+                    row.add(resultSet.getObject(sqlColumnIndex));
+                }
+                return row;
+            }
+            catch (SQLException e) {
+                throw new QueryExecutionException(e);
+            }
+        }
+    }
+}
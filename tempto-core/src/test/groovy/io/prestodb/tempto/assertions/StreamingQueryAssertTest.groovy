@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.assertions
+
+import io.prestodb.tempto.internal.convention.AnnotatedFileParser
+import io.prestodb.tempto.internal.convention.AnnotatedFileParser.SectionParsingResult
+import io.prestodb.tempto.internal.convention.SqlResultDescriptor
+import io.prestodb.tempto.query.QueryResult
+import io.prestodb.tempto.query.StreamingQueryResult
+import spock.lang.Specification
+
+import static com.google.common.collect.Iterables.getOnlyElement
+import static io.prestodb.tempto.assertions.QueryAssert.Row.row
+import static io.prestodb.tempto.assertions.QueryAssert.anyOf
+import static io.prestodb.tempto.assertions.QueryAssert.assertThat
+import static io.prestodb.tempto.internal.configuration.TestConfigurationFactory.TEST_CONFIGURATION_URIS_KEY
+import static java.sql.JDBCType.BIGINT
+import static java.sql.JDBCType.VARCHAR
+
+class StreamingQueryAssertTest
+        extends Specification
+{
+    def setupSpec()
+    {
+        System.setProperty(TEST_CONFIGURATION_URIS_KEY, "/configuration/global-configuration-tempto.yaml");
+    }
+
+    def 'hasRowsCount'()
+    {
+        when:
+        assertThat(nationJoinRegion()).hasRowsCount(2)
+
+        then:
+        noExceptionThrown()
+    }
+
+    def 'hasRowsCount fails'()
+    {
+        when:
+        assertThat(nationJoinRegion()).hasRowsCount(3)
+
+        then:
+        def e = thrown(AssertionError)
+        e.message == 'Expected row count to be <3>, but was <2>'
+    }
+
+    def 'containsExactly'()
+    {
+        when:
+        assertThat(nationJoinRegion())
+                .hasColumns(BIGINT, VARCHAR, VARCHAR)
+                .containsExactly(
+                row(1, "ALGERIA", anyOf("AFRICA", "ASIA")),
+                row(2, "ARGENTINA", "SOUTH AMERICA"))
+
+        then:
+        noExceptionThrown()
+    }
+
+    def 'containsExactly fails - different value'()
+    {
+        when:
+        assertThat(nationJoinRegion()).containsExactly(
+                row(1, "ALGERIA", "AFRICA"),
+                row(2, "ARGENTINA", "valid"))
+
+        then:
+        def e = thrown(AssertionError)
+        e.message == 'Not equal rows:\n' +
+                '1 - expected: 2|ARGENTINA|valid|\n' +
+                '1 - actual:   2|ARGENTINA|SOUTH AMERICA|'
+    }
+
+    def 'containsExactly fails - different number of rows'()
+    {
+        when:
+        assertThat(nationJoinRegion()).containsExactly(row(1, "ALGERIA", "AFRICA"))
+
+        then:
+        def e = thrown(AssertionError)
+        e.message == 'Expected row count to be <1>, but was <2>'
+    }
+
+    def 'containsOnly fails - missing row'()
+    {
+        when:
+        assertThat(nationJoinRegion()).containsOnly(
+                row(2, "ARGENTINA", "SOUTH AMERICA"),
+                row(3, "AUSTRIA", "EUROPE"))
+
+        then:
+        def e = thrown(AssertionError)
+        e.message == 'Could not find rows:\n[3, AUSTRIA, EUROPE]'
+    }
+
+    def 'matches file - ordered'()
+    {
+        def parsingResult = parseResultFor('''\
+-- delimiter: |; ignoreOrder: false; types: BIGINT|VARCHAR|VARCHAR
+1|ALGERIA|AFRICA|
+2|ARGENTINA|SOUTH AMERICA|
+''')
+
+        when:
+        assertThat(nationJoinRegion()).matches(new SqlResultDescriptor(parsingResult))
+
+        then:
+        noExceptionThrown()
+    }
+
+    def 'matches file - ignore order'()
+    {
+        def parsingResult = parseResultFor('''\
+-- delimiter: |; ignoreOrder: true
+2|ARGENTINA|SOUTH AMERICA|
+1|ALGERIA|AFRICA|
+''')
+
+        when:
+        assertThat(nationJoinRegion()).matches(new SqlResultDescriptor(parsingResult))
+
+        then:
+        noExceptionThrown()
+    }
+
+    def 'rows can be read only once'()
+    {
+        setup:
+        def result = nationJoinRegion()
+        result.iterator()
+
+        when:
+        result.iterator()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private static StreamingQueryResult nationJoinRegion()
+    {
+        def queryResult = new QueryResult.QueryResultBuilder([BIGINT, VARCHAR, VARCHAR], ['n.nationkey', 'n.name', 'r.name'])
+                .addRow(1, "ALGERIA", "AFRICA")
+                .addRow(2, "ARGENTINA", "SOUTH AMERICA")
+                .build()
+        return StreamingQueryResult.forQueryResult(queryResult)
+    }
+
+    private SectionParsingResult parseResultFor(String fileContent)
+    {
+        getOnlyElement(new AnnotatedFileParser().parseFile(new ByteArrayInputStream(fileContent.getBytes())));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.prestodb.tempto.fulfillment.table
+
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class ParallelPartsIteratorTest
+        extends Specification
+{
+    def 'reads elements of all parts'()
+    {
+        when:
+        def elements = new ParallelPartsIterator<Integer>('test', 3, { part -> (0..<2500).collect { part * 10_000 + it }.iterator() }).toList()
+
+        then:
+        elements.size() == 7500
+        elements.toSet() == ((1..3).collectMany { part -> (0..<2500).collect { part * 10_000 + it } }).toSet()
+    }
+
+    def 'keeps order of elements within a part'()
+    {
+        when:
+        def elements = new ParallelPartsIterator<List<Integer>>('test', 2, { part -> (0..<3000).collect { [part, it] }.iterator() }).toList()
+
+        then:
+        elements.findAll { it[0] == 1 }.collect { it[1] } == (0..<3000).toList()
+        elements.findAll { it[0] == 2 }.collect { it[1] } == (0..<3000).toList()
+    }
+
+    def 'propagates failure of a part'()
+    {
+        when:
+        new ParallelPartsIterator<Integer>('failing', 2, { part ->
+            if (part == 2) {
+                throw new IllegalStateException('generation failed')
+            }
+            [1, 2, 3].iterator()
+        }).toList()
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == 'Could not produce data for failing'
+        e.cause instanceof IllegalStateException
+    }
+
+    def 'close stops producers'()
+    {
+        setup:
+        def produced = new AtomicInteger()
+        def iterator = new ParallelPartsIterator<Integer>('endless', 2, { part -> endless(produced) })
+        iterator.next()
+
+        when:
+        iterator.close()
+        Thread.sleep(500)
+        int producedAfterClose = produced.get()
+        Thread.sleep(500)
+
+        then:
+        produced.get() == producedAfterClose
+        !iterator.hasNext()
+    }
+
+    def 'close of partially read iterator releases producer threads'()
+    {
+        setup:
+        def threads = Collections.synchronizedSet(new HashSet<Thread>())
+        def partIterator = { part ->
+            threads.add(Thread.currentThread())
+            endless(new AtomicInteger())
+        }
+
+        when:
+        (0..<5).each {
+            def iterator = new ParallelPartsIterator<Integer>('reused', 2, partIterator)
+            iterator.next()
+            iterator.close()
+            Thread.sleep(200)
+        }
+
+        then:
+        threads.size() <= 4
+    }
+
+    def 'closeIterator closes closeable iterators only'()
+    {
+        setup:
+        def iterator = new ParallelPartsIterator<Integer>('test', 1, { part -> [1, 2, 3].iterator() })
+
+        when:
+        ParallelPartsIterator.closeIterator([1].iterator())
+        ParallelPartsIterator.closeIterator(iterator)
+
+        then:
+        !iterator.hasNext()
+    }
+
+    private static Iterator<Integer> endless(AtomicInteger produced)
+    {
+        return [hasNext: { true }, next: { produced.incrementAndGet() }] as Iterator<Integer>
+    }
+}
@@ -16,8 +16,14 @@ package io.prestodb.tempto.fulfillment.table.hive.tpcds;
 
 import io.prestodb.tempto.fulfillment.table.hive.statistics.ColumnStatistics;
 import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatistics;
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -39,4 +45,29 @@ public class TpcdsDataSourceTest
         assertEquals(nameStatistics.getMin().get(), "Mid Atlantic");
         assertEquals(nameStatistics.getMax().get(), "North Midwest");
     }
+
+    @Test
+    public void testPartitionedData()
+            throws IOException
+    {
+        TpcdsDataSource singlePartDataSource = new TpcdsDataSource(TpcdsTable.ITEM, 1);
+        TpcdsDataSource multiPartDataSource = new TpcdsDataSource(TpcdsTable.ITEM, 1, 4);
+
+        assertEquals(multiPartDataSource.data().size(), 4);
+        assertEquals(readAll(multiPartDataSource), readAll(singlePartDataSource));
+        assertEquals(singlePartDataSource.getPathSuffix(), "tpcds/sf-1/ITEM");
+        assertEquals(multiPartDataSource.getPathSuffix(), "tpcds/sf-1/ITEM-parts-4");
+    }
+
+    private static String readAll(TpcdsDataSource dataSource)
+            throws IOException
+    {
+        StringBuilder data = new StringBuilder();
+        for (RepeatableContentProducer producer : dataSource.data()) {
+            try (InputStream inputStream = producer.getInputStream()) {
+                data.append(new String(toByteArray(inputStream), UTF_8));
+            }
+        }
+        return data.toString();
+    }
 }
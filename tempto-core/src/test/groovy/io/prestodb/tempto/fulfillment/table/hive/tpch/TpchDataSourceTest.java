@@ -38,4 +38,11 @@ public class TpchDataSourceTest
         assertEquals(nationkeyStatistics.getMin().get(), 0);
         assertEquals(nationkeyStatistics.getMax().get(), 24);
     }
+
+    @Test
+    public void testPathSuffix()
+    {
+        assertEquals(new TpchDataSource(TpchTable.NATION, 1).getPathSuffix(), "tpch/sf-1_00/NATION");
+        assertEquals(new TpchDataSource(TpchTable.NATION, 0.5, 3).getPathSuffix(), "tpch/sf-0_50/NATION-parts-3");
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.jdbc.tpch
+
+import io.airlift.tpch.TpchColumn
+import io.airlift.tpch.TpchColumnType
+import io.airlift.tpch.TpchEntity
+import io.prestodb.tempto.internal.query.QueryRowMapper
+import spock.lang.Specification
+
+import java.sql.JDBCType
+
+import static io.airlift.tpch.TpchColumnType.DATE
+import static io.airlift.tpch.TpchColumnType.DOUBLE
+import static io.airlift.tpch.TpchColumnType.IDENTIFIER
+import static io.airlift.tpch.TpchColumnType.INTEGER
+import static io.airlift.tpch.TpchColumnType.VARCHAR
+
+class TpchRowExtractorTest
+        extends Specification
+{
+    def 'typed values match values parsed from text'()
+    {
+        setup:
+        def columns = [
+                new TestColumn(IDENTIFIER, 7L, '7'),
+                new TestColumn(IDENTIFIER, 8L, '8'),
+                new TestColumn(INTEGER, 15, '15'),
+                new TestColumn(DOUBLE, 1234.56d, '1234.56'),
+                new TestColumn(DOUBLE, 0.05d, '0.05'),
+                new TestColumn(DOUBLE, 1.5d, '1.50'),
+                new TestColumn(DOUBLE, -20d, '-20.00'),
+                new TestColumn(DATE, 9568, '1996-03-13'),
+                new TestColumn(VARCHAR, 'ALGERIA', 'ALGERIA')]
+        def types = [JDBCType.BIGINT, JDBCType.INTEGER, JDBCType.INTEGER, JDBCType.DOUBLE, JDBCType.DECIMAL, JDBCType.DECIMAL, JDBCType.VARCHAR, JDBCType.DATE, JDBCType.VARCHAR]
+        def entity = Mock(TpchEntity)
+
+        when:
+        def row = new TpchRowExtractor<>(columns, types).extract(entity)
+        def parsedRow = new QueryRowMapper(types).mapToRow(columns*.text).values
+
+        then:
+        row == parsedRow
+        row.collect { it.getClass() } == parsedRow.collect { it.getClass() }
+        row*.toString() == parsedRow*.toString()
+    }
+
+    def 'column types count must match columns count'()
+    {
+        when:
+        new TpchRowExtractor<>([new TestColumn(INTEGER, 1, '1')], [])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static class TestColumn
+            implements TpchColumn<TpchEntity>
+    {
+        private final TpchColumnType type
+        private final Object value
+        private final String text
+
+        TestColumn(TpchColumnType type, Object value, String text)
+        {
+            this.type = type
+            this.value = value
+            this.text = text
+        }
+
+        @Override
+        String getColumnName()
+        {
+            return 'column'
+        }
+
+        @Override
+        TpchColumnType getType()
+        {
+            return type
+        }
+
+        @Override
+        double getDouble(TpchEntity entity)
+        {
+            return (double) value
+        }
+
+        @Override
+        long getIdentifier(TpchEntity entity)
+        {
+            return (long) value
+        }
+
+        @Override
+        int getInteger(TpchEntity entity)
+        {
+            return (int) value
+        }
+
+        @Override
+        String getString(TpchEntity entity)
+        {
+            return (String) value
+        }
+
+        @Override
+        int getDate(TpchEntity entity)
+        {
+            return (int) value
+        }
+    }
+}
@@ -16,6 +16,7 @@ package io.prestodb.tempto.internal.fulfillment.hive
 
 import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource
 import io.prestodb.tempto.fulfillment.table.hive.HiveTableDefinition
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer
 import io.prestodb.tempto.internal.fulfillment.table.TableNameGenerator
 import io.prestodb.tempto.internal.fulfillment.table.hive.HiveTableManager
 import io.prestodb.tempto.internal.fulfillment.table.hive.HiveThriftClient
@@ -24,6 +25,7 @@ import io.prestodb.tempto.query.QueryExecutor
 import spock.lang.Specification
 
 import java.sql.Connection
+import java.util.concurrent.atomic.AtomicInteger
 
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.CREATED
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.LOADED
@@ -68,6 +70,54 @@ class HiveTableManagerTest
         1 * queryExecutor.executeQuery(expandDDLTemplate(NATION_DDL_TEMPLATE, expectedTableNameInDatabase, expectedTableLocation))
     }
 
+    def 'should create hive immutable table partitioned'()
+    {
+        setup:
+        def tableDefinition = HiveTableDefinition.builder("nation")
+                .setCreateTableDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE)
+                .addPartition("pc=0", mockDataSource("nation/pc_0", Optional.of('r1'), 'content'))
+                .addPartition("pc=1", mockDataSource("nation/pc_1", Optional.of('r1'), 'other'))
+                .addPartition("pc=2", mockDataSource("nation/pc_0", Optional.of('r1'), 'content'))
+                .build()
+        def uploadedPaths = [:].asSynchronized()
+
+        when:
+        def tableInstance = tableManager.createImmutable(tableDefinition)
+
+        then:
+        tableInstance.nameInDatabase == 'nation'
+        2 * dataSourceWriter.ensureDataOnHdfs(_, _) >> { String path, HiveDataSource dataSource ->
+            uploadedPaths.put(dataSource.data()[0].inputStream.text, path)
+        }
+        1 * queryExecutor.executeQuery(expandDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE, 'nation', '/tests-path/partitioned_tables/nation'))
+        1 * queryExecutor.executeQuery("ALTER TABLE nation SET TBLPROPERTIES('EXTERNAL'='TRUE')")
+        1 * queryExecutor.executeQuery({ String ddl ->
+            ddl == "ALTER TABLE nation ADD " +
+                    "PARTITION (pc=0) LOCATION '${uploadedPaths.content}' " +
+                    "PARTITION (pc=1) LOCATION '${uploadedPaths.other}' " +
+                    "PARTITION (pc=2) LOCATION '${uploadedPaths.content}'"
+        })
+        uploadedPaths.values().every { it ==~ '/tests-path/shared/[0-9a-f]{64}' }
+    }
+
+    def 'should store partitions with different data sharing path suffix separately'()
+    {
+        setup:
+        def tableDefinition = HiveTableDefinition.builder("nation")
+                .setCreateTableDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE)
+                .addPartition("pc=0", mockDataSource("inline-tables/nation", Optional.of('r1'), 'content'))
+                .addPartition("pc=1", mockDataSource("inline-tables/nation", Optional.of('r2'), 'other'))
+                .build()
+        def uploadedPaths = [].asSynchronized()
+
+        when:
+        tableManager.createImmutable(tableDefinition)
+
+        then:
+        2 * dataSourceWriter.ensureDataOnHdfs(_, _) >> { String path, HiveDataSource dataSource -> uploadedPaths.add(path) }
+        uploadedPaths.toSet().size() == 2
+    }
+
     def 'should create hive mutable table loaded not partitioned'()
     {
         setup:
@@ -122,8 +172,7 @@ class HiveTableManagerTest
         1 * dataSourceWriter.ensureDataOnHdfs(expectedPartition0Location, _)
         1 * dataSourceWriter.ensureDataOnHdfs(expectedPartition1Location, _)
         1 * queryExecutor.executeQuery(expandDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE, expectedTableNameInDatabase))
-        1 * queryExecutor.executeQuery("ALTER TABLE ${expectedTableNameInDatabase} ADD PARTITION (pc=0) LOCATION '$expectedPartition0Location'")
-        1 * queryExecutor.executeQuery("ALTER TABLE ${expectedTableNameInDatabase} ADD PARTITION (pc=1) LOCATION '$expectedPartition1Location'")
+        1 * queryExecutor.executeQuery("ALTER TABLE ${expectedTableNameInDatabase} ADD PARTITION (pc=0) LOCATION '$expectedPartition0Location' PARTITION (pc=1) LOCATION '$expectedPartition1Location'")
     }
 
     def 'should create hive mutable table created partitioned'()
@@ -143,8 +192,134 @@ class HiveTableManagerTest
         tableInstance.nameInDatabase == expectedTableNameInDatabase
         tableInstance.name == expectedTableName
         1 * queryExecutor.executeQuery(expandDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE, expectedTableNameInDatabase))
-        1 * queryExecutor.executeQuery("ALTER TABLE ${expectedTableNameInDatabase} ADD PARTITION (pc=0) LOCATION '$expectedPartition0Location'")
-        1 * queryExecutor.executeQuery("ALTER TABLE ${expectedTableNameInDatabase} ADD PARTITION (pc=1) LOCATION '$expectedPartition1Location'")
+        1 * queryExecutor.executeQuery("ALTER TABLE ${expectedTableNameInDatabase} ADD PARTITION (pc=0) LOCATION '$expectedPartition0Location' PARTITION (pc=1) LOCATION '$expectedPartition1Location'")
+    }
+
+    def 'should add partitions in batches'()
+    {
+        setup:
+        def builder = HiveTableDefinition.builder("nation")
+                .setCreateTableDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE)
+        (0..<150).each { builder.addPartition("pc=$it", mockDataSource("not/important")) }
+        def uploadedPaths = Collections.synchronizedSet(new HashSet<String>())
+
+        when:
+        tableManager.createMutable(builder.build(), LOADED)
+
+        then:
+        150 * dataSourceWriter.ensureDataOnHdfs(_, _) >> { String path, HiveDataSource dataSource -> uploadedPaths.add(path) }
+        1 * queryExecutor.executeQuery(expandDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE, 'nation_randomSuffix'))
+        1 * queryExecutor.executeQuery({ String ddl -> ddl.startsWith("ALTER TABLE nation_randomSuffix ADD PARTITION (pc=0) ") && ddl.count(' PARTITION (') == 100 })
+        1 * queryExecutor.executeQuery({ String ddl -> ddl.startsWith("ALTER TABLE nation_randomSuffix ADD PARTITION (pc=100) ") && ddl.count(' PARTITION (') == 50 })
+        uploadedPaths == (0..<150).collect { "${MUTABLE_TABLES_PATH}nation_randomSuffix/partition_$it".toString() }.toSet()
+    }
+
+    def 'should share identical data of hive mutable table partitioned'()
+    {
+        setup:
+        def tableDefinition = HiveTableDefinition.builder("nation")
+                .setCreateTableDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE)
+                .addPartition("pc=0", mockDataSource("nation/pc_0", Optional.of('r1'), 'content'))
+                .addPartition("pc=1", mockDataSource("nation/pc_0", Optional.of('r1'), 'content'))
+                .addPartition("pc=2", mockDataSource("nation/pc_0", Optional.of('r2'), 'other'))
+                .shareMutableData(true)
+                .build()
+        def uploadedPaths = [:].asSynchronized()
+
+        when:
+        tableManager.createMutable(tableDefinition, LOADED)
+
+        then:
+        2 * dataSourceWriter.ensureDataOnHdfs(_, _) >> { String path, HiveDataSource dataSource ->
+            assert dataSource.revisionMarker().get() == path - '/tests-path/shared/'
+            uploadedPaths.put(dataSource.data()[0].inputStream.text, path)
+        }
+        1 * queryExecutor.executeQuery(expandDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE, 'nation_randomSuffix'))
+        1 * queryExecutor.executeQuery("ALTER TABLE nation_randomSuffix SET TBLPROPERTIES('EXTERNAL'='TRUE')")
+        1 * queryExecutor.executeQuery({ String ddl ->
+            ddl == "ALTER TABLE nation_randomSuffix ADD " +
+                    "PARTITION (pc=0) LOCATION '${uploadedPaths.content}' " +
+                    "PARTITION (pc=1) LOCATION '${uploadedPaths.content}' " +
+                    "PARTITION (pc=2) LOCATION '${uploadedPaths.other}'"
+        })
+        uploadedPaths.values().every { it ==~ '/tests-path/shared/[0-9a-f]{64}' }
+        uploadedPaths.content != uploadedPaths.other
+    }
+
+    def 'should share identical data of hive mutable table not partitioned'()
+    {
+        setup:
+        def firstDataSource = mockDataSource('nation', Optional.empty(), 'content')
+        def secondDataSource = mockDataSource('region', Optional.of('r1'), 'content')
+        def uploadedPaths = []
+
+        when:
+        [firstDataSource, secondDataSource].each {
+            tableManager.createMutable(HiveTableDefinition.builder("nation")
+                    .setDataSource(it)
+                    .setCreateTableDDLTemplate(NATION_DDL_TEMPLATE)
+                    .shareMutableData(true)
+                    .build(), LOADED)
+        }
+
+        then:
+        2 * dataSourceWriter.ensureDataOnHdfs(_, _) >> { String path, HiveDataSource dataSource -> uploadedPaths.add(path) }
+        2 * queryExecutor.executeQuery({ String ddl -> ddl == expandDDLTemplate(NATION_DDL_TEMPLATE, 'nation_randomSuffix', uploadedPaths[0]) })
+        2 * queryExecutor.executeQuery("ALTER TABLE nation_randomSuffix SET TBLPROPERTIES('EXTERNAL'='TRUE')")
+        uploadedPaths[0] ==~ '/tests-path/shared/[0-9a-f]{64}'
+        uploadedPaths[0] == uploadedPaths[1]
+    }
+
+    def 'should not upload shared data to the same location concurrently'()
+    {
+        setup:
+        def uploading = new AtomicInteger()
+        def maxUploading = new AtomicInteger()
+        HdfsDataSourceWriter writer = [
+                ensureDataOnHdfs: { String path, HiveDataSource dataSource ->
+                    maxUploading.accumulateAndGet(uploading.incrementAndGet(), Math.&max)
+                    Thread.sleep(10)
+                    uploading.decrementAndGet()
+                }
+        ] as HdfsDataSourceWriter
+        tableManager = new HiveTableManager(queryExecutor, writer, tableNameGenerator, hiveThriftClient, ROOT_PATH, "database", "/user/hive/warehouse/", false, false, 4, false)
+        def tableDefinition = HiveTableDefinition.builder("nation")
+                .setCreateTableDDLTemplate(PARTITIONED_NATION_DDL_TEMPLATE)
+        (0..<8).each { tableDefinition.addPartition("pc=$it", mockDataSource("nation/pc_$it", Optional.empty(), 'content')) }
+
+        when:
+        tableManager.createMutable(tableDefinition.shareMutableData(true).build(), LOADED)
+
+        then:
+        maxUploading.get() == 1
+    }
+
+    def 'should inject statistics collected during upload'()
+    {
+        setup:
+        tableManager = new HiveTableManager(queryExecutor, dataSourceWriter, tableNameGenerator, hiveThriftClient, ROOT_PATH, "database", "/user/hive/warehouse/", true, false)
+        def tableDefinition = HiveTableDefinition.builder("region")
+                .setDataSource(mockDataSource('region', Optional.of('r1'), '0|AFRICA\n1|AMERICA\n2|\\N\n'))
+                .setCreateTableDDLTemplate('CREATE TABLE %NAME%(r_regionkey BIGINT, r_name VARCHAR(25)) ROW FORMAT DELIMITED FIELDS TERMINATED BY \'|\'')
+                .build()
+        String storedStatistics
+
+        when:
+        tableManager.createImmutable(tableDefinition)
+
+        then:
+        1 * dataSourceWriter.ensureDataOnHdfs('/tests-path/region', _) >> { String path, HiveDataSource dataSource -> dataSource.data().each { it.inputStream.bytes } }
+        1 * dataSourceWriter.setMetadata('/tests-path/region', 'statistics', _) >> { String path, String name, String value -> storedStatistics = value }
+        1 * hiveThriftClient.setStatistics({ it.nameInDatabase == 'region' }, { it.rowCount == 3 && it.columns.r_name.nullsCount == 1 && it.columns.r_regionkey.max.get() == 2L })
+
+        when:
+        new HiveTableManager(queryExecutor, dataSourceWriter, tableNameGenerator, hiveThriftClient, ROOT_PATH, "database", "/user/hive/warehouse/", true, false)
+                .createImmutable(tableDefinition)
+
+        then: 'statistics are read from HDFS when upload of unchanged data is skipped'
+        1 * dataSourceWriter.ensureDataOnHdfs('/tests-path/region', _)
+        1 * dataSourceWriter.getMetadata('/tests-path/region', 'statistics') >> Optional.of(storedStatistics)
+        1 * hiveThriftClient.setStatistics({ it.nameInDatabase == 'region' }, { it.rowCount == 3 })
     }
 
     private String expandDDLTemplate(String template, String tableName, String location = null)
@@ -188,10 +363,13 @@ class HiveTableManagerTest
                 .build()
     }
 
-    private HiveDataSource mockDataSource(String pathSuffix)
+    private HiveDataSource mockDataSource(String pathSuffix, Optional<String> revisionMarker = Optional.empty(), String content = '')
     {
         def dataSource = Mock(HiveDataSource)
         dataSource.getPathSuffix() >> pathSuffix
+        dataSource.revisionMarker() >> revisionMarker
+        dataSource.getStatistics() >> Optional.empty()
+        dataSource.data() >> [{ new ByteArrayInputStream(content.bytes) } as RepeatableContentProducer]
         return dataSource
     }
 }
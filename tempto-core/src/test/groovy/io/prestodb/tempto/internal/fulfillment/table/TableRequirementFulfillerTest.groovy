@@ -14,6 +14,7 @@
 
 package io.prestodb.tempto.internal.fulfillment.table
 
+import io.prestodb.tempto.configuration.Configuration
 import io.prestodb.tempto.fulfillment.TestStatus
 import io.prestodb.tempto.fulfillment.table.ImmutableTableRequirement
 import io.prestodb.tempto.fulfillment.table.ImmutableTablesState
@@ -26,10 +27,14 @@ import io.prestodb.tempto.fulfillment.table.TableManager
 import io.prestodb.tempto.fulfillment.table.TableManagerDispatcher
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+
 import static com.google.common.collect.Iterables.getOnlyElement
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.CREATED
 import static io.prestodb.tempto.fulfillment.table.MutableTableRequirement.State.LOADED
 import static io.prestodb.tempto.fulfillment.table.TableHandle.tableHandle
+import static io.prestodb.tempto.internal.fulfillment.table.TableRequirementFulfiller.TABLE_FULFILLMENT_PARALLELISM_KEY
+import static java.util.concurrent.TimeUnit.SECONDS
 import static junit.framework.TestCase.fail
 
 class TableRequirementFulfillerTest
@@ -227,6 +232,53 @@ class TableRequirementFulfillerTest
         0 * _
     }
 
+    def "test immutable tables fulfilled in parallel"()
+    {
+        setup:
+        def tableNames = ['nation', 'region', 'part', 'supplier']
+        def requirements = tableNames.collect { new ImmutableTableRequirement(getTableDefinition(it)) }
+        // spock mocks handle invocations sequentially, so a latch based manager is used to verify concurrency
+        def latchTableManager = new LatchTableManager(tableNames.size())
+        def dispatcher = new DefaultTableManagerDispatcher([(DATABASE_NAME): latchTableManager])
+
+        ImmutableTablesFulfiller fulfiller = new ImmutableTablesFulfiller(dispatcher, parallelism(4))
+
+        when:
+        def state = (ImmutableTablesState) getOnlyElement(fulfiller.fulfill(requirements as Set))
+
+        then:
+        tableNames.each { assert state.get(it).name == it }
+    }
+
+    def "test failures of tables fulfilled in parallel are aggregated"()
+    {
+        setup:
+        def requirements = ['nation', 'region', 'part'].collect { new ImmutableTableRequirement(getTableDefinition(it)) }
+        tableManager.createImmutable(_) >> { TableDefinition tableDefinition ->
+            if (tableDefinition.name != 'nation') {
+                throw new RuntimeException("failed to create ${tableDefinition.name}")
+            }
+            new TableInstance(new TableName(DATABASE_NAME, Optional.empty(), 'nation', 'nation'), tableDefinition)
+        }
+
+        ImmutableTablesFulfiller fulfiller = new ImmutableTablesFulfiller(tableManagerDispatcher, parallelism(2))
+
+        when:
+        fulfiller.fulfill(requirements as Set)
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == 'Could not fulfill table requirements'
+        ([e.cause] + e.suppressed.toList())*.message.sort() == ['failed to create part', 'failed to create region']
+    }
+
+    private Configuration parallelism(int parallelism)
+    {
+        Configuration configuration = Mock(Configuration)
+        configuration.getInt(TABLE_FULFILLMENT_PARALLELISM_KEY) >> Optional.of(parallelism)
+        return configuration
+    }
+
     def getTableDefinition(String tableName)
     {
         return new TestTableDefinition(tableHandle(tableName))
@@ -254,4 +306,53 @@ class TableRequirementFulfillerTest
             super(handle)
         }
     }
+
+    static class LatchTableManager
+            implements TableManager<TestTableDefinition>
+    {
+        private final CountDownLatch allTablesBeingCreated
+
+        LatchTableManager(int tablesCount)
+        {
+            allTablesBeingCreated = new CountDownLatch(tablesCount)
+        }
+
+        @Override
+        TableInstance<TestTableDefinition> createImmutable(TestTableDefinition tableDefinition, TableHandle tableHandle)
+        {
+            allTablesBeingCreated.countDown()
+            if (!allTablesBeingCreated.await(10, SECONDS)) {
+                throw new IllegalStateException("tables are not created concurrently")
+            }
+            return new TableInstance(new TableName(DATABASE_NAME, Optional.empty(), tableHandle.name, tableHandle.name), tableDefinition)
+        }
+
+        @Override
+        TableInstance<TestTableDefinition> createMutable(TestTableDefinition tableDefinition, MutableTableRequirement.State state, TableHandle tableHandle)
+        {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        void dropTable(TableName tableName)
+        {
+        }
+
+        @Override
+        void dropStaleMutableTables()
+        {
+        }
+
+        @Override
+        String getDatabaseName()
+        {
+            return DATABASE_NAME
+        }
+
+        @Override
+        Class<? extends TableDefinition> getTableDefinitionClass()
+        {
+            return TestTableDefinition
+        }
+    }
 }
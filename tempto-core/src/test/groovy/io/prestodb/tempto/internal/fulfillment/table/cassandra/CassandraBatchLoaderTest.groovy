@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.cassandra
+
+import com.datastax.oss.driver.api.core.CqlSession
+import com.datastax.oss.driver.api.core.DriverTimeoutException
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet
+import com.datastax.oss.driver.api.core.cql.BatchStatement
+import com.datastax.oss.driver.api.core.cql.BoundStatement
+import com.datastax.oss.driver.api.core.cql.PreparedStatement
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+class CassandraBatchLoaderTest
+        extends Specification
+{
+    def rowsByStatement = [:]
+    def preparedStatement = Mock(PreparedStatement)
+
+    def setup()
+    {
+        preparedStatement.getPartitionKeyIndices() >> [0]
+        preparedStatement.bind(*_) >> { args ->
+            def boundStatement = Mock(BoundStatement)
+            rowsByStatement[boundStatement] = args[0] as List
+            boundStatement
+        }
+    }
+
+    def 'batches contain rows of a single partition'()
+    {
+        setup:
+        def session = Mock(CqlSession)
+        def batches = []
+        session.prepare('INSERT INTO ks.table (key,value) VALUES(?,?)') >> preparedStatement
+        session.executeAsync(_ as BatchStatement) >> { BatchStatement batch ->
+            batches << batch.collect { rowsByStatement[it] }
+            CompletableFuture.completedFuture(Mock(AsyncResultSet))
+        }
+        def loader = new CassandraBatchLoader(session, 'ks.table', ['key', 'value'], 3, 2)
+
+        when:
+        loader.load((0..<10).collect { [it % 2, it] }.iterator())
+
+        then:
+        batches.flatten().size() == 20
+        batches.every { batch -> batch.collect { it[0] }.unique().size() == 1 }
+        batches.every { batch -> batch.size() <= 3 }
+        loader.batchStats.calls == batches.size()
+        loader.retries == 0
+    }
+
+    def 'retries timed out batches'()
+    {
+        setup:
+        def session = Mock(CqlSession)
+        def attempts = 0
+        session.prepare(_ as String) >> preparedStatement
+        session.executeAsync(_ as BatchStatement) >> {
+            attempts++
+            CompletableFuture<AsyncResultSet> result = new CompletableFuture<>()
+            if (attempts == 1) {
+                result.completeExceptionally(new DriverTimeoutException('timeout'))
+            }
+            else {
+                result.complete(Mock(AsyncResultSet))
+            }
+            result
+        }
+        def loader = new CassandraBatchLoader(session, 'ks.table', ['key', 'value'], 10, 1)
+
+        when:
+        loader.load([[1, 1], [1, 2]].iterator())
+
+        then:
+        attempts == 2
+        loader.retries == 1
+        loader.batchStats.failures == 1
+    }
+
+    def 'fails on non retryable error'()
+    {
+        setup:
+        def session = Mock(CqlSession)
+        session.prepare(_ as String) >> preparedStatement
+        session.executeAsync(_ as BatchStatement) >> {
+            CompletableFuture<AsyncResultSet> result = new CompletableFuture<>()
+            result.completeExceptionally(new IllegalStateException('invalid'))
+            result
+        }
+        def loader = new CassandraBatchLoader(session, 'ks.table', ['key', 'value'], 1, 1)
+
+        when:
+        loader.load([[1, 1], [2, 2], [3, 3]].iterator())
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == 'Could not load data into table ks.table'
+        e.cause instanceof IllegalStateException
+        loader.batchStats.calls == 1
+    }
+
+    def 'waits for sent batches when reading rows fails'()
+    {
+        setup:
+        def session = Mock(CqlSession)
+        def completed = false
+        session.prepare(_ as String) >> preparedStatement
+        session.executeAsync(_ as BatchStatement) >> {
+            CompletableFuture<AsyncResultSet> result = new CompletableFuture<>()
+            Thread.start {
+                Thread.sleep(100)
+                completed = true
+                result.complete(Mock(AsyncResultSet))
+            }
+            result
+        }
+        def loader = new CassandraBatchLoader(session, 'ks.table', ['key', 'value'], 1, 2)
+
+        when:
+        loader.load([[1, 1], [2]].iterator())
+
+        then:
+        thrown(IllegalStateException)
+        completed
+    }
+}
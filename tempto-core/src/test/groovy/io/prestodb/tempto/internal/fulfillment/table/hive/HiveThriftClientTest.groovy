@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.hive
+
+import io.prestodb.tempto.fulfillment.table.hive.statistics.ColumnStatistics
+import io.prestodb.tempto.fulfillment.table.hive.statistics.TableStatistics
+import io.prestodb.tempto.internal.fulfillment.table.TableName
+import io.prestodb.tempto.internal.fulfillment.table.hive.HiveMetastoreClientPool.MetastoreConnection
+import org.apache.hadoop.hive.metastore.api.FieldSchema
+import org.apache.hadoop.hive.metastore.api.GetTablesRequest
+import org.apache.hadoop.hive.metastore.api.GetTablesResult
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor
+import org.apache.hadoop.hive.metastore.api.Table
+import org.apache.hadoop.hive.metastore.api.ThriftHiveMetastore
+import org.apache.thrift.transport.TTransportException
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+import static java.util.concurrent.TimeUnit.SECONDS
+
+class HiveThriftClientTest
+        extends Specification
+{
+    ThriftHiveMetastore.Iface metastore = Mock()
+    int connectionsCount
+
+    def 'should set statistics using pooled connection'()
+    {
+        setup:
+        def client = new HiveThriftClient(pool(2))
+
+        when:
+        client.setStatistics(tableName('a'), tableStatistics(10))
+        client.setStatistics(tableName('b'), tableStatistics(20))
+
+        then:
+        2 * metastore.get_table_objects_by_name_req(_) >> { GetTablesRequest request -> tablesResult(request) }
+        1 * metastore.alter_table('default', 'a', { it.parameters.numRows == '10' })
+        1 * metastore.alter_table('default', 'b', { it.parameters.numRows == '20' })
+        2 * metastore.update_table_column_statistics({ it.statsObj*.colName == ['c'] }) >> true
+        connectionsCount == 1
+        client.callStats.keySet() == ['alter_table', 'get_table_objects_by_name_req', 'update_table_column_statistics'] as Set
+        client.callStats.alter_table.calls == 2
+    }
+
+    def 'should reconnect on transport failure'()
+    {
+        setup:
+        def client = new HiveThriftClient(pool(1))
+
+        when:
+        client.setStatistics(tableName('a'), tableStatistics(10))
+
+        then:
+        1 * metastore.get_table_objects_by_name_req(_) >> { GetTablesRequest request -> tablesResult(request) }
+        1 * metastore.alter_table('default', 'a', _) >> { throw new TTransportException('broken pipe') }
+        1 * metastore.alter_table('default', 'a', _)
+        1 * metastore.update_table_column_statistics(_) >> true
+        connectionsCount == 2
+        client.callStats.alter_table.calls == 2
+        client.callStats.alter_table.failures == 1
+    }
+
+    def 'should batch statistics requested concurrently'()
+    {
+        setup:
+        def client = new HiveThriftClient(pool(1))
+        def firstAlterStarted = new CountDownLatch(1)
+        def firstAlterBlocked = new CountDownLatch(1)
+        def requestedTableNames = []
+        metastore.get_table_objects_by_name_req(_) >> { GetTablesRequest request ->
+            requestedTableNames.add(request.tblNames)
+            tablesResult(request)
+        }
+        metastore.alter_table('default', 'a', _) >> {
+            firstAlterStarted.countDown()
+            firstAlterBlocked.await(10, SECONDS)
+        }
+        metastore.update_table_column_statistics(_) >> true
+
+        when:
+        def first = Thread.start { client.setStatistics(tableName('a'), tableStatistics(10)) }
+        firstAlterStarted.await(10, SECONDS)
+        def waiting = ['b', 'c'].collect { name -> Thread.start { client.setStatistics(tableName(name), tableStatistics(10)) } }
+        while (client.batchPermits.queueLength < 2) {
+            Thread.sleep(10)
+        }
+        firstAlterBlocked.countDown()
+        ([first] + waiting)*.join()
+
+        then:
+        requestedTableNames.size() == 2
+        requestedTableNames[0] == ['a']
+        requestedTableNames[1] as Set == ['b', 'c'] as Set
+    }
+
+    private HiveMetastoreClientPool pool(int poolSize)
+    {
+        return new HiveMetastoreClientPool({
+            connectionsCount++
+            boolean open = true
+            return [
+                    getClient: { metastore },
+                    isOpen   : { open },
+                    close    : { open = false }
+            ] as MetastoreConnection
+        }, poolSize)
+    }
+
+    private static GetTablesResult tablesResult(GetTablesRequest request)
+    {
+        return new GetTablesResult(request.tblNames.collect { name ->
+            def table = new Table()
+            table.tableName = name
+            table.parameters = [:]
+            table.sd = new StorageDescriptor()
+            table.sd.cols = [new FieldSchema('c', 'bigint', null)]
+            return table
+        })
+    }
+
+    private static TableName tableName(String name)
+    {
+        return new TableName('hive', Optional.empty(), name, name)
+    }
+
+    private static TableStatistics tableStatistics(long rowCount)
+    {
+        return new TableStatistics(rowCount, [c: new ColumnStatistics(rowCount, 0, Optional.of(1L), Optional.of(rowCount))])
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.hive.statistics
+
+import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+import static java.nio.charset.StandardCharsets.UTF_8
+
+class TableStatisticsCollectorTest
+        extends Specification
+{
+    private static final String DDL = '''
+    CREATE TABLE %NAME%(
+            id BIGINT,
+            name VARCHAR(25) COMMENT 'name, with comma',
+            price DECIMAL(12, 2),
+            ship_date DATE)
+            ROW FORMAT DELIMITED FIELDS TERMINATED BY '|'
+'''
+
+    def 'should collect statistics of uploaded data'()
+    {
+        setup:
+        def collector = TableStatisticsCollector.forCreateTableDDL(DDL).get()
+        def dataSource = collector.collectingFrom(dataSource(
+                '1|a|1.50|2020-01-01\n2|b|\\N|2020-01-03\r\n',
+                'x|a|-2.25|2020-01-02\n3|\\N\n4|c|3|not a date'))
+
+        when:
+        dataSource.data().each { it.inputStream.bytes }
+        def statistics = collector.statistics.get()
+
+        then:
+        statistics.rowCount == 5
+        with(statistics.columns.id) {
+            nullsCount == 1
+            distinctValuesCount == 4
+            min.get() == 1L
+            max.get() == 4L
+        }
+        with(statistics.columns.name) {
+            nullsCount == 1
+            distinctValuesCount == 3
+            !min.present
+        }
+        with(statistics.columns.price) {
+            nullsCount == 2
+            distinctValuesCount == 3
+            min.get() == -2.25d
+            max.get() == 3d
+        }
+        with(statistics.columns.ship_date) {
+            nullsCount == 2
+            distinctValuesCount == 3
+            min.get() == LocalDate.of(2020, 1, 1).toEpochDay()
+            max.get() == LocalDate.of(2020, 1, 3).toEpochDay()
+        }
+    }
+
+    def 'should not return statistics until all files are read'()
+    {
+        setup:
+        def collector = TableStatisticsCollector.forCreateTableDDL(DDL).get()
+        def files = collector.collectingFrom(dataSource('1|a|1|2020-01-01\n', '2|b|2|2020-01-02\n')).data() as List
+
+        when:
+        files[0].inputStream.bytes
+
+        then:
+        !collector.statistics.present
+
+        when:
+        files[1].inputStream.bytes
+        files[1].inputStream.bytes
+
+        then:
+        collector.statistics.get().rowCount == 2
+    }
+
+    def 'should estimate number of distinct values'()
+    {
+        setup:
+        def collector = TableStatisticsCollector.forCreateTableDDL('CREATE TABLE t (id INT)').get()
+        def content = (0..<100_000).collect { (it % 50_000).toString() }.join('\n')
+
+        when:
+        collector.collectingFrom(dataSource(content)).data().each { it.inputStream.bytes }
+        def statistics = collector.statistics.get()
+
+        then:
+        statistics.rowCount == 100_000
+        Math.abs(statistics.columns.id.distinctValuesCount - 50_000) < 2_500
+    }
+
+    def 'should not collect statistics of unsupported tables'()
+    {
+        expect:
+        !TableStatisticsCollector.forCreateTableDDL(ddl).present
+
+        where:
+        ddl << [
+                'CREATE TABLE t (id BIGINT, name STRING)',
+                'CREATE TABLE t (id BIGINT) STORED AS ORC',
+                "CREATE TABLE t (id BIGINT) ROW FORMAT SERDE 'org.apache.hadoop.hive.serde2.OpenCSVSerde'",
+        ]
+    }
+
+    def 'should use fingerprint identifying columns and format'()
+    {
+        expect:
+        fingerprint('CREATE TABLE a (id BIGINT)') == fingerprint('CREATE TABLE b (id BIGINT)')
+        fingerprint('CREATE TABLE a (id BIGINT)') != fingerprint('CREATE TABLE a (id INT)')
+        fingerprint('CREATE TABLE a (id BIGINT)') != fingerprint("CREATE TABLE a (id BIGINT) ROW FORMAT DELIMITED FIELDS TERMINATED BY ','")
+    }
+
+    private static String fingerprint(String ddl)
+    {
+        return TableStatisticsCollector.forCreateTableDDL(ddl).get().fingerprint
+    }
+
+    private HiveDataSource dataSource(String... files)
+    {
+        def dataSource = Mock(HiveDataSource)
+        dataSource.data() >> files.collect { file -> { new ByteArrayInputStream(file.getBytes(UTF_8)) } as RepeatableContentProducer }
+        return dataSource
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.hive.tpch
+
+import com.google.common.io.ByteStreams
+import io.airlift.tpch.TpchEntity
+import spock.lang.Specification
+
+import static java.nio.charset.StandardCharsets.UTF_8
+
+class TpchEntityByteSourceTest
+        extends Specification
+{
+    private static final List<String> LINES = (0..<10000).collect { "$it|name_$it|comment ${'x' * (it % 50)}|".toString() } + ['żółć|']
+
+    def 'bulk read returns same content as single byte read'()
+    {
+        setup:
+        def expected = LINES.join('\n')
+
+        when:
+        def bulkRead = ByteStreams.toByteArray(byteSource().openStream())
+        def singleByteRead = readByteByByte(byteSource().openStream())
+
+        then:
+        new String(bulkRead, UTF_8) == expected
+        new String(singleByteRead, UTF_8) == expected
+    }
+
+    def 'should handle reads into small buffers'()
+    {
+        setup:
+        def expected = ByteStreams.toByteArray(byteSource().openStream())
+        def inputStream = byteSource().openStream()
+        def output = new ByteArrayOutputStream()
+        def buffer = new byte[7]
+
+        when:
+        int bytesRead
+        while ((bytesRead = inputStream.read(buffer, 1, 5)) != -1) {
+            output.write(buffer, 1, bytesRead)
+        }
+
+        then:
+        output.toByteArray() == expected
+        inputStream.read(buffer, 0, 0) == 0
+    }
+
+    private static TpchEntityByteSource byteSource()
+    {
+        return new TpchEntityByteSource<>(LINES.withIndex().collect { line, index -> new TestEntity(index, line) })
+    }
+
+    private static class TestEntity
+            implements TpchEntity
+    {
+        private final long rowNumber
+        private final String line
+
+        TestEntity(long rowNumber, String line)
+        {
+            this.rowNumber = rowNumber
+            this.line = line
+        }
+
+        @Override
+        long getRowNumber()
+        {
+            return rowNumber
+        }
+
+        @Override
+        String toLine()
+        {
+            return line
+        }
+    }
+
+    private static byte[] readByteByByte(InputStream inputStream)
+    {
+        def output = new ByteArrayOutputStream()
+        int value
+        while ((value = inputStream.read()) != -1) {
+            output.write(value)
+        }
+        return output.toByteArray()
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.sql.PreparedStatement
+import java.sql.Types
+
+import static io.prestodb.tempto.internal.fulfillment.table.jdbc.BatchLoader.MAX_EXECUTE_BATCH_BYTES
+import static io.prestodb.tempto.internal.fulfillment.table.jdbc.BatchLoader.MAX_EXECUTE_BATCH_ROWS
+import static io.prestodb.tempto.internal.fulfillment.table.jdbc.BatchLoader.MIN_EXECUTE_BATCH_ROWS
+import static io.prestodb.tempto.internal.fulfillment.table.jdbc.BatchLoader.nextExecuteBatchRows
+import static java.sql.JDBCType.BIGINT
+import static java.sql.JDBCType.DOUBLE
+import static java.sql.JDBCType.INTEGER
+import static java.sql.JDBCType.VARCHAR
+
+class BatchLoaderTest
+        extends Specification
+{
+    @Unroll
+    def 'next batch size for #rows rows executed in #millis ms'()
+    {
+        expect:
+        nextExecuteBatchRows(1000, rows, millis, rows * 100) == expected
+
+        where:
+        rows | millis | expected
+        1000 | 10     | 2000
+        1000 | 400    | 1000
+        1000 | 2000   | 500
+        10   | 10     | 1000
+    }
+
+    def 'batch size is bounded'()
+    {
+        expect:
+        nextExecuteBatchRows(MIN_EXECUTE_BATCH_ROWS, MIN_EXECUTE_BATCH_ROWS, 10_000, MIN_EXECUTE_BATCH_ROWS) == MIN_EXECUTE_BATCH_ROWS
+        nextExecuteBatchRows(MAX_EXECUTE_BATCH_ROWS, MAX_EXECUTE_BATCH_ROWS, 1, MAX_EXECUTE_BATCH_ROWS) == MAX_EXECUTE_BATCH_ROWS
+        nextExecuteBatchRows(1000, 1000, 1, MAX_EXECUTE_BATCH_BYTES) == 1000
+    }
+
+    def 'values are bound with type specific setters'()
+    {
+        setup:
+        PreparedStatement statement = Mock()
+
+        when:
+        ColumnBinder.forType(BIGINT).bind(statement, 1, 5L)
+        ColumnBinder.forType(INTEGER).bind(statement, 2, 6)
+        ColumnBinder.forType(DOUBLE).bind(statement, 3, 1.5d)
+        ColumnBinder.forType(VARCHAR).bind(statement, 4, 'ala')
+        ColumnBinder.forType(VARCHAR).bind(statement, 5, null)
+        ColumnBinder.forType(INTEGER).bind(statement, 6, 7L)
+
+        then:
+        1 * statement.setLong(1, 5L)
+        1 * statement.setInt(2, 6)
+        1 * statement.setDouble(3, 1.5d)
+        1 * statement.setString(4, 'ala')
+        1 * statement.setNull(5, Types.VARCHAR)
+        1 * statement.setObject(6, 7L)
+        0 * _
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc
+
+import io.prestodb.tempto.fulfillment.table.jdbc.RelationalDataSource
+import io.prestodb.tempto.internal.configuration.MapConfiguration
+import io.prestodb.tempto.internal.context.GuiceTestContext
+import io.prestodb.tempto.internal.fulfillment.table.TableNameGenerator
+import io.prestodb.tempto.query.JdbcConnectionsPool
+import io.prestodb.tempto.query.JdbcConnectivityParamsState
+import io.prestodb.tempto.query.JdbcQueryExecutor
+import spock.lang.Specification
+
+import static io.prestodb.tempto.fulfillment.table.TableHandle.tableHandle
+import static io.prestodb.tempto.fulfillment.table.jdbc.RelationalTableDefinition.relationalTableDefinition
+import static io.prestodb.tempto.internal.configuration.TestConfigurationFactory.TEST_CONFIGURATION_URIS_KEY
+import static io.prestodb.tempto.internal.query.JdbcUtils.registerDriver
+
+class JdbcTableManagerTest
+        extends Specification
+{
+    private static final JdbcConnectivityParamsState JDBC_STATE =
+            JdbcConnectivityParamsState.builder()
+                    .setName('load_db')
+                    .setDriverClass('org.hsqldb.jdbc.JDBCDriver')
+                    .setUrl('jdbc:hsqldb:mem:loaddb;hsqldb.tx=mvcc')
+                    .setUser('sa')
+                    .build();
+    private static final int ROWS_COUNT = 25_000
+
+    private GuiceTestContext testContext = new GuiceTestContext()
+    private JdbcQueryExecutor queryExecutor = new JdbcQueryExecutor(JDBC_STATE, new JdbcConnectionsPool(), testContext)
+
+    def setupSpec()
+    {
+        System.setProperty(TEST_CONFIGURATION_URIS_KEY, "/configuration/global-configuration-tempto.yaml");
+        registerDriver(JDBC_STATE)
+    }
+
+    def cleanup()
+    {
+        testContext.close()
+    }
+
+    def 'load table in parallel'()
+    {
+        setup:
+        def tableManager = tableManager(4)
+        def tableDefinition = relationalTableDefinition('parallel_load', 'CREATE TABLE %NAME% (id BIGINT, name VARCHAR(10))', rows(ROWS_COUNT))
+
+        when:
+        def tableInstance = tableManager.createImmutable(tableDefinition, tableHandle('parallel_load'))
+
+        then:
+        queryExecutor.executeQuery("SELECT count(*), count(DISTINCT id) FROM ${tableInstance.nameInDatabase}").rows() == [[ROWS_COUNT, ROWS_COUNT]]
+    }
+
+    def 'failed parallel load drops table'()
+    {
+        setup:
+        def tableManager = tableManager(4)
+        def tableDefinition = relationalTableDefinition('failed_load', 'CREATE TABLE %NAME% (id BIGINT, name VARCHAR(10))', rows(ROWS_COUNT, 15_000))
+
+        when:
+        tableManager.createImmutable(tableDefinition, tableHandle('failed_load'))
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == 'Could not load data into table failed_load'
+        e.cause instanceof IllegalArgumentException
+        queryExecutor.executeQuery("SELECT count(*) FROM information_schema.tables WHERE table_name = 'FAILED_LOAD'").rows() == [[0L]]
+    }
+
+    def 'immutable table is reused if its fingerprint matches'()
+    {
+        setup:
+        def tableManager = tableManager(1, true)
+        def tableDefinition = relationalTableDefinition('reused', 'CREATE TABLE %NAME% (id BIGINT, name VARCHAR(10))', rows(10))
+        tableManager.createImmutable(tableDefinition, tableHandle('reused'))
+        queryExecutor.executeQuery('INSERT INTO reused VALUES (100, null)')
+
+        when:
+        tableManager.createImmutable(tableDefinition, tableHandle('reused'))
+
+        then:
+        queryExecutor.executeQuery('SELECT count(*) FROM reused').rows() == [[11L]]
+    }
+
+    def 'immutable table is reloaded if its data changed'()
+    {
+        setup:
+        def tableManager = tableManager(1, true)
+        def ddl = 'CREATE TABLE %NAME% (id BIGINT, name VARCHAR(10))'
+        tableManager.createImmutable(relationalTableDefinition('changed', ddl, rows(10)), tableHandle('changed'))
+
+        when:
+        tableManager.createImmutable(relationalTableDefinition('changed', ddl, rows(20)), tableHandle('changed'))
+
+        then:
+        queryExecutor.executeQuery('SELECT count(*) FROM changed').rows() == [[20L]]
+    }
+
+    def 'immutable table is reloaded if fingerprints are not enabled'()
+    {
+        setup:
+        def tableManager = tableManager(1)
+        def tableDefinition = relationalTableDefinition('not_reused', 'CREATE TABLE %NAME% (id BIGINT, name VARCHAR(10))', rows(10))
+        tableManager.createImmutable(tableDefinition, tableHandle('not_reused'))
+        queryExecutor.executeQuery('INSERT INTO not_reused VALUES (100, null)')
+
+        when:
+        tableManager.createImmutable(tableDefinition, tableHandle('not_reused'))
+
+        then:
+        queryExecutor.executeQuery('SELECT count(*) FROM not_reused').rows() == [[10L]]
+    }
+
+    private JdbcTableManager tableManager(int loadParallelism, boolean tableFingerprints = false)
+    {
+        def configuration = new MapConfiguration([databases: [load_db: [table_load_parallelism: loadParallelism, table_fingerprints: tableFingerprints]]])
+        return new JdbcTableManager(queryExecutor, new TableNameGenerator(), 'load_db', configuration)
+    }
+
+    private static RelationalDataSource rows(int count, int invalidRow = -1)
+    {
+        return {
+            (0..<count).collect { it == invalidRow ? [it] : [it, 'name' + (it % 100)] }.iterator()
+        } as RelationalDataSource
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.fulfillment.table.jdbc
+
+import io.prestodb.tempto.internal.context.GuiceTestContext
+import io.prestodb.tempto.query.JdbcConnectionsPool
+import io.prestodb.tempto.query.JdbcConnectivityParamsState
+import io.prestodb.tempto.query.JdbcQueryExecutor
+import io.prestodb.tempto.query.QueryExecutor
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.DatabaseMetaData
+import java.sql.Date
+import java.sql.SQLException
+import java.sql.SQLFeatureNotSupportedException
+import java.sql.Statement
+
+import static io.prestodb.tempto.internal.configuration.TestConfigurationFactory.TEST_CONFIGURATION_URIS_KEY
+import static io.prestodb.tempto.internal.query.JdbcUtils.registerDriver
+import static java.sql.JDBCType.BIGINT
+import static java.sql.JDBCType.DATE
+import static java.sql.JDBCType.DECIMAL
+import static java.sql.JDBCType.VARCHAR
+
+class LoaderFactoryTest
+        extends Specification
+{
+    private static final JdbcConnectivityParamsState JDBC_STATE =
+            JdbcConnectivityParamsState.builder()
+                    .setName('bulk_db')
+                    .setDriverClass('org.hsqldb.jdbc.JDBCDriver')
+                    .setUrl('jdbc:hsqldb:mem:bulkdb')
+                    .setUser('sa')
+                    .build();
+
+    private GuiceTestContext testContext = new GuiceTestContext()
+    private JdbcQueryExecutor queryExecutor = new JdbcQueryExecutor(JDBC_STATE, new JdbcConnectionsPool(), testContext)
+
+    def setupSpec()
+    {
+        System.setProperty(TEST_CONFIGURATION_URIS_KEY, "/configuration/global-configuration-tempto.yaml");
+        registerDriver(JDBC_STATE)
+    }
+
+    def setup()
+    {
+        queryExecutor.executeQuery('CREATE TABLE bulk_load (id BIGINT, name VARCHAR(20), day DATE, price DECIMAL(10, 2))')
+    }
+
+    def cleanup()
+    {
+        queryExecutor.executeQuery('DROP TABLE bulk_load')
+        testContext.close()
+    }
+
+    def 'load data with HSQLDB text table'()
+    {
+        setup:
+        def rows = [
+                [1L, 'ala', Date.valueOf('2016-01-02'), new BigDecimal('1.50')],
+                [2L, 'a,"b"', null, null],
+                [3L, '', Date.valueOf('2016-01-03'), new BigDecimal('2')],
+                [4L, null, null, null]]
+
+        when:
+        def loader = new LoaderFactory(true).create(queryExecutor, 'bulk_load')
+        loader.load(rows)
+        loader.close()
+
+        then:
+        loader.getClass().simpleName == 'BulkLoaderAdapter'
+        queryExecutor.executeQuery('SELECT * FROM bulk_load ORDER BY id').rows() == [
+                [1L, 'ala', Date.valueOf('2016-01-02'), new BigDecimal('1.50')],
+                [2L, 'a,"b"', null, null],
+                [3L, '', Date.valueOf('2016-01-03'), new BigDecimal('2.00')],
+                [4L, null, null, null]]
+    }
+
+    def 'batch loader is used for columns not supported by bulk load'()
+    {
+        setup:
+        queryExecutor.executeQuery('CREATE TABLE binary_load (id BIGINT, payload VARBINARY(10))')
+
+        when:
+        def loader = new LoaderFactory(true).create(queryExecutor, 'binary_load')
+        loader.load([[1L, [1, 2] as byte[]]])
+        loader.close()
+
+        then:
+        loader instanceof BatchLoader
+        queryExecutor.executeQuery('SELECT id FROM binary_load').rows() == [[1L]]
+
+        cleanup:
+        queryExecutor.executeQuery('DROP TABLE binary_load')
+    }
+
+    def 'HSQLDB bulk loader is not created when text table source outside of database directory is not allowed'()
+    {
+        setup:
+        def connection = queryExecutor.connection
+        def restrictedConnection = [getMetaData: { -> connection.metaData }, createStatement: { ->
+            def statement = connection.createStatement()
+            return [
+                    execute: { String sql ->
+                        if (sql.contains(" SOURCE '")) {
+                            throw new SQLException('access to directory denied')
+                        }
+                        return statement.execute(sql)
+                    },
+                    close  : { -> statement.close() }] as Statement
+        }] as Connection
+        def restrictedQueryExecutor = Mock(QueryExecutor)
+        restrictedQueryExecutor.getConnection() >> restrictedConnection
+
+        when:
+        new HsqlBulkLoaderFactory().create(restrictedQueryExecutor, 'bulk_load', [BIGINT, VARCHAR, DATE, DECIMAL])
+
+        then:
+        thrown(SQLFeatureNotSupportedException)
+        queryExecutor.executeQuery("SELECT count(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE 'TEMPTO_BULK_%'").rows() == [[0L]]
+    }
+
+    def 'HSQLDB bulk loader is not created for database which is not in-process'()
+    {
+        setup:
+        def metaData = Mock(DatabaseMetaData)
+        metaData.getURL() >> 'jdbc:hsqldb:hsql://localhost/bulkdb'
+        def connection = Mock(Connection)
+        connection.getMetaData() >> metaData
+        def remoteQueryExecutor = Mock(QueryExecutor)
+        remoteQueryExecutor.getConnection() >> connection
+
+        when:
+        new HsqlBulkLoaderFactory().create(remoteQueryExecutor, 'bulk_load', [BIGINT, VARCHAR, DATE, DECIMAL])
+
+        then:
+        thrown(SQLFeatureNotSupportedException)
+        0 * connection.createStatement()
+    }
+
+    def 'batch loader is used when bulk load is disabled'()
+    {
+        when:
+        def loader = new LoaderFactory(false).create(queryExecutor, 'bulk_load')
+        loader.close()
+
+        then:
+        loader instanceof BatchLoader
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.hadoop.hdfs
+
+import io.prestodb.tempto.fulfillment.table.hive.HiveDataSource
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+import static io.prestodb.tempto.internal.hadoop.hdfs.DefaultHdfsDataSourceWriter.REVISION_XATTR_NAME
+import static java.util.concurrent.TimeUnit.SECONDS
+
+class DefaultHdfsDataSourceWriterTest
+        extends Specification
+{
+    private static final String PATH = "/tempto/datasets/nation"
+
+    HdfsClient hdfsClient = Mock()
+
+    def 'should skip upload when revision marker matches'()
+    {
+        setup:
+        def writer = new DefaultHdfsDataSourceWriter(hdfsClient, true, 1, 0)
+        hdfsClient.getXAttr(PATH, REVISION_XATTR_NAME) >> Optional.of("rev1")
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.of("rev1")))
+
+        then:
+        0 * hdfsClient.delete(_)
+        0 * hdfsClient.saveFile(_, _ as RepeatableContentProducer)
+        0 * hdfsClient.setXAttr(_, _, _)
+    }
+
+    def 'should upload and store revision marker when revision marker differs'()
+    {
+        setup:
+        def writer = new DefaultHdfsDataSourceWriter(hdfsClient, true, 1, 0)
+        hdfsClient.getXAttr(PATH, REVISION_XATTR_NAME) >> Optional.of("rev1")
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.of("rev2")))
+
+        then:
+        1 * hdfsClient.delete(PATH)
+        1 * hdfsClient.createDirectory(PATH)
+        1 * hdfsClient.saveFile(PATH + "/data_0", _ as RepeatableContentProducer)
+        1 * hdfsClient.setXAttr(PATH, REVISION_XATTR_NAME, "rev2")
+    }
+
+    def 'should always upload when revision marker is not present'()
+    {
+        setup:
+        def writer = new DefaultHdfsDataSourceWriter(hdfsClient, true, 1, 0)
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.empty()))
+
+        then:
+        0 * hdfsClient.getXAttr(_, _)
+        1 * hdfsClient.delete(PATH)
+        1 * hdfsClient.saveFile(PATH + "/data_0", _ as RepeatableContentProducer)
+        0 * hdfsClient.setXAttr(_, _, _)
+    }
+
+    def 'should always upload when reusing unchanged data is disabled'()
+    {
+        setup:
+        def writer = new DefaultHdfsDataSourceWriter(hdfsClient, false, 1, 0)
+        hdfsClient.getXAttr(PATH, REVISION_XATTR_NAME) >> Optional.of("rev1")
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.of("rev1")))
+
+        then:
+        1 * hdfsClient.delete(PATH)
+        1 * hdfsClient.saveFile(PATH + "/data_0", _ as RepeatableContentProducer)
+        0 * hdfsClient.setXAttr(_, _, _)
+    }
+
+    def 'should upload files concurrently'()
+    {
+        setup:
+        def activeUploads = new AtomicInteger()
+        def maxActiveUploads = new AtomicInteger()
+        def allSlotsBusy = new CountDownLatch(4)
+        def uploadThreads = Collections.synchronizedSet(new HashSet<String>())
+        def savedFiles = Collections.synchronizedList([])
+        // Spock mocks handle invocations one at a time, so a stub is used to let uploads overlap
+        HdfsClient concurrentHdfsClient = [
+                delete         : { String path -> },
+                createDirectory: { String path -> },
+                saveFile       : { String path, content ->
+                    uploadThreads.add(Thread.currentThread().name)
+                    maxActiveUploads.accumulateAndGet(activeUploads.incrementAndGet(), Math.&max)
+                    // the first uploads wait until all upload slots are in use, so they must overlap
+                    allSlotsBusy.countDown()
+                    allSlotsBusy.await(10, SECONDS)
+                    activeUploads.decrementAndGet()
+                    savedFiles.add(path)
+                }] as HdfsClient
+        def writer = new DefaultHdfsDataSourceWriter(concurrentHdfsClient, true, 4, 0)
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.empty(), 10))
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.empty(), 10))
+
+        then:
+        savedFiles.sort() == ((0..9).collect { PATH + "/data_" + it } * 2).sort()
+        allSlotsBusy.count == 0
+        maxActiveUploads.get() == 4
+        // upload threads are shared by all uploads
+        uploadThreads.size() == 4
+        uploadThreads.every { it.startsWith('hdfs-upload-') }
+
+        cleanup:
+        writer.close()
+    }
+
+    def 'should retry failed file upload'()
+    {
+        setup:
+        def writer = new DefaultHdfsDataSourceWriter(hdfsClient, true, 2, 1)
+        hdfsClient.getXAttr(PATH, REVISION_XATTR_NAME) >> Optional.empty()
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.of("rev1"), 1))
+
+        then:
+        2 * hdfsClient.saveFile(PATH + "/data_0", _ as RepeatableContentProducer) >> { throw new RuntimeException("upload failed") } >> {}
+        1 * hdfsClient.setXAttr(PATH, REVISION_XATTR_NAME, "rev1")
+    }
+
+    def 'should fail when file upload fails after retries'()
+    {
+        setup:
+        def writer = new DefaultHdfsDataSourceWriter(hdfsClient, true, 2, 1)
+        hdfsClient.getXAttr(PATH, REVISION_XATTR_NAME) >> Optional.empty()
+        hdfsClient.saveFile(_, _ as RepeatableContentProducer) >> { throw new RuntimeException("upload failed") }
+
+        when:
+        writer.ensureDataOnHdfs(PATH, dataSource(Optional.of("rev1"), 3))
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == "Could not upload data to " + PATH
+        e.cause.message == "upload failed"
+        0 * hdfsClient.setXAttr(_, _, _)
+    }
+
+    private HiveDataSource dataSource(Optional<String> revisionMarker, int fileCount = 1)
+    {
+        RepeatableContentProducer content = { new ByteArrayInputStream("1|a".bytes) }
+        HiveDataSource dataSource = Mock()
+        dataSource.data() >> (0..<fileCount).collect { content }
+        dataSource.revisionMarker() >> revisionMarker
+        return dataSource
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.hadoop.hdfs
+
+import io.prestodb.tempto.hadoop.hdfs.HdfsClient.RepeatableContentProducer
+import org.apache.http.HttpVersion
+import org.apache.http.client.methods.CloseableHttpResponse
+import org.apache.http.client.methods.HttpUriRequest
+import org.apache.http.client.utils.URLEncodedUtils
+import org.apache.http.entity.StringEntity
+import org.apache.http.message.BasicHeader
+import org.apache.http.message.BasicStatusLine
+import spock.lang.Specification
+
+import static java.nio.charset.StandardCharsets.UTF_8
+import static org.apache.http.HttpStatus.SC_CREATED
+import static org.apache.http.HttpStatus.SC_OK
+import static org.apache.http.HttpStatus.SC_TEMPORARY_REDIRECT
+
+class WebHdfsClientTest
+        extends Specification
+{
+    private List<String> requests = Collections.synchronizedList([])
+    private WebHdfsClient client = new WebHdfsClient('namenode', 50070, 'hdfs', { HttpUriRequest request -> respond(request) } as HttpRequestsExecutor)
+
+    def 'should synchronize saved files before setting xattr of their directory'()
+    {
+        setup:
+        saveFile('/dir/a')
+        saveFile('/dir/sub/b')
+        saveFile('/other/c')
+        requests.clear()
+
+        when:
+        client.setXAttr('/dir', 'user.key', 'value')
+
+        then:
+        requests == ['GETFILESTATUS /dir/a', 'GETFILESTATUS /dir/sub/b', 'SETXATTR /dir']
+        client.savedFilesPendingSynchronizationCount == 1
+    }
+
+    def 'should synchronize saved file only once'()
+    {
+        setup:
+        saveFile('/dir/a')
+        client.setXAttr('/dir/a', 'user.key', 'value')
+        requests.clear()
+
+        when:
+        client.setXAttr('/dir', 'user.key', 'value')
+
+        then:
+        requests == ['SETXATTR /dir']
+    }
+
+    def 'should not synchronize files of directory with common prefix'()
+    {
+        setup:
+        saveFile('/dir-other/a')
+        saveFile('/dir0/a')
+        saveFile('/dir/a')
+        requests.clear()
+
+        when:
+        client.removeXAttr('/dir', 'user.key')
+
+        then:
+        requests == ['GETFILESTATUS /dir/a', 'REMOVEXATTR /dir']
+        client.savedFilesPendingSynchronizationCount == 2
+    }
+
+    def 'should not synchronize deleted files'()
+    {
+        setup:
+        saveFile('/dir/a')
+        saveFile('/dir/b')
+        client.delete('/dir')
+        requests.clear()
+
+        when:
+        client.setXAttr('/dir', 'user.key', 'value')
+
+        then:
+        requests == ['SETXATTR /dir']
+        client.savedFilesPendingSynchronizationCount == 0
+    }
+
+    def 'should record statistics by operation'()
+    {
+        when:
+        saveFile('/dir/a')
+        saveFile('/dir/b')
+        client.exist('/dir/a')
+
+        then:
+        client.operationStats.keySet() == ['CREATE', 'CREATE_DATA', 'GETFILESTATUS'] as Set
+        client.operationStats['CREATE'].calls == 2
+        client.operationStats['CREATE_DATA'].calls == 2
+        client.operationStats['GETFILESTATUS'].calls == 1
+        client.operationStats.values().every { it.failures == 0 }
+    }
+
+    private void saveFile(String path)
+    {
+        client.saveFile(path, { new ByteArrayInputStream('data'.bytes) } as RepeatableContentProducer)
+    }
+
+    private CloseableHttpResponse respond(HttpUriRequest request)
+    {
+        def uri = request.URI
+        def path = uri.path - '/webhdfs/v1'
+        def operation = URLEncodedUtils.parse(uri, UTF_8).find { it.name == 'op' }.value
+        if (uri.host == 'datanode') {
+            return response(SC_CREATED)
+        }
+        requests.add("$operation $path".toString())
+        if (operation == 'CREATE') {
+            return response(SC_TEMPORARY_REDIRECT, '', "http://datanode:50075/webhdfs/v1$path?op=CREATE")
+        }
+        if (operation == 'GETFILESTATUS') {
+            return response(SC_OK, '{"FileStatus": {"length": 4}}')
+        }
+        return response(SC_OK)
+    }
+
+    private CloseableHttpResponse response(int status, String content = '', String location = null)
+    {
+        CloseableHttpResponse response = Mock()
+        response.getStatusLine() >> new BasicStatusLine(HttpVersion.HTTP_1_1, status, '')
+        response.getEntity() >> new StringEntity(content)
+        response.getFirstHeader('Location') >> new BasicHeader('Location', location)
+        return response
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.internal.query
+
+import com.datastax.oss.driver.api.core.CqlIdentifier
+import com.datastax.oss.driver.api.core.CqlSession
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions
+import com.datastax.oss.driver.api.core.cql.PreparedStatement
+import com.datastax.oss.driver.api.core.cql.Row
+import com.datastax.oss.driver.api.core.cql.SimpleStatement
+import com.datastax.oss.driver.api.core.metadata.Metadata
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata
+import com.datastax.oss.driver.api.core.type.DataTypes
+import spock.lang.Specification
+
+import java.sql.JDBCType
+import java.util.concurrent.CompletableFuture
+
+class CassandraQueryExecutorTest
+        extends Specification
+{
+    def session = Mock(CqlSession)
+
+    def 'reuses schema metadata until invalidated'()
+    {
+        setup:
+        def keyspace = Mock(KeyspaceMetadata)
+        keyspace.getTable('table') >> Optional.of(Mock(TableMetadata))
+        def metadata = Mock(Metadata)
+        metadata.getKeyspace('ks') >> Optional.of(keyspace)
+        def executor = new CassandraQueryExecutor(session, 10, 10)
+
+        when:
+        def exists = executor.tableExists('ks', 'table') && executor.tableExists('ks', 'table')
+
+        then:
+        exists
+        1 * session.getMetadata() >> metadata
+
+        when:
+        executor.invalidateSchemaMetadata()
+        executor.tableExists('ks', 'table')
+
+        then:
+        1 * session.getMetadata() >> metadata
+    }
+
+    def 'invalidates schema metadata only after schema changing statements'()
+    {
+        setup:
+        def metadata = Mock(Metadata)
+        metadata.getKeyspace('ks') >> Optional.empty()
+        def definitions = Mock(ColumnDefinitions)
+        definitions.iterator() >> { [].iterator() }
+        session.executeAsync(_) >> CompletableFuture.completedFuture(page(definitions, [], null))
+        def executor = new CassandraQueryExecutor(session, 10, 10)
+
+        when:
+        executor.tableExists('ks', 'table')
+        executor.executeQuery("INSERT INTO ks.table (a) VALUES (1)")
+        executor.tableExists('ks', 'table')
+
+        then:
+        1 * session.getMetadata() >> metadata
+
+        when:
+        executor.executeQuery(" create TABLE ks.other (a int PRIMARY KEY)")
+        executor.tableExists('ks', 'table')
+
+        then:
+        1 * session.getMetadata() >> metadata
+    }
+
+    def 'does not reuse schema metadata fetched concurrently with invalidation'()
+    {
+        setup:
+        def metadata = Mock(Metadata)
+        metadata.getKeyspace('ks') >> Optional.empty()
+        def executor = new CassandraQueryExecutor(session, 10, 10)
+
+        when:
+        executor.tableExists('ks', 'table')
+        executor.tableExists('ks', 'table')
+
+        then:
+        1 * session.getMetadata() >> {
+            executor.invalidateSchemaMetadata()
+            metadata
+        }
+        1 * session.getMetadata() >> metadata
+    }
+
+    def 'caches prepared statements by cql'()
+    {
+        setup:
+        def executor = new CassandraQueryExecutor(session, 10, 1)
+
+        when:
+        def first = executor.prepare('SELECT a FROM t')
+        def second = executor.prepare('SELECT a FROM t')
+        executor.prepare('SELECT b FROM t')
+        executor.prepare('SELECT a FROM t')
+
+        then:
+        first.is(second)
+        2 * session.prepare('SELECT a FROM t') >> Mock(PreparedStatement)
+        1 * session.prepare('SELECT b FROM t') >> Mock(PreparedStatement)
+    }
+
+    def 'pages through query results'()
+    {
+        setup:
+        def definition = Mock(ColumnDefinition)
+        definition.getType() >> DataTypes.INT
+        definition.getName() >> CqlIdentifier.fromInternal('value')
+        def definitions = Mock(ColumnDefinitions)
+        definitions.iterator() >> { [definition].iterator() }
+        def secondPage = page(definitions, [3], null)
+        def firstPage = page(definitions, [1, 2], secondPage)
+        def executor = new CassandraQueryExecutor(session, 2, 10)
+
+        when:
+        def result = executor.executeQuery('SELECT value FROM t')
+
+        then:
+        1 * session.executeAsync({ SimpleStatement statement -> statement.pageSize == 2 }) >> CompletableFuture.completedFuture(firstPage)
+        result.columnTypes == [JDBCType.INTEGER]
+        result.rows() == [[1], [2], [3]]
+    }
+
+    private AsyncResultSet page(ColumnDefinitions definitions, List<Integer> values, AsyncResultSet nextPage)
+    {
+        def rows = values.collect { value ->
+            def row = Mock(Row)
+            row.getObject(0) >> value
+            row
+        }
+        def page = Mock(AsyncResultSet)
+        page.getColumnDefinitions() >> definitions
+        page.currentPage() >> rows
+        page.hasMorePages() >> (nextPage != null)
+        page.fetchNextPage() >> CompletableFuture.completedFuture(nextPage)
+        page
+    }
+}
@@ -16,6 +16,7 @@ package io.prestodb.tempto.internal.query
 
 import io.prestodb.tempto.context.TestContext
 import io.prestodb.tempto.internal.context.GuiceTestContext
+import io.prestodb.tempto.query.JdbcConnectionScope
 import io.prestodb.tempto.query.JdbcConnectionsPool
 import io.prestodb.tempto.query.JdbcConnectivityParamsState
 import io.prestodb.tempto.query.JdbcQueryExecutor
@@ -122,4 +123,41 @@ class JdbcQueryExecutorTest
                 row(2, 'Oracle'),
                 row(3, 'Facebook'))
     }
+
+    def 'test threads share connection'()
+    {
+        setup:
+        Connection mainThreadConnection = queryExecutor.getConnection()
+        Connection otherThreadConnection
+        def thread = Thread.start {
+            otherThreadConnection = queryExecutor.getConnection()
+        }
+        thread.join()
+
+        expect:
+        otherThreadConnection.is(mainThreadConnection)
+    }
+
+    def 'test thread uses own connection in connection scope'()
+    {
+        setup:
+        Connection mainThreadConnection = queryExecutor.getConnection()
+        Connection scopedConnection
+        boolean closedInScope
+        def thread = Thread.start {
+            def scope = JdbcConnectionScope.open()
+            scopedConnection = queryExecutor.getConnection()
+            queryExecutor.executeQuery('SELECT comp_id FROM company')
+            closedInScope = scopedConnection.isClosed()
+            scope.close()
+        }
+        thread.join()
+
+        expect:
+        !scopedConnection.is(mainThreadConnection)
+        !closedInScope
+        scopedConnection.isClosed()
+        !mainThreadConnection.isClosed()
+        queryExecutor.getConnection().is(mainThreadConnection)
+    }
 }
@@ -158,6 +158,51 @@ class QueryResultValueComparatorTest
         FLOAT  | Double.valueOf(-1010.001) | Double.valueOf(-1000.0) | -1
     }
 
+    @Unroll
+    def 'queryResultValueComparator(#type).hashKey(#actual) equals hashKey(#expected) = #result'()
+    {
+        setup:
+        Configuration configuration = Mock(Configuration)
+        configuration.getDouble(_) >> Optional.empty()
+        def comparator = QueryResultValueComparator.comparatorForType(type, configuration)
+
+        expect:
+        comparator.supportsHashKey()
+        (comparator.hashKey(actual) == comparator.hashKey(expected)) == result
+        (comparator.compare(actual, expected) == 0) == result
+
+        where:
+        type      | actual                                   | expected                                         | result
+        VARCHAR   | null                                     | null                                             | true
+        VARCHAR   | null                                     | "a"                                              | false
+        VARCHAR   | "a"                                      | "a"                                              | true
+        BINARY    | byteArray(1)                             | byteArray(1)                                     | true
+        BINARY    | byteArray(1)                             | byteArray(0)                                     | false
+        BIGINT    | 1L                                       | 1                                                | true
+        INTEGER   | 1 as short                               | 1                                                | true
+        INTEGER   | 1                                        | 2                                                | false
+        DOUBLE    | Double.valueOf(0.0)                      | Double.valueOf(-0.0)                             | true
+        DOUBLE    | Double.valueOf(1.5)                      | Float.valueOf(1.5)                               | true
+        DOUBLE    | Double.NaN                               | Double.NaN                                       | true
+        DECIMAL   | new BigDecimal("1.0")                    | new BigDecimal("1.00")                           | true
+        DECIMAL   | new BigDecimal("1.0")                    | new BigDecimal("1.01")                           | false
+        DATE      | Date.valueOf("2015-02-15")               | Date.valueOf("2015-02-15")                       | true
+        TIMESTAMP | Timestamp.valueOf("2015-02-15 10:10:10") | Timestamp.valueOf("2015-02-15 10:10:10")         | true
+        TIMESTAMP | Timestamp.valueOf("2015-02-15 10:10:10") | Timestamp.valueOf("2015-02-15 10:10:10.000001") | false
+    }
+
+    def 'hash key is not supported for floating point values compared with tolerance'()
+    {
+        setup:
+        Configuration configuration = Mock(Configuration)
+        configuration.getDouble(_) >> Optional.of(Double.valueOf(0.01))
+
+        expect:
+        !QueryResultValueComparator.comparatorForType(DOUBLE, configuration).supportsHashKey()
+        !QueryResultValueComparator.comparatorForType(DOUBLE, configuration).hashKey(1.0d).isPresent()
+        QueryResultValueComparator.comparatorForType(BIGINT, configuration).supportsHashKey()
+    }
+
     private byte[] byteArray(int value)
     {
         return [value];
@@ -0,0 +1,297 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.query
+
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.util.Optional
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+import static com.google.common.collect.Iterables.getOnlyElement
+
+class JdbcConnectionsPoolTest
+        extends Specification
+{
+    private static final JdbcConnectivityParamsState JDBC_STATE =
+            JdbcConnectivityParamsState.builder()
+                    .setName('connection_name')
+                    .setDriverClass('org.hsqldb.jdbc.JDBCDriver')
+                    .setUrl('jdbc:hsqldb:mem:pooldb')
+                    .setUser('sa')
+                    .setMaxIdleConnections(2)
+                    .build();
+
+    private JdbcConnectionsPool connectionsPool = new JdbcConnectionsPool()
+
+    def cleanup()
+    {
+        connectionsPool.closeIdleConnections()
+    }
+
+    def 'closed connection is reused'()
+    {
+        when:
+        def first = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(first)
+        first.close()
+        def second = connectionsPool.connectionFor(JDBC_STATE)
+
+        then:
+        first.isClosed()
+        sessionId(second) == session
+        pool().activeConnections == 1
+        pool().idleConnections == 0
+        pool().borrowStats.calls == 2
+
+        cleanup:
+        second?.close()
+    }
+
+    def 'number of idle connections is bounded'()
+    {
+        when:
+        def connections = (1..3).collect { connectionsPool.connectionFor(JDBC_STATE) }
+        def sessions = connections.collect { sessionId(it) }
+        connections.each { it.close() }
+
+        then:
+        pool().activeConnections == 0
+        pool().idleConnections == 2
+
+        when:
+        def reborrowed = (1..3).collect { connectionsPool.connectionFor(JDBC_STATE) }
+
+        then:
+        reborrowed.count { sessions.contains(sessionId(it)) } == 2
+
+        cleanup:
+        reborrowed?.each { it.close() }
+    }
+
+    def 'connection in transaction is not reused'()
+    {
+        when:
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(connection)
+        connection.autoCommit = false
+        connection.close()
+
+        then:
+        pool().idleConnections == 0
+        !isReused(session)
+    }
+
+    def 'connection which changed session is not reused'()
+    {
+        when:
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(connection)
+        def statement = connection.createStatement()
+        statement.execute('SET SCHEMA INFORMATION_SCHEMA')
+        statement.close()
+        connection.close()
+
+        then:
+        pool().idleConnections == 0
+        !isReused(session)
+    }
+
+    def 'connection which changed session through prepared statement is not reused'()
+    {
+        when:
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(connection)
+        def statement = connection.prepareStatement('SET SCHEMA INFORMATION_SCHEMA')
+        statement.execute()
+        statement.close()
+        connection.close()
+
+        then:
+        pool().idleConnections == 0
+        !isReused(session)
+    }
+
+    def 'connection which changed transaction isolation is not reused'()
+    {
+        when:
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(connection)
+        connection.transactionIsolation = Connection.TRANSACTION_SERIALIZABLE
+        connection.close()
+
+        then:
+        pool().idleConnections == 0
+        !isReused(session)
+    }
+
+    def 'unwrapped connection is not reused'()
+    {
+        when:
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(connection)
+        def physical = connection.unwrap(Connection)
+        connection.close()
+
+        then:
+        physical.isClosed()
+        pool().idleConnections == 0
+        !isReused(session)
+    }
+
+    def 'statements return pooled connection'()
+    {
+        setup:
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+
+        when:
+        def statement = connection.createStatement()
+        def preparedStatement = connection.prepareStatement('CALL SESSION_ID()')
+        def callableStatement = connection.prepareCall('CALL SESSION_ID()')
+
+        then:
+        statement.connection.is(connection)
+        preparedStatement.connection.is(connection)
+        callableStatement.connection.is(connection)
+
+        cleanup:
+        [statement, preparedStatement, callableStatement].each { it?.close() }
+        connection?.close()
+    }
+
+    def 'schema changed through connection is restored'()
+    {
+        setup:
+        def first = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(first)
+        def initialSchema = first.schema
+
+        when:
+        first.schema = 'INFORMATION_SCHEMA'
+        first.close()
+        def second = connectionsPool.connectionFor(JDBC_STATE)
+
+        then:
+        sessionId(second) == session
+        second.schema == initialSchema
+
+        cleanup:
+        second?.close()
+    }
+
+    def 'prepare statement is run on every borrow'()
+    {
+        setup:
+        def prepareState = JdbcConnectivityParamsState.builder()
+                .setName('prepared_connection')
+                .setDriverClass('org.hsqldb.jdbc.JDBCDriver')
+                .setUrl('jdbc:hsqldb:mem:preparedpooldb')
+                .setUser('sa')
+                .setPrepareStatement(Optional.of('SET SCHEMA INFORMATION_SCHEMA'))
+                .setMaxIdleConnections(2)
+                .build()
+        def first = connectionsPool.connectionFor(prepareState)
+        def session = sessionId(first)
+        first.schema = 'PUBLIC'
+        first.close()
+
+        when:
+        def second = connectionsPool.connectionFor(prepareState)
+
+        then:
+        sessionId(second) == session
+        second.schema == 'INFORMATION_SCHEMA'
+
+        cleanup:
+        second?.close()
+    }
+
+    def 'invalid idle connection is discarded on borrow'()
+    {
+        setup:
+        def first = connectionsPool.connectionFor(JDBC_STATE)
+        def session = sessionId(first)
+        first.close()
+        // unwrapped connections are not reused, so the idle physical connection is closed directly
+        pool().@idleConnections.peekFirst().@connection.close()
+
+        when:
+        def second = connectionsPool.connectionFor(JDBC_STATE)
+
+        then:
+        !second.isClosed()
+        sessionId(second) != session
+
+        cleanup:
+        second?.close()
+    }
+
+    def 'single pool is created for concurrent requests'()
+    {
+        setup:
+        def threads = 8
+        def executor = Executors.newFixedThreadPool(threads)
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (1..threads).collect {
+            executor.submit({
+                start.await()
+                return connectionsPool.connectionFor(JDBC_STATE)
+            } as Callable<Connection>)
+        }
+        start.countDown()
+        def connections = futures.collect { it.get() }
+
+        then:
+        connectionsPool.connectionPools.size() == 1
+        pool().activeConnections == threads
+
+        cleanup:
+        connections?.each { it.close() }
+        executor.shutdownNow()
+    }
+
+    private boolean isReused(long session)
+    {
+        def connection = connectionsPool.connectionFor(JDBC_STATE)
+        try {
+            return sessionId(connection) == session
+        }
+        finally {
+            connection.close()
+        }
+    }
+
+    private static long sessionId(Connection connection)
+    {
+        def statement = connection.createStatement()
+        try {
+            def resultSet = statement.executeQuery('CALL SESSION_ID()')
+            resultSet.next()
+            return resultSet.getLong(1)
+        }
+        finally {
+            statement.close()
+        }
+    }
+
+    private pool()
+    {
+        getOnlyElement(connectionsPool.connectionPools.values())
+    }
+}
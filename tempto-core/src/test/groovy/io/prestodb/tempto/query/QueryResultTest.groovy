@@ -42,4 +42,32 @@ class QueryResultTest
         projection.column(2) == [1, 2]
         projection.getJdbcResultSet().get() == jdbcResultSet
     }
+
+    def "test QueryResult keeps values and their types"()
+    {
+        setup:
+        def builder = new QueryResult.QueryResultBuilder([type], ['column'])
+        values.each { builder.addRow([it]) }
+        def queryResult = builder.build()
+
+        expect:
+        queryResult.rowsCount == values.size()
+        queryResult.column(1) == values
+        queryResult.column(1).collect { it?.getClass() } == values.collect { it?.getClass() }
+        queryResult.rows() == values.collect { [it] }
+
+        where:
+        type              | values
+        JDBCType.BIGINT   | [1L, null, Long.MAX_VALUE]
+        JDBCType.INTEGER  | [1, null, Integer.MIN_VALUE]
+        JDBCType.SMALLINT | [(short) 1, null]
+        JDBCType.DOUBLE   | [1.5d, null, Double.NaN]
+        JDBCType.REAL     | [1.5f, null]
+        JDBCType.BOOLEAN  | [true, null, false]
+        JDBCType.VARCHAR  | ['a', null, 'b', 'a']
+        JDBCType.BIGINT   | [1L, null, 2, new BigInteger('18446744073709551615')]
+        JDBCType.DOUBLE   | [1.5d, new BigDecimal('2.5')]
+        JDBCType.VARCHAR  | ['a', 1]
+        JDBCType.DATE     | [java.sql.Date.valueOf('2015-01-01'), null]
+    }
 }
@@ -15,8 +15,32 @@
 package io.prestodb.tempto.fulfillment.table.kafka;
 
 import java.util.Iterator;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 public interface KafkaDataSource
 {
+    /**
+     * @return iterator over messages to be sent to topic; if it is {@link AutoCloseable}, it is closed once messages are sent
+     */
     Iterator<KafkaMessage> getMessages();
+
+    /**
+     * Returns a value which changes whenever messages returned by {@link #getMessages()} change. It is used to detect
+     * whether topics loaded in previous runs can be reused. If empty, all the messages are read and hashed.
+     *
+     * @return fingerprint of the data
+     */
+    default Optional<String> getDataFingerprint()
+    {
+        return Optional.empty();
+    }
+
+    /**
+     * @return number of topic partitions the messages are assigned to, if the data source assigns them
+     */
+    default OptionalInt getPartitionsCount()
+    {
+        return OptionalInt.empty();
+    }
 }
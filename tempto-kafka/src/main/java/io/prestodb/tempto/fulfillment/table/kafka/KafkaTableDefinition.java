@@ -36,6 +36,12 @@ public class KafkaTableDefinition
         this.partitionsCount = partitionsCount;
         checkArgument(replicationLevel >= 1, "replicationLevel must be grater than or equal 1");
         this.replicationLevel = replicationLevel;
+        dataSource.getPartitionsCount().ifPresent(dataSourcePartitionsCount -> checkArgument(
+                dataSourcePartitionsCount == partitionsCount,
+                "Data source assigns messages to %s partitions, but topic %s has %s partitions",
+                dataSourcePartitionsCount,
+                topic,
+                partitionsCount));
     }
 
     public String getTopic()
@@ -13,10 +13,12 @@
  */
 package io.prestodb.tempto.fulfillment.table.kafka;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.name.Names;
+import io.prestodb.tempto.configuration.Configuration;
 import io.prestodb.tempto.fulfillment.table.MutableTableRequirement;
 import io.prestodb.tempto.fulfillment.table.TableDefinition;
 import io.prestodb.tempto.fulfillment.table.TableHandle;
@@ -28,32 +30,62 @@ import io.prestodb.tempto.query.QueryResult;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
+import org.apache.kafka.clients.admin.Admin;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.slf4j.Logger;
 
-import java.util.Collections;
 import java.util.Iterator;
+import java.util.Optional;
 import java.util.Properties;
-import java.util.function.Consumer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static io.prestodb.tempto.fulfillment.table.ParallelPartsIterator.closeIterator;
 import static java.lang.String.format;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
 
 @TableManager.Descriptor(tableDefinitionClass = KafkaTableDefinition.class, type = "KAFKA")
 @Singleton
 public class KafkaTableManager
         implements TableManager<KafkaTableDefinition>
 {
+    private static final Logger LOGGER = getLogger(KafkaTableManager.class);
+
+    private static final long ADMIN_TIMEOUT_SECONDS = 30;
+    private static final int CREATE_TOPIC_ATTEMPTS = 5;
+
+    private static final ImmutableMap<String, String> DEFAULT_PRODUCER_PROPERTIES = ImmutableMap.of(
+            "linger.ms", "5",
+            "batch.size", String.valueOf(256 * 1024),
+            "compression.type", "none");
+
     private final String databaseName;
     private final QueryExecutor prestoQueryExecutor;
-    private final String brokerHost;
-    private final Integer brokerPort;
+    private final String bootstrapServers;
     private final String prestoKafkaCatalog;
+    private final Configuration producerConfiguration;
+    private final boolean topicFingerprintsEnabled;
+    private final Supplier<Admin> adminClientFactory;
+    private final Function<Properties, Producer<byte[], byte[]>> producerFactory;
+    private final KafkaTopicFingerprints topicFingerprints;
+    private Admin adminClient;
 
     @Inject
     public KafkaTableManager(
@@ -62,24 +94,53 @@ public class KafkaTableManager
             @Named("broker.port") int brokerPort,
             @Named("presto_database_name") String prestoDatabaseName,
             @Named("presto_kafka_catalog") String prestoKafkaCatalog,
+            Configuration configuration,
             Injector injector)
+    {
+        this(
+                databaseName,
+                requireNonNull(brokerHost, "brokerHost is null") + ":" + brokerPort,
+                requireNonNull(injector, "injector is null").getInstance(Key.get(QueryExecutor.class, Names.named(requireNonNull(prestoDatabaseName, "prestoDatabaseName is null")))),
+                prestoKafkaCatalog,
+                configuration,
+                () -> AdminClient.create(adminClientProperties(brokerHost + ":" + brokerPort)),
+                KafkaProducer::new,
+                adminClient -> new KafkaTopicFingerprints(brokerHost + ":" + brokerPort, adminClient));
+    }
+
+    @VisibleForTesting
+    KafkaTableManager(
+            String databaseName,
+            String bootstrapServers,
+            QueryExecutor prestoQueryExecutor,
+            String prestoKafkaCatalog,
+            Configuration configuration,
+            Supplier<Admin> adminClientFactory,
+            Function<Properties, Producer<byte[], byte[]>> producerFactory,
+            Function<Supplier<Admin>, KafkaTopicFingerprints> topicFingerprintsFactory)
     {
         this.databaseName = requireNonNull(databaseName, "databaseName is null");
-        this.brokerHost = requireNonNull(brokerHost, "brokerHost is null");
-        this.brokerPort = brokerPort;
-        requireNonNull(injector, "injector is null");
-        requireNonNull(prestoDatabaseName, "prestoDatabaseName is null");
-        this.prestoQueryExecutor = injector.getInstance(Key.get(QueryExecutor.class, Names.named(prestoDatabaseName)));
+        this.bootstrapServers = requireNonNull(bootstrapServers, "bootstrapServers is null");
+        this.prestoQueryExecutor = requireNonNull(prestoQueryExecutor, "prestoQueryExecutor is null");
         this.prestoKafkaCatalog = requireNonNull(prestoKafkaCatalog, "prestoKafkaCatalog is null");
+        requireNonNull(configuration, "configuration is null");
+        this.producerConfiguration = configuration.getSubconfiguration("databases." + databaseName + ".producer");
+        this.topicFingerprintsEnabled = configuration.getBoolean("databases." + databaseName + ".topic_fingerprints").orElse(false);
+        this.adminClientFactory = requireNonNull(adminClientFactory, "adminClientFactory is null");
+        this.producerFactory = requireNonNull(producerFactory, "producerFactory is null");
+        this.topicFingerprints = requireNonNull(topicFingerprintsFactory, "topicFingerprintsFactory is null").apply(this::getAdminClient);
     }
 
     @Override
     public TableInstance<KafkaTableDefinition> createImmutable(KafkaTableDefinition tableDefinition, TableHandle tableHandle)
     {
         verifyTableExistsInPresto(tableHandle.getSchema().orElseThrow(() -> new IllegalArgumentException("Schema required for Kafka tables")), tableHandle.getName());
-        deleteTopic(tableDefinition.getTopic());
-        createTopic(tableDefinition.getTopic(), tableDefinition.getPartitionsCount(), tableDefinition.getReplicationLevel());
-        insertDataIntoTopic(tableDefinition.getTopic(), tableDefinition.getDataSource());
+        if (topicFingerprintsEnabled) {
+            createImmutableWithFingerprint(tableDefinition);
+        }
+        else {
+            recreateTopic(tableDefinition);
+        }
         TableName createdTableName = new TableName(
                 tableHandle.getDatabase().orElse(getDatabaseName()),
                 tableHandle.getSchema(),
@@ -88,6 +149,52 @@ public class KafkaTableManager
         return new KafkaTableInstance(createdTableName, tableDefinition);
     }
 
+    private void createImmutableWithFingerprint(KafkaTableDefinition tableDefinition)
+    {
+        String topic = tableDefinition.getTopic();
+        String fingerprint = KafkaTopicFingerprints.fingerprint(tableDefinition);
+        Optional<String> storedFingerprint = topicFingerprints.get(topic);
+        if (storedFingerprint.isPresent() && storedFingerprint.get().equals(fingerprint) && topicHasPartitions(topic, tableDefinition.getPartitionsCount())) {
+            LOGGER.info("Reusing topic {} with matching fingerprint", topic);
+            return;
+        }
+        topicFingerprints.remove(topic);
+        recreateTopic(tableDefinition);
+        topicFingerprints.set(topic, fingerprint);
+    }
+
+    private void recreateTopic(KafkaTableDefinition tableDefinition)
+    {
+        deleteTopic(tableDefinition.getTopic());
+        createTopic(tableDefinition.getTopic(), tableDefinition.getPartitionsCount(), tableDefinition.getReplicationLevel());
+        insertDataIntoTopic(tableDefinition.getTopic(), tableDefinition.getDataSource());
+    }
+
+    private boolean topicHasPartitions(String topic, int partitionsCount)
+    {
+        try {
+            TopicDescription description = getAdminClient().describeTopics(singletonList(topic))
+                    .allTopicNames()
+                    .get(ADMIN_TIMEOUT_SECONDS, SECONDS)
+                    .get(topic);
+            return description != null && description.partitions().size() == partitionsCount;
+        }
+        catch (ExecutionException e) {
+            if (!(e.getCause() instanceof UnknownTopicOrPartitionException)) {
+                LOGGER.warn("Unable to describe topic {}, topic will be recreated", topic, e.getCause());
+            }
+            return false;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while describing topic " + topic, e);
+        }
+        catch (TimeoutException e) {
+            LOGGER.warn("Timed out describing topic {}, topic will be recreated", topic, e);
+            return false;
+        }
+    }
+
     private void verifyTableExistsInPresto(String schema, String name)
     {
         String sql = format("select count(1) from %s.information_schema.tables where table_schema='%s' and table_name='%s'", prestoKafkaCatalog, schema, name);
@@ -99,52 +206,53 @@ public class KafkaTableManager
 
     private void deleteTopic(String topic)
     {
-
-        withAdminClient(adminClient -> {
-            Supplier<Boolean> topicExists = () -> {
-                try {
-                    return adminClient.listTopics()
-                            .names()
-                            .get()
-                            .stream()
-                            .anyMatch(topic::equals);
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            };
-
-            if (topicExists.get()) {
-                adminClient.deleteTopics(Collections.singletonList(topic));
-            }
-            for (int checkTry = 0; checkTry < 5; ++checkTry) {
-                if (!topicExists.get()) {
-                    return;
-                }
-                try {
-                    Thread.sleep(1_000);
-                }
-                catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("could not delete topic " + topic);
-                }
+        try {
+            getAdminClient().deleteTopics(singletonList(topic)).all().get(ADMIN_TIMEOUT_SECONDS, SECONDS);
+        }
+        catch (ExecutionException e) {
+            if (!(e.getCause() instanceof UnknownTopicOrPartitionException)) {
+                throw new RuntimeException("could not delete topic " + topic, e.getCause());
             }
-        });
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("could not delete topic " + topic, e);
+        }
+        catch (TimeoutException e) {
+            throw new RuntimeException("could not delete topic " + topic, e);
+        }
     }
 
     private void createTopic(String topic, int partitionsCount, int replicationLevel)
     {
-        withAdminClient(adminClient -> {
-            Properties topicConfiguration = new Properties();
-            adminClient.createTopics(Collections.singletonList(
-                    new NewTopic(topic, partitionsCount, (short) replicationLevel)
-                            .configs(topicConfiguration.stringPropertyNames()
-                                    .stream().collect(
-                                            toImmutableMap(
-                                                    key -> key,
-                                                    topicConfiguration::getProperty)
-                                    ))));
-        });
+        Properties topicConfiguration = new Properties();
+        NewTopic newTopic = new NewTopic(topic, partitionsCount, (short) replicationLevel)
+                .configs(topicConfiguration.stringPropertyNames()
+                        .stream().collect(
+                                toImmutableMap(
+                                        key -> key,
+                                        topicConfiguration::getProperty)));
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                getAdminClient().createTopics(singletonList(newTopic)).all().get(ADMIN_TIMEOUT_SECONDS, SECONDS);
+                return;
+            }
+            catch (ExecutionException e) {
+                // deletion of a topic with the same name may still be in progress on some brokers
+                if (!(e.getCause() instanceof TopicExistsException) || attempt >= CREATE_TOPIC_ATTEMPTS) {
+                    throw new RuntimeException("could not create topic " + topic, e.getCause());
+                }
+                LOGGER.debug("topic {} still exists, retrying", topic);
+                sleepUninterruptibly(attempt * 100, MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("could not create topic " + topic, e);
+            }
+            catch (TimeoutException e) {
+                throw new RuntimeException("could not create topic " + topic, e);
+            }
+        }
     }
 
     private void insertDataIntoTopic(String topic, KafkaDataSource dataSource)
@@ -152,45 +260,80 @@ public class KafkaTableManager
         // create instance for properties to access producer configs
         Properties props = new Properties();
 
-        props.put("bootstrap.servers", brokerHost + ":" + brokerPort);
+        props.put("bootstrap.servers", bootstrapServers);
         props.put("acks", "all");
         props.put("retries", 0);
         props.put("key.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
         props.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+        props.putAll(DEFAULT_PRODUCER_PROPERTIES);
+        // producer properties may be overridden with databases.<name>.producer.<kafka property>
+        producerConfiguration.listKeys().forEach(key ->
+                producerConfiguration.getString(key).ifPresent(value -> props.put(key, value)));
 
-        Producer<byte[], byte[]> producer = new KafkaProducer<>(props);
-
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+        long messagesCount = 0;
         Iterator<KafkaMessage> messages = dataSource.getMessages();
-        while (messages.hasNext()) {
-            KafkaMessage message = messages.next();
-            try {
-                producer.send(new ProducerRecord<>(
-                        topic,
-                        message.getPartition().isPresent() ? message.getPartition().getAsInt() : null,
-                        message.getKey().orElse(null),
-                        message.getValue())).get();
-            }
-            catch (Exception e) {
-                throw new RuntimeException("could not send message to topic " + topic);
+        try (Producer<byte[], byte[]> producer = producerFactory.apply(props)) {
+            while (messages.hasNext() && failure.get() == null) {
+                KafkaMessage message = messages.next();
+                // messages without partition are spread over partitions by the producer's partitioner
+                producer.send(
+                        new ProducerRecord<>(
+                                topic,
+                                message.getPartition().isPresent() ? message.getPartition().getAsInt() : null,
+                                message.getKey().orElse(null),
+                                message.getValue()),
+                        (metadata, exception) -> {
+                            if (exception != null) {
+                                failure.compareAndSet(null, exception);
+                            }
+                        });
+                messagesCount++;
             }
+            producer.flush();
+        }
+        catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+        finally {
+            // stops generation of messages which will not be sent
+            closeIterator(messages);
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException("could not send message to topic " + topic, failure.get());
         }
+        LOGGER.info("Sent {} messages to topic {} in {} ms", messagesCount, topic, NANOSECONDS.toMillis(System.nanoTime() - start));
     }
 
-    private void withAdminClient(Consumer<AdminClient> routine)
+    private synchronized Admin getAdminClient()
+    {
+        if (adminClient == null) {
+            adminClient = adminClientFactory.get();
+        }
+        return adminClient;
+    }
+
+    private static Properties adminClientProperties(String bootstrapServers)
     {
         int sessionTimeOutInMs = 15_000;
         int connectionTimeOutInMs = 10_000;
 
-        String bootstrapHosts = brokerHost + ":" + brokerPort;
         Properties clientConfig = new Properties();
         clientConfig.putAll(ImmutableMap.of(
-                "bootstrap.servers", bootstrapHosts,
+                "bootstrap.servers", bootstrapServers,
                 "request.timeout.ms", String.valueOf(sessionTimeOutInMs),
                 "connections.max.idle.ms", String.valueOf(connectionTimeOutInMs)
         ));
+        return clientConfig;
+    }
 
-        try (AdminClient adminClient = AdminClient.create(clientConfig)) {
-            routine.accept(adminClient);
+    @Override
+    public synchronized void close()
+    {
+        if (adminClient != null) {
+            adminClient.close();
+            adminClient = null;
         }
     }
 
@@ -0,0 +1,239 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static com.google.common.hash.Hashing.sha256;
+import static io.prestodb.tempto.fulfillment.table.ParallelPartsIterator.closeIterator;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Stores fingerprints of immutable Kafka tables in a compacted topic keyed by topic name, so that topics
+ * loaded in previous runs can be reused as long as their definition and data did not change.
+ */
+class KafkaTopicFingerprints
+{
+    private static final Logger LOGGER = getLogger(KafkaTopicFingerprints.class);
+
+    static final String FINGERPRINTS_TOPIC = "tempto_topic_fingerprints";
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final Supplier<Admin> adminClient;
+    private final Supplier<Producer<String, String>> producerFactory;
+    private final Supplier<Consumer<String, String>> consumerFactory;
+    // fingerprints read from the fingerprints topic, kept up to date with fingerprints stored by this instance
+    private Map<String, String> fingerprints;
+
+    KafkaTopicFingerprints(String bootstrapServers, Supplier<Admin> adminClient)
+    {
+        this(
+                adminClient,
+                () -> new KafkaProducer<>(clientProperties(bootstrapServers, "acks", "all"), new StringSerializer(), new StringSerializer()),
+                () -> new KafkaConsumer<>(clientProperties(bootstrapServers, "enable.auto.commit", "false"), new StringDeserializer(), new StringDeserializer()));
+    }
+
+    @VisibleForTesting
+    KafkaTopicFingerprints(Supplier<Admin> adminClient, Supplier<Producer<String, String>> producerFactory, Supplier<Consumer<String, String>> consumerFactory)
+    {
+        this.adminClient = requireNonNull(adminClient, "adminClient is null");
+        this.producerFactory = requireNonNull(producerFactory, "producerFactory is null");
+        this.consumerFactory = requireNonNull(consumerFactory, "consumerFactory is null");
+    }
+
+    /**
+     * Computes fingerprint from topic definition and data source. Unless data source provides its own fingerprint,
+     * all the messages are read and hashed.
+     */
+    static String fingerprint(KafkaTableDefinition tableDefinition)
+    {
+        Hasher hasher = sha256().newHasher();
+        putBytes(hasher, tableDefinition.getTopic().getBytes(UTF_8));
+        hasher.putInt(tableDefinition.getPartitionsCount());
+        hasher.putInt(tableDefinition.getReplicationLevel());
+        KafkaDataSource dataSource = tableDefinition.getDataSource();
+        Optional<String> dataFingerprint = dataSource.getDataFingerprint();
+        if (dataFingerprint.isPresent()) {
+            putBytes(hasher, dataFingerprint.get().getBytes(UTF_8));
+        }
+        else {
+            Iterator<KafkaMessage> messages = dataSource.getMessages();
+            try {
+                while (messages.hasNext()) {
+                    KafkaMessage message = messages.next();
+                    hasher.putInt(message.getPartition().orElse(-1));
+                    if (message.getKey().isPresent()) {
+                        putBytes(hasher, message.getKey().get());
+                    }
+                    else {
+                        hasher.putInt(-1);
+                    }
+                    putBytes(hasher, message.getValue());
+                }
+            }
+            finally {
+                closeIterator(messages);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putBytes(Hasher hasher, byte[] bytes)
+    {
+        hasher.putInt(bytes.length);
+        hasher.putBytes(bytes);
+    }
+
+    /**
+     * @return stored fingerprint of the topic, empty if there is none or it can not be read
+     */
+    synchronized Optional<String> get(String topic)
+    {
+        try {
+            return Optional.ofNullable(getFingerprints().get(topic));
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Unable to read fingerprint of topic {}, topic will be recreated", topic, e);
+            return Optional.empty();
+        }
+    }
+
+    synchronized void set(String topic, String fingerprint)
+    {
+        store(topic, fingerprint);
+    }
+
+    synchronized void remove(String topic)
+    {
+        // null value is a tombstone removing the key from the compacted topic
+        store(topic, null);
+    }
+
+    private void store(String topic, String fingerprint)
+    {
+        try {
+            getFingerprints();
+            try (Producer<String, String> producer = producerFactory.get()) {
+                producer.send(new ProducerRecord<>(FINGERPRINTS_TOPIC, topic, fingerprint)).get(TIMEOUT_SECONDS, SECONDS);
+            }
+            if (fingerprint == null) {
+                fingerprints.remove(topic);
+            }
+            else {
+                fingerprints.put(topic, fingerprint);
+            }
+        }
+        catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            LOGGER.warn("Unable to store fingerprint of topic {}", topic, e);
+            // stored state is unknown, read it again next time
+            fingerprints = null;
+        }
+    }
+
+    private Map<String, String> getFingerprints()
+    {
+        if (fingerprints == null) {
+            ensureFingerprintsTopicExists();
+            fingerprints = readFingerprints();
+        }
+        return fingerprints;
+    }
+
+    private void ensureFingerprintsTopicExists()
+    {
+        NewTopic topic = new NewTopic(FINGERPRINTS_TOPIC, 1, (short) 1)
+                .configs(ImmutableMap.of("cleanup.policy", "compact"));
+        try {
+            adminClient.get().createTopics(singletonList(topic)).all().get(TIMEOUT_SECONDS, SECONDS);
+        }
+        catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TopicExistsException)) {
+                throw new RuntimeException("Could not create topic " + FINGERPRINTS_TOPIC, e.getCause());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while creating topic " + FINGERPRINTS_TOPIC, e);
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Could not create topic " + FINGERPRINTS_TOPIC, e);
+        }
+    }
+
+    private Map<String, String> readFingerprints()
+    {
+        Map<String, String> result = new HashMap<>();
+        TopicPartition partition = new TopicPartition(FINGERPRINTS_TOPIC, 0);
+        try (Consumer<String, String> consumer = consumerFactory.get()) {
+            consumer.assign(singletonList(partition));
+            consumer.seekToBeginning(singletonList(partition));
+            long endOffset = consumer.endOffsets(singletonList(partition), Duration.ofSeconds(TIMEOUT_SECONDS)).get(partition);
+            long deadline = System.nanoTime() + SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (consumer.position(partition) < endOffset) {
+                if (System.nanoTime() > deadline) {
+                    throw new RuntimeException("Timed out reading topic " + FINGERPRINTS_TOPIC);
+                }
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(500))) {
+                    if (record.value() == null) {
+                        result.remove(record.key());
+                    }
+                    else {
+                        result.put(record.key(), record.value());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Properties clientProperties(String bootstrapServers, String key, String value)
+    {
+        Properties properties = new Properties();
+        properties.put("bootstrap.servers", bootstrapServers);
+        properties.put(key, value);
+        return properties;
+    }
+}
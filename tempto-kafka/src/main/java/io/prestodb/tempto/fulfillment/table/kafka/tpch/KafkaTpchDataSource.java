@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka.tpch;
+
+import io.airlift.tpch.TpchColumn;
+import io.airlift.tpch.TpchEntity;
+import io.airlift.tpch.TpchTable;
+import io.prestodb.tempto.fulfillment.table.ParallelPartsIterator;
+import io.prestodb.tempto.fulfillment.table.kafka.KafkaDataSource;
+import io.prestodb.tempto.fulfillment.table.kafka.KafkaMessage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.StreamSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Streams TPC-H rows as Kafka messages without materializing them. Rows are generated in one part per topic
+ * partition, each part in its own thread, and messages of a part are assigned to its partition.
+ */
+public class KafkaTpchDataSource
+        implements KafkaDataSource
+{
+    // must be changed whenever messages encoded by TpchMessageFormat change
+    private static final String FINGERPRINT_VERSION = "tpch-v1";
+
+    private final TpchTable<?> table;
+    private final double scaleFactor;
+    private final TpchMessageFormat format;
+    private final int partitionsCount;
+
+    public KafkaTpchDataSource(TpchTable<?> table, double scaleFactor, TpchMessageFormat format, int partitionsCount)
+    {
+        checkArgument(scaleFactor > 0.0, "scaleFactor should be greater than zero");
+        checkArgument(partitionsCount > 0, "partitionsCount should be greater than zero");
+        this.table = requireNonNull(table, "table is null");
+        this.scaleFactor = scaleFactor;
+        this.format = requireNonNull(format, "format is null");
+        this.partitionsCount = partitionsCount;
+    }
+
+    @Override
+    public Iterator<KafkaMessage> getMessages()
+    {
+        if (partitionsCount == 1) {
+            return generateMessages(1);
+        }
+        return new ParallelPartsIterator<>("tpch-kafka-" + table.getTableName(), partitionsCount, this::generateMessages);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Iterator<KafkaMessage> generateMessages(int part)
+    {
+        TpchTable<TpchEntity> entityTable = (TpchTable<TpchEntity>) table;
+        List<TpchColumn<TpchEntity>> columns = entityTable.getColumns();
+        OptionalInt partition = OptionalInt.of(part - 1);
+        return StreamSupport.stream(entityTable.createGenerator(scaleFactor, part, partitionsCount).spliterator(), false)
+                .map(entity -> new KafkaMessage(format.encode(columns, entity), partition))
+                .iterator();
+    }
+
+    @Override
+    public OptionalInt getPartitionsCount()
+    {
+        return OptionalInt.of(partitionsCount);
+    }
+
+    @Override
+    public Optional<String> getDataFingerprint()
+    {
+        return Optional.of(FINGERPRINT_VERSION + ":" + table.getTableName() + ":" + scaleFactor + ":" + format + ":" + partitionsCount);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka.tpch;
+
+import io.airlift.tpch.TpchColumn;
+import io.airlift.tpch.TpchEntity;
+import io.prestodb.tempto.fulfillment.table.kafka.KafkaMessageContentsBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.tpch.TpchColumnType.VARCHAR;
+import static io.prestodb.tempto.fulfillment.table.kafka.KafkaMessageContentsBuilder.contentsBuilder;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodings of TPC-H rows as Kafka message values. Changes of the encodings require a change of
+ * the {@link KafkaTpchDataSource} fingerprint version, so that topics loaded in previous runs are not reused.
+ */
+public enum TpchMessageFormat
+{
+    /**
+     * Comma separated values, with VARCHAR values quoted and dates formatted as {@code yyyy-MM-dd}.
+     * Null VARCHAR values are encoded as empty unquoted fields.
+     */
+    CSV {
+        @Override
+        public <E extends TpchEntity> byte[] encode(List<? extends TpchColumn<E>> columns, E entity)
+        {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < columns.size(); ++i) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                TpchColumn<E> column = columns.get(i);
+                if (column.getType() == VARCHAR) {
+                    String value = column.getString(entity);
+                    if (value != null) {
+                        builder.append('"').append(value.replace("\"", "\"\"")).append('"');
+                    }
+                }
+                else {
+                    builder.append(toText(column, entity));
+                }
+            }
+            return builder.toString().getBytes(UTF_8);
+        }
+    },
+    /**
+     * JSON object with a field per column, named as the column. Dates are formatted as {@code yyyy-MM-dd} strings,
+     * null VARCHAR values are encoded as JSON nulls.
+     */
+    JSON {
+        @Override
+        public <E extends TpchEntity> byte[] encode(List<? extends TpchColumn<E>> columns, E entity)
+        {
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = 0; i < columns.size(); ++i) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                TpchColumn<E> column = columns.get(i);
+                appendJsonString(builder, column.getColumnName());
+                builder.append(':');
+                switch (column.getType()) {
+                    case VARCHAR:
+                        String value = column.getString(entity);
+                        if (value == null) {
+                            builder.append("null");
+                        }
+                        else {
+                            appendJsonString(builder, value);
+                        }
+                        break;
+                    case DATE:
+                        appendJsonString(builder, toText(column, entity));
+                        break;
+                    default:
+                        builder.append(toText(column, entity));
+                }
+            }
+            return builder.append('}').toString().getBytes(UTF_8);
+        }
+    },
+    /**
+     * Big endian binary values: 8 bytes for identifiers and doubles, 4 bytes for integers and dates
+     * (days since epoch), VARCHAR values as 4 bytes length followed by UTF-8 bytes. Null values are not supported.
+     */
+    RAW {
+        @Override
+        public <E extends TpchEntity> byte[] encode(List<? extends TpchColumn<E>> columns, E entity)
+        {
+            KafkaMessageContentsBuilder builder = contentsBuilder();
+            for (TpchColumn<E> column : columns) {
+                switch (column.getType()) {
+                    case IDENTIFIER:
+                        builder.appendLongBigEndian(column.getIdentifier(entity));
+                        break;
+                    case INTEGER:
+                        builder.appendIntBigEndian(column.getInteger(entity));
+                        break;
+                    case DOUBLE:
+                        builder.appendLongBigEndian(Double.doubleToLongBits(column.getDouble(entity)));
+                        break;
+                    case DATE:
+                        builder.appendIntBigEndian(column.getDate(entity));
+                        break;
+                    case VARCHAR:
+                        String value = column.getString(entity);
+                        checkArgument(value != null, "RAW format does not support null value of column %s", column.getColumnName());
+                        byte[] bytes = value.getBytes(UTF_8);
+                        builder.appendIntBigEndian(bytes.length);
+                        builder.appendBytes(bytes);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported column type: " + column.getType());
+                }
+            }
+            return builder.build();
+        }
+    };
+
+    public abstract <E extends TpchEntity> byte[] encode(List<? extends TpchColumn<E>> columns, E entity);
+
+    private static <E extends TpchEntity> String toText(TpchColumn<E> column, E entity)
+    {
+        switch (column.getType()) {
+            case IDENTIFIER:
+                return String.valueOf(column.getIdentifier(entity));
+            case INTEGER:
+                return String.valueOf(column.getInteger(entity));
+            case DOUBLE:
+                return String.valueOf(column.getDouble(entity));
+            case DATE:
+                return LocalDate.ofEpochDay(column.getDate(entity)).toString();
+            case VARCHAR:
+                return column.getString(entity);
+            default:
+                throw new IllegalArgumentException("Unsupported column type: " + column.getType());
+        }
+    }
+
+    private static void appendJsonString(StringBuilder builder, String value)
+    {
+        builder.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka
+
+import io.prestodb.tempto.internal.configuration.MapConfiguration
+import io.prestodb.tempto.query.QueryExecutor
+import io.prestodb.tempto.query.QueryResult
+import org.apache.kafka.clients.producer.MockProducer
+import org.apache.kafka.common.serialization.ByteArraySerializer
+import spock.lang.Specification
+
+import static io.prestodb.tempto.fulfillment.table.TableHandle.tableHandle
+import static io.prestodb.tempto.fulfillment.table.kafka.KafkaTopicFingerprints.FINGERPRINTS_TOPIC
+import static java.nio.charset.StandardCharsets.UTF_8
+import static java.sql.JDBCType.BIGINT
+
+class KafkaTableManagerTest
+        extends Specification
+{
+    private static final String TOPIC = 'test_topic'
+
+    private final TestingAdmin admin = new TestingAdmin()
+    private final List<MockProducer<byte[], byte[]>> dataProducers = []
+    private final TestingFingerprintsTopic fingerprintsTopic = new TestingFingerprintsTopic()
+
+    def 'topic is recreated if fingerprints are not enabled'()
+    {
+        setup:
+        def tableDefinition = tableDefinition(['a', 'b'], 2)
+        tableManager(false).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+
+        when:
+        tableManager(false).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+
+        then:
+        admin.deletedTopics == [TOPIC]
+        admin.createdTopics == [TOPIC, TOPIC]
+        admin.topics == [(TOPIC): 2]
+        sentMessages() == ['a', 'b', 'a', 'b']
+    }
+
+    def 'topic with matching fingerprint is reused'()
+    {
+        setup:
+        def tableDefinition = tableDefinition(['a', 'b'], 2)
+        tableManager(true).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+
+        when:
+        tableManager(true).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+
+        then:
+        admin.deletedTopics == []
+        admin.createdTopics == [FINGERPRINTS_TOPIC, TOPIC]
+        sentMessages() == ['a', 'b']
+    }
+
+    def 'topic without fingerprint is recreated'()
+    {
+        setup:
+        admin.topics[TOPIC] = 2
+        def tableDefinition = tableDefinition(['a', 'b'], 2)
+
+        when:
+        tableManager(true).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+
+        then:
+        admin.deletedTopics == [TOPIC]
+        admin.createdTopics == [FINGERPRINTS_TOPIC, TOPIC]
+        sentMessages() == ['a', 'b']
+        fingerprintsTopic.storedFingerprints() == [(TOPIC): KafkaTopicFingerprints.fingerprint(tableDefinition)]
+    }
+
+    def 'topic with stale fingerprint is recreated'()
+    {
+        setup:
+        tableManager(true).createImmutable(tableDefinition(['a', 'b'], 2), tableHandle('table').inSchema('schema'))
+        def changedTableDefinition = tableDefinition(['a', 'c'], 2)
+
+        when:
+        tableManager(true).createImmutable(changedTableDefinition, tableHandle('table').inSchema('schema'))
+
+        then:
+        admin.deletedTopics == [TOPIC]
+        sentMessages() == ['a', 'b', 'a', 'c']
+        fingerprintsTopic.storedFingerprints() == [(TOPIC): KafkaTopicFingerprints.fingerprint(changedTableDefinition)]
+    }
+
+    def 'topic with matching fingerprint but different partitions is recreated'()
+    {
+        setup:
+        def tableDefinition = tableDefinition(['a', 'b'], 2)
+        tableManager(true).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+        admin.topics[TOPIC] = 1
+
+        when:
+        tableManager(true).createImmutable(tableDefinition, tableHandle('table').inSchema('schema'))
+
+        then:
+        admin.deletedTopics == [TOPIC]
+        admin.topics[TOPIC] == 2
+        sentMessages() == ['a', 'b', 'a', 'b']
+    }
+
+    def 'topic creation is retried while deletion is in progress'()
+    {
+        setup:
+        admin.topics[TOPIC] = 2
+        admin.pendingDeletions = 2
+
+        when:
+        tableManager(false).createImmutable(tableDefinition(['a'], 2), tableHandle('table').inSchema('schema'))
+
+        then:
+        admin.deletedTopics == [TOPIC]
+        admin.createdTopics == [TOPIC]
+        sentMessages() == ['a']
+    }
+
+    def 'topic creation fails if deletion does not complete'()
+    {
+        setup:
+        admin.topics[TOPIC] = 2
+        admin.pendingDeletions = 10
+
+        when:
+        tableManager(false).createImmutable(tableDefinition(['a'], 2), tableHandle('table').inSchema('schema'))
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == 'could not create topic ' + TOPIC
+        sentMessages() == []
+    }
+
+    private KafkaTableManager tableManager(boolean topicFingerprints)
+    {
+        QueryExecutor prestoQueryExecutor = [executeQuery: { Object[] args -> QueryResult.forSingleValue(BIGINT, 1L) }] as QueryExecutor
+        def configuration = new MapConfiguration([databases: [kafka: [topic_fingerprints: topicFingerprints]]])
+        return new KafkaTableManager(
+                'kafka',
+                'localhost:9092',
+                prestoQueryExecutor,
+                'kafka',
+                configuration,
+                admin.&asAdmin,
+                { properties -> dataProducer() },
+                { adminClient -> new KafkaTopicFingerprints(adminClient, fingerprintsTopic.&producer, fingerprintsTopic.&consumer) })
+    }
+
+    private static KafkaTableDefinition tableDefinition(List<String> messages, int partitionsCount)
+    {
+        def dataSource = new ListKafkaDataSource(messages.collect { new KafkaMessage(it.getBytes(UTF_8)) })
+        return new KafkaTableDefinition('table', TOPIC, dataSource, partitionsCount, 1)
+    }
+
+    private MockProducer<byte[], byte[]> dataProducer()
+    {
+        def producer = new MockProducer<byte[], byte[]>(true, new ByteArraySerializer(), new ByteArraySerializer())
+        dataProducers << producer
+        return producer
+    }
+
+    private List<String> sentMessages()
+    {
+        return dataProducers.collectMany { it.history() }.collect {
+            assert it.topic() == TOPIC
+            new String(it.value(), UTF_8)
+        }
+    }
+}
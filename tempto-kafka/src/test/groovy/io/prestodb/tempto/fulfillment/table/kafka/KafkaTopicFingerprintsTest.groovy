@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka
+
+import org.apache.kafka.clients.producer.ProducerRecord
+import spock.lang.Specification
+
+import static io.prestodb.tempto.fulfillment.table.kafka.KafkaTopicFingerprints.FINGERPRINTS_TOPIC
+import static java.nio.charset.StandardCharsets.UTF_8
+
+class KafkaTopicFingerprintsTest
+        extends Specification
+{
+    private final TestingAdmin admin = new TestingAdmin()
+    private final TestingFingerprintsTopic fingerprintsTopic = new TestingFingerprintsTopic()
+
+    def 'fingerprint depends on topic definition and messages'()
+    {
+        expect:
+        fingerprint(['a', 'b'], 1) == fingerprint(['a', 'b'], 1)
+        fingerprint(['a', 'b'], 1) != fingerprint(['a', 'c'], 1)
+        fingerprint(['a', 'b'], 1) != fingerprint(['b', 'a'], 1)
+        fingerprint(['a', 'b'], 1) != fingerprint(['a', 'b'], 2)
+    }
+
+    def 'fingerprint uses data source fingerprint without reading messages'()
+    {
+        setup:
+        KafkaDataSource dataSource = [
+                getMessages       : { throw new AssertionError('messages should not be read') },
+                getDataFingerprint: { Optional.of('data-v1') }
+        ] as KafkaDataSource
+
+        expect:
+        KafkaTopicFingerprints.fingerprint(new KafkaTableDefinition('table', 'topic', dataSource, 1, 1)) ==
+                KafkaTopicFingerprints.fingerprint(new KafkaTableDefinition('table', 'topic', dataSource, 1, 1))
+    }
+
+    def 'fingerprint is missing for unknown topic'()
+    {
+        expect:
+        !fingerprints().get('topic').isPresent()
+        admin.topics[FINGERPRINTS_TOPIC] == 1
+        admin.topicConfigs[FINGERPRINTS_TOPIC] == ['cleanup.policy': 'compact']
+    }
+
+    def 'fingerprints stored in previous run are read'()
+    {
+        setup:
+        fingerprints().set('topic', 'fingerprint')
+        fingerprints().set('other', 'stale')
+        fingerprints().set('other', 'fresh')
+
+        expect:
+        fingerprints().get('topic') == Optional.of('fingerprint')
+        fingerprints().get('other') == Optional.of('fresh')
+    }
+
+    def 'removed fingerprint is not read'()
+    {
+        setup:
+        def topicFingerprints = fingerprints()
+        topicFingerprints.set('topic', 'fingerprint')
+
+        when:
+        topicFingerprints.remove('topic')
+
+        then:
+        !topicFingerprints.get('topic').isPresent()
+        !fingerprints().get('topic').isPresent()
+        fingerprintsTopic.records().last() == new ProducerRecord<>(FINGERPRINTS_TOPIC, 'topic', null)
+    }
+
+    def 'fingerprint is missing if it can not be read'()
+    {
+        setup:
+        def topicFingerprints = new KafkaTopicFingerprints(admin.&asAdmin, fingerprintsTopic.&producer, { throw new IllegalStateException('broker is down') })
+
+        expect:
+        !topicFingerprints.get('topic').isPresent()
+    }
+
+    private KafkaTopicFingerprints fingerprints()
+    {
+        return fingerprintsTopic.fingerprints(admin)
+    }
+
+    private static String fingerprint(List<String> messages, int partitionsCount)
+    {
+        def dataSource = new ListKafkaDataSource(messages.collect { new KafkaMessage(it.getBytes(UTF_8)) })
+        return KafkaTopicFingerprints.fingerprint(new KafkaTableDefinition('table', 'topic', dataSource, partitionsCount, 1))
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka
+
+import org.apache.kafka.clients.admin.Admin
+import org.apache.kafka.clients.admin.CreateTopicsResult
+import org.apache.kafka.clients.admin.DeleteTopicsResult
+import org.apache.kafka.clients.admin.DescribeTopicsResult
+import org.apache.kafka.clients.admin.NewTopic
+import org.apache.kafka.clients.admin.TopicDescription
+import org.apache.kafka.common.KafkaFuture
+import org.apache.kafka.common.Node
+import org.apache.kafka.common.TopicPartitionInfo
+import org.apache.kafka.common.errors.TopicExistsException
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException
+import org.apache.kafka.common.internals.KafkaFutureImpl
+
+/**
+ * Keeps topics in memory, topic creation fails with {@link TopicExistsException} {@link #pendingDeletions}
+ * times after a topic was deleted, like it does when deletion is still in progress.
+ */
+class TestingAdmin
+{
+    private static final Node NODE = new Node(0, 'localhost', 9092)
+
+    final Map<String, Integer> topics = [:]
+    final Map<String, Map<String, String>> topicConfigs = [:]
+    final List<String> createdTopics = []
+    final List<String> deletedTopics = []
+    int pendingDeletions
+    private int remainingPendingDeletions
+
+    Admin asAdmin()
+    {
+        return [
+                createTopics  : { Collection<NewTopic> newTopics -> createTopic(newTopics.first()) },
+                deleteTopics  : { Collection<String> names -> deleteTopic(names.first()) },
+                describeTopics: { Collection<String> names -> describeTopic(names.first()) },
+                close         : {}
+        ] as Admin
+    }
+
+    private synchronized CreateTopicsResult createTopic(NewTopic topic)
+    {
+        def future = new KafkaFutureImpl<CreateTopicsResult.TopicMetadataAndConfig>()
+        if (topics.containsKey(topic.name()) || remainingPendingDeletions-- > 0) {
+            future.completeExceptionally(new TopicExistsException(topic.name()))
+        }
+        else {
+            topics[topic.name()] = topic.numPartitions()
+            topicConfigs[topic.name()] = topic.configs()
+            createdTopics << topic.name()
+            future.complete(null)
+        }
+        return new CreateTopicsResult([(topic.name()): future])
+    }
+
+    private synchronized DeleteTopicsResult deleteTopic(String name)
+    {
+        def future = new KafkaFutureImpl<Void>()
+        if (topics.remove(name) == null) {
+            future.completeExceptionally(new UnknownTopicOrPartitionException(name))
+        }
+        else {
+            deletedTopics << name
+            remainingPendingDeletions = pendingDeletions
+            future.complete(null)
+        }
+        return DeleteTopicsResult.ofTopicNames([(name): (KafkaFuture<Void>) future])
+    }
+
+    private synchronized DescribeTopicsResult describeTopic(String name)
+    {
+        def future = new KafkaFutureImpl<TopicDescription>()
+        if (topics.containsKey(name)) {
+            def partitions = (0..<topics[name]).collect { new TopicPartitionInfo(it, NODE, [NODE], [NODE]) }
+            future.complete(new TopicDescription(name, false, partitions))
+        }
+        else {
+            future.completeExceptionally(new UnknownTopicOrPartitionException(name))
+        }
+        return DescribeTopicsResult.ofTopicNames([(name): (KafkaFuture<TopicDescription>) future])
+    }
+}
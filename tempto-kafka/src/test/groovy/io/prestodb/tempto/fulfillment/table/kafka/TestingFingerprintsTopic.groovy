@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka
+
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.clients.consumer.MockConsumer
+import org.apache.kafka.clients.consumer.OffsetResetStrategy
+import org.apache.kafka.clients.producer.MockProducer
+import org.apache.kafka.clients.producer.ProducerRecord
+import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.serialization.StringSerializer
+
+import static io.prestodb.tempto.fulfillment.table.kafka.KafkaTopicFingerprints.FINGERPRINTS_TOPIC
+
+/**
+ * Fingerprints topic kept in memory, consumers read all the records sent by producers created before them.
+ */
+class TestingFingerprintsTopic
+{
+    private final List<MockProducer<String, String>> producers = []
+
+    KafkaTopicFingerprints fingerprints(TestingAdmin admin)
+    {
+        return new KafkaTopicFingerprints(admin.&asAdmin, this.&producer, this.&consumer)
+    }
+
+    synchronized MockProducer<String, String> producer()
+    {
+        def producer = new MockProducer<String, String>(true, new StringSerializer(), new StringSerializer())
+        producers << producer
+        return producer
+    }
+
+    synchronized MockConsumer<String, String> consumer()
+    {
+        def partition = new TopicPartition(FINGERPRINTS_TOPIC, 0)
+        def records = records()
+        def consumer = new MockConsumer<String, String>(OffsetResetStrategy.EARLIEST)
+        consumer.updateBeginningOffsets([(partition): 0L])
+        consumer.updateEndOffsets([(partition): (long) records.size()])
+        consumer.schedulePollTask {
+            records.eachWithIndex { record, offset ->
+                consumer.addRecord(new ConsumerRecord<>(FINGERPRINTS_TOPIC, 0, offset, record.key(), record.value()))
+            }
+        }
+        return consumer
+    }
+
+    synchronized List<ProducerRecord<String, String>> records()
+    {
+        return producers.collectMany { it.history() }
+    }
+
+    /**
+     * @return fingerprints left after compaction of the topic
+     */
+    Map<String, String> storedFingerprints()
+    {
+        Map<String, String> fingerprints = [:]
+        records().each {
+            if (it.value() == null) {
+                fingerprints.remove(it.key())
+            }
+            else {
+                fingerprints[it.key()] = it.value()
+            }
+        }
+        return fingerprints
+    }
+}
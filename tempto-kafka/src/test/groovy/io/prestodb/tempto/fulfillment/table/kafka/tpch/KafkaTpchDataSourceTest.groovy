@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka.tpch
+
+import io.prestodb.tempto.fulfillment.table.kafka.KafkaTableDefinition
+import spock.lang.Specification
+
+import static io.airlift.tpch.TpchTable.NATION
+import static io.prestodb.tempto.fulfillment.table.kafka.tpch.TpchMessageFormat.CSV
+
+class KafkaTpchDataSourceTest
+        extends Specification
+{
+    def 'partitions count matching topic partitions count is accepted'()
+    {
+        when:
+        def tableDefinition = new KafkaTableDefinition('nation', 'nation', new KafkaTpchDataSource(NATION, 1.0, CSV, 3), 3, 1)
+
+        then:
+        tableDefinition.partitionsCount == 3
+    }
+
+    def 'partitions count must match topic partitions count'()
+    {
+        when:
+        new KafkaTableDefinition('nation', 'nation', new KafkaTpchDataSource(NATION, 1.0, CSV, 3), 2, 1)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == 'Data source assigns messages to 3 partitions, but topic nation has 2 partitions'
+    }
+
+    def 'fingerprint contains format version'()
+    {
+        expect:
+        new KafkaTpchDataSource(NATION, 1.0, CSV, 3).dataFingerprint == Optional.of('tpch-v1:nation:1.0:CSV:3')
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prestodb.tempto.fulfillment.table.kafka.tpch
+
+import io.airlift.tpch.TpchColumn
+import io.airlift.tpch.TpchColumnType
+import io.airlift.tpch.TpchEntity
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+import static io.airlift.tpch.TpchColumnType.DATE
+import static io.airlift.tpch.TpchColumnType.DOUBLE
+import static io.airlift.tpch.TpchColumnType.IDENTIFIER
+import static io.airlift.tpch.TpchColumnType.INTEGER
+import static io.airlift.tpch.TpchColumnType.VARCHAR
+import static io.prestodb.tempto.fulfillment.table.kafka.tpch.TpchMessageFormat.CSV
+import static io.prestodb.tempto.fulfillment.table.kafka.tpch.TpchMessageFormat.JSON
+import static io.prestodb.tempto.fulfillment.table.kafka.tpch.TpchMessageFormat.RAW
+import static java.nio.charset.StandardCharsets.UTF_8
+
+class TpchMessageFormatTest
+        extends Specification
+{
+    private static final List<TestColumn> COLUMNS = [
+            new TestColumn('key', IDENTIFIER, 7L),
+            new TestColumn('name', VARCHAR, 'say "hi", \\ bye\n'),
+            new TestColumn('price', DOUBLE, 1234.56d),
+            new TestColumn('discount', DOUBLE, -0.05d),
+            new TestColumn('shipdate', DATE, 10561),
+            new TestColumn('quantity', INTEGER, -15),
+            new TestColumn('comment', VARCHAR, null)]
+
+    def 'encode csv'()
+    {
+        expect:
+        encode(CSV, COLUMNS) == '7,"say ""hi"", \\ bye\n",1234.56,-0.05,1998-12-01,-15,'
+    }
+
+    def 'encode json'()
+    {
+        expect:
+        encode(JSON, COLUMNS) ==
+                '{"key":7,"name":"say \\"hi\\", \\\\ bye\\u000a","price":1234.56,"discount":-0.05,"shipdate":"1998-12-01","quantity":-15,"comment":null}'
+    }
+
+    def 'encode json escapes column names'()
+    {
+        expect:
+        encode(JSON, [new TestColumn('a"b', INTEGER, 1)]) == '{"a\\"b":1}'
+    }
+
+    def 'encode raw'()
+    {
+        setup:
+        def columns = COLUMNS.findAll { it.value != null } + new TestColumn('unicode', VARCHAR, 'żółw')
+
+        when:
+        def buffer = ByteBuffer.wrap(RAW.encode(columns, Mock(TpchEntity)))
+
+        then:
+        buffer.getLong() == 7L
+        readString(buffer) == 'say "hi", \\ bye\n'
+        buffer.getDouble() == 1234.56d
+        buffer.getDouble() == -0.05d
+        buffer.getInt() == 10561
+        buffer.getInt() == -15
+        buffer.getInt() == 'żółw'.getBytes(UTF_8).length
+        buffer.position(buffer.position() - 4)
+        readString(buffer) == 'żółw'
+        !buffer.hasRemaining()
+    }
+
+    def 'raw format does not support nulls'()
+    {
+        when:
+        RAW.encode([new TestColumn('comment', VARCHAR, null)], Mock(TpchEntity))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == 'RAW format does not support null value of column comment'
+    }
+
+    def 'encode decimals'()
+    {
+        expect:
+        encode(format, [new TestColumn('price', DOUBLE, value)]) == expected
+
+        where:
+        format | value      | expected
+        CSV    | 0.01d      | '0.01'
+        CSV    | 100.0d     | '100.0'
+        CSV    | -999.99d   | '-999.99'
+        JSON   | 0.01d      | '{"price":0.01}'
+        JSON   | 104949.5d  | '{"price":104949.5}'
+    }
+
+    def 'encode dates'()
+    {
+        expect:
+        encode(format, [new TestColumn('date', DATE, days)]) == expected
+
+        where:
+        format | days  | expected
+        CSV    | 0     | '1970-01-01'
+        CSV    | 8035  | '1992-01-01'
+        JSON   | 10591 | '{"date":"1998-12-31"}'
+    }
+
+    private static String encode(TpchMessageFormat format, List<TestColumn> columns)
+    {
+        return new String(format.encode(columns, [getRowNumber: { 1L }, toLine: { '' }] as TpchEntity), UTF_8)
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()]
+        buffer.get(bytes)
+        return new String(bytes, UTF_8)
+    }
+
+    private static class TestColumn
+            implements TpchColumn<TpchEntity>
+    {
+        private final String name
+        private final TpchColumnType type
+        private final Object value
+
+        TestColumn(String name, TpchColumnType type, Object value)
+        {
+            this.name = name
+            this.type = type
+            this.value = value
+        }
+
+        @Override
+        String getColumnName()
+        {
+            return name
+        }
+
+        @Override
+        TpchColumnType getType()
+        {
+            return type
+        }
+
+        @Override
+        double getDouble(TpchEntity entity)
+        {
+            return (double) value
+        }
+
+        @Override
+        long getIdentifier(TpchEntity entity)
+        {
+            return (long) value
+        }
+
+        @Override
+        int getInteger(TpchEntity entity)
+        {
+            return (int) value
+        }
+
+        @Override
+        String getString(TpchEntity entity)
+        {
+            return (String) value
+        }
+
+        @Override
+        int getDate(TpchEntity entity)
+        {
+            return (int) value
+        }
+    }
+}